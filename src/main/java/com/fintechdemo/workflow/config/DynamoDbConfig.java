@@ -1,15 +1,23 @@
 package com.fintechdemo.workflow.config;
 
+import com.fintechdemo.workflow.lambda.ParkedRecordRedriver;
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import com.fintechdemo.workflow.service.AccountService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class DynamoDbConfig {
@@ -26,11 +34,58 @@ public class DynamoDbConfig {
     @Value("${aws.secretAccessKey:#{null}}")
     private String secretAccessKey;
 
+    @Value("${app.dynamodb.table-name:fintechdemo-workflow-dev}")
+    private String tableName;
+
+    // HTTP transport of the DynamoDB clients, see DynamoDbHttpTransport
+    @Value("${app.dynamodb.http.client:apache}")
+    private String httpClient;
+
+    @Value("${app.dynamodb.http.max-connections:50}")
+    private int httpMaxConnections;
+
+    @Value("${app.dynamodb.http.connection-timeout-ms:1000}")
+    private long httpConnectionTimeoutMs;
+
+    @Value("${app.dynamodb.http.socket-timeout-ms:5000}")
+    private long httpSocketTimeoutMs;
+
+    @Value("${app.dynamodb.http.connection-max-idle-ms:60000}")
+    private long httpConnectionMaxIdleMs;
+
+    @Value("${app.dynamodb.http.tcp-keep-alive:true}")
+    private boolean httpTcpKeepAlive;
+
+    @Bean
+    public DynamoDbHttpTransport dynamoDbHttpTransport() {
+        return new DynamoDbHttpTransport(
+                DynamoDbHttpTransport.Kind.parse(httpClient),
+                httpMaxConnections,
+                Duration.ofMillis(httpConnectionTimeoutMs),
+                Duration.ofMillis(httpSocketTimeoutMs),
+                Duration.ofMillis(httpConnectionMaxIdleMs),
+                httpTcpKeepAlive);
+    }
+
+    @Bean
+    public DynamoDbClient dynamoDbClient(DynamoDbHttpTransport dynamoDbHttpTransport) {
+        return configure(DynamoDbClient.builder())
+                .httpClientBuilder(dynamoDbHttpTransport.httpClientBuilder())
+                .build();
+    }
+
+    // The services' CompletableFuture methods run their independent queries concurrently on this client.
+    // Lazy, so that Netty is only loaded and started once a read needs it, not during init.
     @Bean
-    @Lazy  // Lazy initialization to prevent issues with SnapStart
-    public DynamoDbClient dynamoDbClient() {
-        var clientBuilder = DynamoDbClient.builder()
-                .region(Region.of(region));
+    @Lazy
+    public DynamoDbAsyncClient dynamoDbAsyncClient(DynamoDbHttpTransport dynamoDbHttpTransport) {
+        return configure(DynamoDbAsyncClient.builder())
+                .httpClientBuilder(dynamoDbHttpTransport.asyncHttpClientBuilder())
+                .build();
+    }
+
+    private <B extends AwsClientBuilder<B, ?>> B configure(B clientBuilder) {
+        clientBuilder.region(Region.of(region));
 
         // Configure for LocalStack/testing if endpoint is provided
         if (endpoint != null && !endpoint.isEmpty()) {
@@ -45,6 +100,22 @@ public class DynamoDbConfig {
             }
         }
 
-        return clientBuilder.build();
+        return clientBuilder;
+    }
+
+    @Bean
+    public WorkflowTables workflowTables(DynamoDbClient dynamoDbClient) {
+        return new WorkflowTables(dynamoDbClient, tableName);
+    }
+
+    @Bean
+    public AsyncWorkflowTables asyncWorkflowTables(ObjectProvider<DynamoDbAsyncClient> dynamoDbAsyncClient) {
+        return new AsyncWorkflowTables(dynamoDbAsyncClient::getObject, tableName);
+    }
+
+    // Redriven stamps update balances in this container, so they keep the account cache current
+    @Bean
+    public ParkedRecordRedriver parkedRecordRedriver(WorkflowTables workflowTables, AccountService accountService) {
+        return new ParkedRecordRedriver(workflowTables, accountService);
     }
-} 
+}
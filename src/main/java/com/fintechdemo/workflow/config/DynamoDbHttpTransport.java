@@ -0,0 +1,159 @@
+package com.fintechdemo.workflow.config;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtHttpClient;
+import software.amazon.awssdk.http.crt.TcpKeepAliveConfiguration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * The HTTP client under the DynamoDB clients of both handlers. {@code url-connection} loads the fewest classes
+ * and is the quickest to initialise, but has no pool of its own beyond the JDK's keep-alive cache;
+ * {@code apache}, the SDK's default, pools connections; {@code crt} is the native AWS Common Runtime client.
+ * The async client runs on Netty unless {@code crt} is chosen. Settings a transport has no knob for are ignored.
+ *
+ * <p>The API handler reads these settings from {@code app.dynamodb.http.*}, the stream handler from the
+ * {@code DYNAMODB_HTTP_*} environment variables behind them.
+ */
+@Slf4j
+public record DynamoDbHttpTransport(
+        Kind kind,
+        int maxConnections,
+        Duration connectionTimeout,
+        Duration socketTimeout,
+        Duration connectionMaxIdleTime,
+        boolean tcpKeepAlive) {
+
+    public static final Kind DEFAULT_KIND = Kind.APACHE;
+    public static final int DEFAULT_MAX_CONNECTIONS = 50;
+    public static final long DEFAULT_CONNECTION_TIMEOUT_MS = 1000;
+    public static final long DEFAULT_SOCKET_TIMEOUT_MS = 5000;
+    public static final long DEFAULT_CONNECTION_MAX_IDLE_MS = 60000;
+    public static final boolean DEFAULT_TCP_KEEP_ALIVE = true;
+
+    public enum Kind {
+        URL_CONNECTION("url-connection"),
+        APACHE("apache"),
+        CRT("crt");
+
+        private final String value;
+
+        Kind(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        public static Kind parse(String value) {
+            if (value == null || value.isBlank()) {
+                return DEFAULT_KIND;
+            }
+            for (Kind kind : values()) {
+                if (kind.value.equalsIgnoreCase(value.trim())) {
+                    return kind;
+                }
+            }
+            log.warn("Invalid DynamoDB HTTP client {}, using {}", value, DEFAULT_KIND.value);
+            return DEFAULT_KIND;
+        }
+    }
+
+    public static DynamoDbHttpTransport fromEnv() {
+        return fromEnv(System::getenv);
+    }
+
+    private static DynamoDbHttpTransport fromEnv(Function<String, String> env) {
+        return new DynamoDbHttpTransport(
+            Kind.parse(env.apply("DYNAMODB_HTTP_CLIENT")),
+            (int) longFromEnv(env, "DYNAMODB_HTTP_MAX_CONNECTIONS", DEFAULT_MAX_CONNECTIONS),
+            Duration.ofMillis(longFromEnv(env, "DYNAMODB_HTTP_CONNECTION_TIMEOUT_MS", DEFAULT_CONNECTION_TIMEOUT_MS)),
+            Duration.ofMillis(longFromEnv(env, "DYNAMODB_HTTP_SOCKET_TIMEOUT_MS", DEFAULT_SOCKET_TIMEOUT_MS)),
+            Duration.ofMillis(longFromEnv(env, "DYNAMODB_HTTP_CONNECTION_MAX_IDLE_MS", DEFAULT_CONNECTION_MAX_IDLE_MS)),
+            booleanFromEnv(env, "DYNAMODB_HTTP_TCP_KEEP_ALIVE", DEFAULT_TCP_KEEP_ALIVE));
+    }
+
+    public SdkHttpClient.Builder<?> httpClientBuilder() {
+        log.info("DynamoDB HTTP client: {} maxConnections={} connectionTimeout={} socketTimeout={} maxIdle={} tcpKeepAlive={}",
+            kind.value, maxConnections, connectionTimeout, socketTimeout, connectionMaxIdleTime, tcpKeepAlive);
+        return switch (kind) {
+            // Pooling is the JDK's: keep-alive connections are reused per host, up to http.maxConnections
+            case URL_CONNECTION -> UrlConnectionHttpClient.builder()
+                .connectionTimeout(connectionTimeout)
+                .socketTimeout(socketTimeout);
+            case APACHE -> ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionTimeout(connectionTimeout)
+                .socketTimeout(socketTimeout)
+                .connectionMaxIdleTime(connectionMaxIdleTime)
+                .tcpKeepAlive(tcpKeepAlive);
+            case CRT -> {
+                AwsCrtHttpClient.Builder builder = AwsCrtHttpClient.builder()
+                    .maxConcurrency(maxConnections)
+                    .connectionTimeout(connectionTimeout)
+                    .connectionMaxIdleTime(connectionMaxIdleTime);
+                if (tcpKeepAlive) {
+                    builder.tcpKeepAliveConfiguration(crtKeepAlive());
+                }
+                yield builder;
+            }
+        };
+    }
+
+    public SdkAsyncHttpClient.Builder<?> asyncHttpClientBuilder() {
+        if (kind == Kind.CRT) {
+            AwsCrtAsyncHttpClient.Builder builder = AwsCrtAsyncHttpClient.builder()
+                .maxConcurrency(maxConnections)
+                .connectionTimeout(connectionTimeout)
+                .connectionMaxIdleTime(connectionMaxIdleTime);
+            if (tcpKeepAlive) {
+                builder.tcpKeepAliveConfiguration(crtKeepAlive());
+            }
+            return builder;
+        }
+        return NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(maxConnections)
+            .connectionTimeout(connectionTimeout)
+            .readTimeout(socketTimeout)
+            .writeTimeout(socketTimeout)
+            .connectionMaxIdleTime(connectionMaxIdleTime)
+            .tcpKeepAlive(tcpKeepAlive);
+    }
+
+    private TcpKeepAliveConfiguration crtKeepAlive() {
+        // Probe idle connections well before the service closes them
+        return TcpKeepAliveConfiguration.builder()
+            .keepAliveInterval(Duration.ofSeconds(30))
+            .keepAliveTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+
+    private static long longFromEnv(Function<String, String> env, String name, long defaultValue) {
+        String value = env.apply(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for {}: {}, using default {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static boolean booleanFromEnv(Function<String, String> env, String name, boolean defaultValue) {
+        String value = env.apply(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
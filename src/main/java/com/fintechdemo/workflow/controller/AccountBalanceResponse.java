@@ -0,0 +1,30 @@
+package com.fintechdemo.workflow.controller;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+public class AccountBalanceResponse {
+    private String accountId;
+    private String currency;
+    private Instant asOf;
+    private BigDecimal balance;
+    private BigDecimal pending;
+    private Integer checkpointDate;       // Day of the checkpoint the balance started from, null if none
+    private String lastSequence;          // Last transaction included in the balance
+    private int replayedTransactions;     // Transactions replayed on top of the checkpoint
+
+    public AccountBalanceResponse(String accountId, String currency, Instant asOf, BigDecimal balance, BigDecimal pending,
+                                  Integer checkpointDate, String lastSequence, int replayedTransactions) {
+        this.accountId = accountId;
+        this.currency = currency;
+        this.asOf = asOf;
+        this.balance = balance;
+        this.pending = pending;
+        this.checkpointDate = checkpointDate;
+        this.lastSequence = lastSequence;
+        this.replayedTransactions = replayedTransactions;
+    }
+}
@@ -35,6 +35,22 @@ public class AccountController {
         return ResponseEntity.ok(account);
     }
 
+    @GetMapping("/api/accounts/{id}/balance")
+    public ResponseEntity<AccountBalanceResponse> getBalance(@PathVariable UUID id,
+                                                             @RequestParam(required = false) String asOf) {
+        log.info("Getting balance of account {} as of {}", id, asOf);
+        try {
+            AccountBalanceResponse balance = accountService.getBalanceAsOf(id.toString(), asOf);
+            if (balance == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(balance);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid balance request for account {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/api/customers/{customerId}/accounts")
     public ResponseEntity<List<Account>> getCustomerAccounts(@PathVariable UUID customerId) {
         log.info("Getting accounts for customer: {}", customerId);
@@ -0,0 +1,22 @@
+package com.fintechdemo.workflow.controller;
+
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+public class BatchTransactionItem {
+    private String accountId;        // Required for cross-account batches; must match the path otherwise
+    private Transaction.TransactionType transactionType;
+    private String userId;
+    private String currency;
+    private BigDecimal amount;
+    private Instant transactedAt;
+    private String payorIBAN;        // Deposits only
+    private String beneficiaryIBAN;  // Withdrawals only
+    private String originatingCountry;
+    private String paymentRef;
+    private String purposeRef;
+}
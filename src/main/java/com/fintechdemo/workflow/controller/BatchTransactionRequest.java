@@ -0,0 +1,10 @@
+package com.fintechdemo.workflow.controller;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransactionRequest {
+    private List<BatchTransactionItem> transactions;
+}
@@ -0,0 +1,49 @@
+package com.fintechdemo.workflow.controller;
+
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransactionResponse {
+    private List<ItemResult> results;  // One per submitted item, in the order submitted
+    private int created;
+    private int invalid;
+    private int failed;
+    private int unknown;
+
+    public BatchTransactionResponse(List<ItemResult> results) {
+        this.results = results;
+        for (ItemResult result : results) {
+            switch (result.getStatus()) {
+                case CREATED -> created++;
+                case INVALID -> invalid++;
+                case FAILED -> failed++;
+                case UNKNOWN -> unknown++;
+            }
+        }
+    }
+
+    public enum ItemStatus {
+        CREATED,   // Written as a pending transaction
+        INVALID,   // Rejected by validation, nothing was written
+        FAILED,    // Valid, but DynamoDB did not take it; submitting it again is safe
+        UNKNOWN    // The write went unanswered and may have been applied; look it up by ID before submitting again
+    }
+
+    @Data
+    public static class ItemResult {
+        private int index;
+        private ItemStatus status;
+        private Transaction transaction;  // Set when created or unknown
+        private String error;             // Set when invalid, failed or unknown
+
+        public ItemResult(int index, ItemStatus status, Transaction transaction, String error) {
+            this.index = index;
+            this.status = status;
+            this.transaction = transaction;
+            this.error = error;
+        }
+    }
+}
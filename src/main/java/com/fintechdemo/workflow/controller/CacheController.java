@@ -0,0 +1,32 @@
+package com.fintechdemo.workflow.controller;
+
+import com.fintechdemo.workflow.service.AccountService;
+import com.fintechdemo.workflow.service.CacheStats;
+import com.fintechdemo.workflow.service.CustomerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final CustomerService customerService;
+    private final AccountService accountService;
+
+    /**
+     * Hits, misses and evictions of this container's read caches.
+     */
+    @GetMapping("/api/cache-stats")
+    public ResponseEntity<List<CacheStats>> getCacheStats() {
+        List<CacheStats> stats = new ArrayList<>();
+        stats.add(customerService.cacheStats());
+        stats.addAll(accountService.cacheStats());
+        return ResponseEntity.ok(stats);
+    }
+}
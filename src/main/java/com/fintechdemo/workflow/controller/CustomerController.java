@@ -1,6 +1,7 @@
 package com.fintechdemo.workflow.controller;
 
 import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.service.CustomerOverviewService;
 import com.fintechdemo.workflow.service.CustomerService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +10,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -17,6 +19,7 @@ import java.util.UUID;
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final CustomerOverviewService customerOverviewService;
 
     @PostMapping
     public ResponseEntity<Customer> createCustomer(@RequestBody CreateCustomerRequest request) {
@@ -32,6 +35,29 @@ public class CustomerController {
         return ResponseEntity.ok(customer);
     }
 
+    @GetMapping("/{id}/overview")
+    public CompletableFuture<ResponseEntity<CustomerOverviewResponse>> getCustomerOverview(
+            @PathVariable UUID id,
+            @RequestParam(required = false, defaultValue = "5") Integer transactions) {
+        log.info("Getting overview of customer with id: {}", id);
+
+        CompletableFuture<CustomerOverviewResponse> overview;
+        try {
+            overview = customerOverviewService.getOverview(id.toString(), transactions);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid overview request for customer {}: {}", id, e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return overview
+            .thenApply(overview -> overview == null
+                ? ResponseEntity.<CustomerOverviewResponse>notFound().build()
+                : ResponseEntity.ok(overview))
+            .exceptionally(e -> {
+                log.error("Failed to get overview of customer {}: {}", id, e.getMessage(), e);
+                return ResponseEntity.internalServerError().build();
+            });
+    }
+
     @Data
     public static class CreateCustomerRequest {
         private String name;
@@ -0,0 +1,30 @@
+package com.fintechdemo.workflow.controller;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CustomerOverviewResponse {
+    private Customer customer;
+    private List<AccountOverview> accounts;
+
+    public CustomerOverviewResponse(Customer customer, List<AccountOverview> accounts) {
+        this.customer = customer;
+        this.accounts = accounts;
+    }
+
+    @Data
+    public static class AccountOverview {
+        private Account account;
+        private List<Transaction> transactions;  // Newest first, pending ones before stamped ones
+
+        public AccountOverview(Account account, List<Transaction> transactions) {
+            this.account = account;
+            this.transactions = transactions;
+        }
+    }
+}
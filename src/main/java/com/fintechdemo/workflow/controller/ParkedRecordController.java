@@ -0,0 +1,31 @@
+package com.fintechdemo.workflow.controller;
+
+import com.fintechdemo.workflow.lambda.ParkedRecordRedriver;
+import com.fintechdemo.workflow.model.ParkedRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/parked-records")
+@RequiredArgsConstructor
+public class ParkedRecordController {
+
+    private final ParkedRecordRedriver parkedRecordRedriver;
+
+    @GetMapping
+    public ResponseEntity<List<ParkedRecord>> getParkedRecords(@RequestParam(defaultValue = "100") int limit) {
+        log.info("Listing up to {} parked records", limit);
+        return ResponseEntity.ok(parkedRecordRedriver.listParked(limit));
+    }
+
+    @PostMapping("/redrive")
+    public ResponseEntity<ParkedRecordRedriver.RedriveResult> redrive(@RequestParam(defaultValue = "100") int limit) {
+        log.info("Redriving up to {} parked records", limit);
+        return ResponseEntity.ok(parkedRecordRedriver.redrive(limit));
+    }
+}
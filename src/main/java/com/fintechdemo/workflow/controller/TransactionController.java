@@ -4,7 +4,6 @@ import com.fintechdemo.workflow.model.Transaction;
 import com.fintechdemo.workflow.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.io.StringWriter;
 import java.io.IOException;
 import org.apache.commons.csv.CSVFormat;
@@ -20,7 +20,6 @@ import org.apache.commons.csv.CSVPrinter;
 @Slf4j
 @RestController
 @RequiredArgsConstructor
-@Lazy  // Lazy initialization to prevent issues with SnapStart
 public class TransactionController {
 
     private final TransactionService transactionService;
@@ -28,6 +27,7 @@ public class TransactionController {
     @PostMapping("/api/accounts/{accountId}/deposit")
     public ResponseEntity<Transaction> createDeposit(
             @PathVariable String accountId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody CreateDepositRequest request) {
         log.info("Creating deposit for account: {}", accountId);
         
@@ -41,13 +41,17 @@ public class TransactionController {
                 request.getPayorIBAN(),
                 request.getOriginatingCountry(),
                 request.getPaymentRef(),
-                request.getPurposeRef()
+                request.getPurposeRef(),
+                idempotencyKey
             );
             
             return ResponseEntity.status(201).body(transaction);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid deposit request for account {}: {}", accountId, e.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Conflicting deposit request for account {}: {}", accountId, e.getMessage());
+            return ResponseEntity.status(409).build();
         } catch (Exception e) {
             log.error("Failed to create deposit for account {}: {}", accountId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -57,6 +61,7 @@ public class TransactionController {
     @PostMapping("/api/accounts/{accountId}/transaction")
     public ResponseEntity<Transaction> createWithdrawal(
             @PathVariable String accountId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody CreateWithdrawalRequest request) {
         log.info("Creating withdrawal for account: {}", accountId);
         
@@ -70,33 +75,72 @@ public class TransactionController {
                 request.getBeneficiaryIBAN(),
                 request.getOriginatingCountry(),
                 request.getPaymentRef(),
-                request.getPurposeRef()
+                request.getPurposeRef(),
+                idempotencyKey
             );
             
             return ResponseEntity.status(201).body(transaction);
         } catch (IllegalArgumentException e) {
             log.warn("Invalid withdrawal request for account {}: {}", accountId, e.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Conflicting withdrawal request for account {}: {}", accountId, e.getMessage());
+            return ResponseEntity.status(409).build();
         } catch (Exception e) {
             log.error("Failed to create withdrawal for account {}: {}", accountId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @PostMapping("/api/accounts/{accountId}/transactions:batch")
+    public ResponseEntity<BatchTransactionResponse> createAccountTransactions(
+            @PathVariable String accountId,
+            @RequestBody BatchTransactionRequest request) {
+        log.info("Creating transaction batch for account: {}", accountId);
+        return createTransactions(accountId, request);
+    }
+
+    @PostMapping("/api/transactions:batch")
+    public ResponseEntity<BatchTransactionResponse> createTransactions(@RequestBody BatchTransactionRequest request) {
+        log.info("Creating cross-account transaction batch");
+        return createTransactions(null, request);
+    }
+
+    private ResponseEntity<BatchTransactionResponse> createTransactions(String accountId, BatchTransactionRequest request) {
+        try {
+            BatchTransactionResponse response = transactionService.createTransactions(accountId, request.getTransactions());
+            // 207 tells clients to look at the outcome of each item
+            int status = response.getCreated() == response.getResults().size() ? 201 : 207;
+            return ResponseEntity.status(status).body(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid transaction batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Failed to create transaction batch: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/api/accounts/{accountId}/transactions")
-    public ResponseEntity<TransactionListResponse> getAccountTransactions(
+    public CompletableFuture<ResponseEntity<TransactionListResponse>> getAccountTransactions(
             @PathVariable String accountId,
             @RequestParam(required = false) String nextToken,
             @RequestParam(required = false, defaultValue = "20") Integer limit) {
         log.info("Getting transactions for account: {}", accountId);
         
+        CompletableFuture<TransactionListResponse> page;
         try {
-            TransactionListResponse response = transactionService.getAccountTransactions(accountId, nextToken, limit);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.error("Failed to get transactions for account {}: {}", accountId, e.getMessage(), e);
-            return ResponseEntity.internalServerError().build();
+            page = transactionService.getAccountTransactionsAsync(accountId, nextToken, limit);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid transactions request for account {}: {}", accountId, e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
+        return page
+            .thenApply(ResponseEntity::ok)
+            .exceptionally(e -> {
+                log.error("Failed to get transactions for account {}: {}", accountId, e.getMessage(), e);
+                return ResponseEntity.internalServerError().build();
+            });
     }
 
     @GetMapping("/api/accounts/{accountId}/transactions.csv")
@@ -8,7 +8,7 @@ import java.util.List;
 @Data
 public class TransactionListResponse {
     private List<Transaction> transactions;
-    private String nextToken;  // For pagination through non-pending transactions
+    private String nextToken;  // Opaque cursor of the next page, null on the last
     
     public TransactionListResponse(List<Transaction> transactions, String nextToken) {
         this.transactions = transactions;
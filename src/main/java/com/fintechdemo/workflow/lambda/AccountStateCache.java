@@ -0,0 +1,47 @@
+package com.fintechdemo.workflow.lambda;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of per-account state last written by this container: the account itself, or the
+ * state of its sequence counter. A cached entry is only a starting point for the next stamp: the
+ * conditional write still detects writes by other containers, in which case the entry is evicted and
+ * the state re-read.
+ */
+final class AccountStateCache<V> {
+
+    private final int maxEntries;
+    private final Map<String, V> entries;
+
+    AccountStateCache(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > AccountStateCache.this.maxEntries;
+            }
+        };
+    }
+
+    synchronized V get(String accountId) {
+        return entries.get(accountId);
+    }
+
+    /**
+     * Caches state as written; callers must not modify it afterwards.
+     */
+    synchronized void put(String accountId, V state) {
+        if (maxEntries > 0) {
+            entries.put(accountId, state);
+        }
+    }
+
+    synchronized void evict(String accountId) {
+        entries.remove(accountId);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
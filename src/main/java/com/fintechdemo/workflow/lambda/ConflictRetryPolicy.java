@@ -0,0 +1,48 @@
+package com.fintechdemo.workflow.lambda;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded exponential backoff with full jitter for optimistic lock conflicts on an account. The delay
+ * before retry {@code n} is uniformly distributed between zero and
+ * {@code min(maxDelayMillis, baseDelayMillis * 2^(n-1))}, which spreads out writers racing on the same
+ * hot account instead of having them collide again in lockstep.
+ */
+final class ConflictRetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    ConflictRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(0, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     */
+    long delayMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    void backoff(int attempt) {
+        long delay = delayMillis(attempt);
+        if (delay == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while backing off after a lock conflict", e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Parked records as items of the workflow table. Attempts are counted with {@code ADD}, so concurrent
+ * invocations retrying the same record never lose a count.
+ */
+final class DynamoDbParkedRecordStore implements ParkedRecordStore {
+
+    // Failures of records that recover on their own are only kept for inspection
+    private static final Duration FAILURE_RETENTION = Duration.ofDays(7);
+
+    // The stream processor replaces its client around a SnapStart snapshot, so the tables are looked up per call
+    private final Supplier<WorkflowTables> tables;
+
+    DynamoDbParkedRecordStore(Supplier<WorkflowTables> tables) {
+        this.tables = tables;
+    }
+
+    @Override
+    public int recordFailure(String transactionId, String accountId, String error) {
+        Instant now = Instant.now();
+        WorkflowTables tables = this.tables.get();
+        Map<String, AttributeValue> attributes = tables.dynamoDbClient().updateItem(UpdateItemRequest.builder()
+                .tableName(tables.tableName())
+                .key(key(transactionId))
+                .updateExpression("SET #type = :type, #transactionId = :transactionId, #accountId = :accountId, "
+                    + "#lastError = :error, #createdAt = if_not_exists(#createdAt, :now), #updatedAt = :now, "
+                    + "#expiresAt = :expiresAt ADD #attempts :one")
+                .expressionAttributeNames(Map.of(
+                    "#type", "type",
+                    "#transactionId", ParkedRecord.TRANSACTION_ID,
+                    "#accountId", ParkedRecord.ACCOUNT_ID,
+                    "#lastError", ParkedRecord.LAST_ERROR,
+                    "#createdAt", "createdAt",
+                    "#updatedAt", "updatedAt",
+                    "#expiresAt", ParkedRecord.EXPIRES_AT,
+                    "#attempts", ParkedRecord.ATTEMPTS))
+                .expressionAttributeValues(Map.of(
+                    ":type", string(ParkedRecord.ENTITY_TYPE),
+                    ":transactionId", string(transactionId),
+                    ":accountId", string(accountId),
+                    ":error", string(error),
+                    ":now", string(now.toString()),
+                    ":expiresAt", number(now.plus(FAILURE_RETENTION).getEpochSecond()),
+                    ":one", number(1)))
+                .returnValues(ReturnValue.UPDATED_NEW)
+                .build())
+            .attributes();
+        return Integer.parseInt(attributes.get(ParkedRecord.ATTEMPTS).n());
+    }
+
+    @Override
+    public void park(String transactionId, String accountId, String error) {
+        Instant now = Instant.now();
+        WorkflowTables tables = this.tables.get();
+        // Parked records stay until they are redriven, so the TTL of the failure count is removed
+        tables.dynamoDbClient().updateItem(UpdateItemRequest.builder()
+            .tableName(tables.tableName())
+            .key(key(transactionId))
+            .updateExpression("SET #type = :type, #transactionId = :transactionId, #accountId = :accountId, "
+                + "#lastError = :error, #parent = :parent, #sequence = if_not_exists(#sequence, :sequence), "
+                + "#parkedAt = if_not_exists(#parkedAt, :now), #createdAt = if_not_exists(#createdAt, :now), "
+                + "#updatedAt = :now REMOVE #expiresAt")
+            .expressionAttributeNames(Map.of(
+                "#type", "type",
+                "#transactionId", ParkedRecord.TRANSACTION_ID,
+                "#accountId", ParkedRecord.ACCOUNT_ID,
+                "#lastError", ParkedRecord.LAST_ERROR,
+                "#parent", "parent",
+                "#sequence", "sequence",
+                "#parkedAt", ParkedRecord.PARKED_AT,
+                "#createdAt", "createdAt",
+                "#updatedAt", "updatedAt",
+                "#expiresAt", ParkedRecord.EXPIRES_AT))
+            .expressionAttributeValues(Map.of(
+                ":type", string(ParkedRecord.ENTITY_TYPE),
+                ":transactionId", string(transactionId),
+                ":accountId", string(accountId),
+                ":error", string(error),
+                ":parent", string(ParkedRecord.PARENT),
+                ":sequence", string(ParkedRecord.SEQUENCE_PREFIX + UuidV7.generate()),
+                ":now", string(now.toString())))
+            .build());
+    }
+
+    @Override
+    public List<ParkedRecord> listParked(int limit) {
+        QueryConditional parked = QueryConditional.sortBeginsWith(Key.builder()
+            .partitionValue(ParkedRecord.PARENT)
+            .sortValue(ParkedRecord.SEQUENCE_PREFIX)
+            .build());
+
+        return tables.get().parkedRecordsByParent().query(QueryEnhancedRequest.builder()
+                .queryConditional(parked)
+                .limit(limit)
+                .build())
+            .stream()
+            .flatMap(page -> page.items().stream())
+            .limit(limit)
+            .toList();
+    }
+
+    @Override
+    public void release(String transactionId) {
+        WorkflowTables tables = this.tables.get();
+        tables.dynamoDbClient().deleteItem(DeleteItemRequest.builder()
+            .tableName(tables.tableName())
+            .key(key(transactionId))
+            .build());
+    }
+
+    private static Map<String, AttributeValue> key(String transactionId) {
+        return Map.of("id", string(ParkedRecord.recordId(transactionId)));
+    }
+
+    private static AttributeValue string(String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+}
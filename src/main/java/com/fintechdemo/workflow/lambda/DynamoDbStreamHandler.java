@@ -3,81 +3,453 @@ package com.fintechdemo.workflow.lambda;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
 import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import com.fintechdemo.workflow.config.DynamoDbHttpTransport;
 import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.BalanceCheckpoint;
+import com.fintechdemo.workflow.model.LedgerShard;
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.model.SequenceCodec;
 import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import com.fintechdemo.workflow.service.AccountUpdateListener;
 import lombok.extern.slf4j.Slf4j;
+import org.crac.Core;
+import org.crac.Resource;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Document;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
-import software.amazon.awssdk.enhanced.dynamodb.model.TransactPutItemEnhancedRequest;
-import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedResponse;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactGetItemsEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
 import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
 
 import java.math.BigDecimal;
 
-import com.fasterxml.uuid.Generators;
-import com.fasterxml.uuid.impl.TimeBasedReorderedGenerator;
-
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.DoubleAdder;
 
 @Slf4j
-public class DynamoDbStreamHandler implements RequestHandler<DynamodbEvent, String> {
+public class DynamoDbStreamHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse>, Resource {
 
     private DynamoDbClient dynamoDbClient;
     private String tableName;
-    
-    // UUIDv7 generator for version fields
-    private static final TimeBasedReorderedGenerator UUID_V7_GENERATOR = Generators.timeBasedReorderedGenerator();
-    
-    // Date formatter for sequence generation (YYYYMMDD format)
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // Enhanced client and table handles over dynamoDbClient and tableName, rebuilt whenever either changes
+    private volatile WorkflowTables tables;
+
+    // Only a client built by this handler is closed around a snapshot; tests inject a shared one
+    private boolean ownsClient;
+
+    // Maximum number of accounts stamped concurrently within one stream batch
+    private int accountConcurrency = intFromEnv("STREAM_ACCOUNT_CONCURRENCY", DEFAULT_ACCOUNT_CONCURRENCY);
+
+    // How stamps are written: full-item puts, or update expressions touching only changed attributes
+    private StampMode stampMode = StampMode.fromEnv(System.getenv("STREAM_STAMP_MODE"));
+
+    // Whether UPDATE-mode stamps of unsharded accounts take their sequences from per-day counter items. Off by
+    // default: each stamp then also writes the counter item, which costs more write units than the reads it saves
+    private boolean sequenceCounters = booleanFromEnv("STREAM_SEQUENCE_COUNTERS", false);
+
+    // Capacity consumed by stamping and by the account and counter reads behind it, as reported by ReturnConsumedCapacity
+    private final DoubleAdder consumedWriteCapacity = new DoubleAdder();
+    private final DoubleAdder consumedReadCapacity = new DoubleAdder();
+
+    // In-process retry of optimistic lock conflicts, before falling back to stream redelivery
+    private ConflictRetryPolicy retryPolicy = new ConflictRetryPolicy(
+        intFromEnv("STREAM_RETRY_MAX_ATTEMPTS", DEFAULT_RETRY_MAX_ATTEMPTS),
+        intFromEnv("STREAM_RETRY_BASE_DELAY_MS", DEFAULT_RETRY_BASE_DELAY_MS),
+        intFromEnv("STREAM_RETRY_MAX_DELAY_MS", DEFAULT_RETRY_MAX_DELAY_MS));
+
+    private final StreamMetrics metrics = new StreamMetrics();
+
+    // Account state written by this container, saving the account read for steady traffic
+    private final AccountStateCache<Account> accountCache = new AccountStateCache<>(
+        intFromEnv("STREAM_ACCOUNT_CACHE_SIZE", DEFAULT_ACCOUNT_CACHE_SIZE));
+
+    // Counter items of unsharded accounts, and the counters this container wrote last
+    private final SequenceCounters counters = new SequenceCounters(this::tables,
+        intFromEnv("STREAM_ACCOUNT_CACHE_SIZE", DEFAULT_ACCOUNT_CACHE_SIZE), metrics, this::addReadCapacity);
+
+    // How often this container moves the totals of a sharded account's ledger shards into the account
+    private long ledgerRollupIntervalMillis = intFromEnv("STREAM_LEDGER_ROLLUP_INTERVAL_MS", DEFAULT_LEDGER_ROLLUP_INTERVAL_MS);
+    private final Map<String, Long> lastLedgerRollup = new ConcurrentHashMap<>();
+
+    // Failed stamps after which a pending transaction is parked and skipped by the stream; 0 never parks
+    private int parkAfterAttempts = intFromEnv("STREAM_PARK_AFTER_ATTEMPTS", DEFAULT_PARK_AFTER_ATTEMPTS);
+
+    // Where failures are counted and transactions parked: table items, or this container's memory
+    private volatile ParkedRecordStore parkedRecords;
+
+    // Told of every balance update, for the read caches of a container that also serves the API
+    private AccountUpdateListener accountUpdateListener = AccountUpdateListener.NONE;
+
+    // DynamoDB limits: TransactWriteItems accepts 100 actions, BatchGetItem 100 keys
+    private static final int MAX_TRANSACT_ITEMS = 100;
+    private static final int MAX_BATCH_GET_ITEMS = 100;
+
+    // Kept well below the SDK's default HTTP connection pool size (50)
+    private static final int DEFAULT_ACCOUNT_CONCURRENCY = 8;
+
+    private static final int DEFAULT_RETRY_MAX_ATTEMPTS = 5;
+    private static final int DEFAULT_RETRY_BASE_DELAY_MS = 10;
+    private static final int DEFAULT_RETRY_MAX_DELAY_MS = 200;
+
+    private static final int DEFAULT_ACCOUNT_CACHE_SIZE = 1000;
+
+    private static final int DEFAULT_LEDGER_ROLLUP_INTERVAL_MS = 60_000;
+
+    private static final int DEFAULT_PARK_AFTER_ATTEMPTS = 3;
+
+    // Account recorded for a stream record parked before it could be decoded
+    static final String UNKNOWN_ACCOUNT = "unknown";
+
+    // Key of the item read while priming; it is never written, so the reads return nothing
+    private static final String PRIMING_ID = new UUID(0L, 0L).toString();
+
+    /**
+     * A pending transaction extracted from a stream record, in arrival order. The image is null for an
+     * INSERT that came without one, until the transaction is read from the table.
+     */
+    record PendingTransaction(String transactionId, String accountId, Transaction image) {
+    }
+
+    /**
+     * The first transaction an account partition could not stamp, and why.
+     */
+    record PartitionFailure(String transactionId, Throwable cause) {
+    }
+
+    // Schemas used to decode stream images and encode stamps, shared with the services
+    private static final TableSchema<Transaction> TRANSACTION_SCHEMA = WorkflowTables.TRANSACTION_SCHEMA;
+    private static final TableSchema<Account> ACCOUNT_SCHEMA = WorkflowTables.ACCOUNT_SCHEMA;
+    private static final TableSchema<LedgerShard> SHARD_SCHEMA = WorkflowTables.SHARD_SCHEMA;
+    private static final TableSchema<BalanceCheckpoint> CHECKPOINT_SCHEMA = WorkflowTables.CHECKPOINT_SCHEMA;
+
+    enum StampMode {
+        PUT,
+        UPDATE;
+
+        static StampMode fromEnv(String value) {
+            if (value == null || value.isBlank()) {
+                return UPDATE;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid STREAM_STAMP_MODE {}, using {}", value, UPDATE);
+                return UPDATE;
+            }
+        }
+    }
+
+    /**
+     * Raised when an account's partition cannot be fully stamped. Carries the first transaction that
+     * was not stamped, so that only the failed tail of the batch is redelivered.
+     */
+    static class AccountBatchException extends RuntimeException {
+        private final String firstFailedTransactionId;
+
+        AccountBatchException(String accountId, String firstFailedTransactionId, Throwable cause) {
+            super("Failed to stamp account " + accountId + " from transaction " + firstFailedTransactionId
+                  + ": " + cause.getMessage(), cause);
+            this.firstFailedTransactionId = firstFailedTransactionId;
+        }
+
+        String getFirstFailedTransactionId() {
+            return firstFailedTransactionId;
+        }
+    }
+
+    /**
+     * Raised when the account, or the ledger shard stamped on, changed since it was read or no longer
+     * meets the stamp's condition, so the stamp has to be recomputed.
+     */
+    private static class AccountConflictException extends RuntimeException {
+        AccountConflictException(Throwable cause) {
+            super("Optimistic lock failure", cause);
+        }
+    }
+
+    /**
+     * Raised when an account's counter item moved on since it was read, so the counters have to be
+     * assigned again.
+     */
+    private static class CounterConflictException extends RuntimeException {
+        CounterConflictException(Throwable cause) {
+            super("Sequence counter changed since it was read", cause);
+        }
+    }
+
+    /**
+     * Raised when a transaction's version no longer matches the copy it was stamped from.
+     */
+    private static class StaleTransactionException extends RuntimeException {
+        StaleTransactionException(Throwable cause) {
+            super("Transaction version changed since it was read", cause);
+        }
+    }
+
+    public DynamoDbStreamHandler() {
+        // Lambda constructs the handler during init, before a SnapStart snapshot is taken.
+        // On JVMs without CRaC support the registration does nothing.
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Builds the client and runs the decode, stamp and read paths once. Their classes are then
+     * loaded and initialized in the snapshot, not on the first batch after a cold start.
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        log.info("Priming stream handler before checkpoint");
+        if (dynamoDbClient == null) {
+            initializeSpringContext();
+        }
+        prime();
+        if (ownsClient) {
+            // Pooled connections would be long dead by the time the snapshot is restored
+            dynamoDbClient.close();
+            dynamoDbClient = null;
+        }
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        log.info("Restoring stream handler from snapshot");
+        UuidV7.reseed();
+        if (dynamoDbClient == null) {
+            initializeSpringContext();
+        }
+        // Connect now rather than on the first batch
+        primeConnection();
+    }
 
     @Override
-    public String handleRequest(DynamodbEvent event, Context context) {
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
         try {
-            log.info("Stream handler invoked with {} records", event.getRecords().size());
-            
-            // Initialize DynamoDB client if not already done
-            if (dynamoDbClient == null) {
-                log.info("Initializing DynamoDB client...");
-                initializeSpringContext();
-                log.info("DynamoDB client initialized successfully");
-            }
+            List<DynamodbEvent.DynamodbStreamRecord> records = event.getRecords();
+            log.info("Stream handler invoked with {} records", records.size());
+            metrics.startBatch(records.size());
+
+            ensureClient();
 
-            log.info("Processing DynamoDB stream event with {} records", event.getRecords().size());
+            log.info("Processing DynamoDB stream event with {} records", records.size());
 
-            for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
-                log.info("Processing record: eventName={}, eventSource={}", 
+            List<PendingTransaction> decoded = new ArrayList<>(records.size());
+            int firstFailedRecord = records.size();
+
+            for (int i = 0; i < records.size(); i++) {
+                DynamodbEvent.DynamodbStreamRecord record = records.get(i);
+                log.info("Processing record: eventName={}, eventSource={}",
                          record.getEventName(), record.getEventSource());
-                processRecord(record);
+                if (record.getDynamodb() != null && record.getDynamodb().getApproximateCreationDateTime() != null) {
+                    recordStreamLag(record.getDynamodb().getApproximateCreationDateTime().getTime());
+                }
+                try {
+                    decoded.add(processRecord(record));
+                } catch (RuntimeException e) {
+                    String sequenceNumber = record.getDynamodb() != null ? record.getDynamodb().getSequenceNumber() : null;
+                    if (parkUndecodableRecord(keyId(record), sequenceNumber, rootMessage(e))) {
+                        decoded.add(null);
+                        continue;
+                    }
+                    // Its account is unknown, so nothing after it can safely be stamped in this invocation
+                    firstFailedRecord = i;
+                    break;
+                }
+            }
+
+            firstFailedRecord = stampDecodedRecords(readKeysOnly(decoded), firstFailedRecord);
+
+            if (firstFailedRecord < records.size()) {
+                // Lambda checkpoints everything before the reported record and redelivers from it;
+                // already stamped records in the tail are skipped by the pending- idempotency check
+                String failedSequenceNumber = records.get(firstFailedRecord).getDynamodb().getSequenceNumber();
+                log.warn("Reporting batch item failure at record {} of {} (sequence number {})",
+                         firstFailedRecord, records.size(), failedSequenceNumber);
+                return new StreamsEventResponse(List.of(
+                    new StreamsEventResponse.BatchItemFailure(failedSequenceNumber)));
             }
-            
-            log.info("Successfully processed all {} records", event.getRecords().size());
-            return "SUCCESS";
+
+            log.info("Successfully processed all {} records", records.size());
+            return new StreamsEventResponse(List.of());
         } catch (Exception e) {
             log.error("Failed to process DynamoDB stream event: {}", e.getMessage(), e);
             e.printStackTrace(); // Print full stack trace to CloudWatch
             // Throw exception to trigger retry mechanism
             throw new RuntimeException("Stream processing failed: " + e.getMessage(), e);
+        } finally {
+            metrics.publish(context != null ? context.getFunctionName() : null);
+        }
+    }
+
+    /**
+     * Groups the pending transactions decoded from a batch by account and stamps them.
+     *
+     * @param decoded the pending transaction of each record in order, null for records that are skipped
+     * @param firstFailedRecord index of the first record that could not be decoded, or the batch size
+     * @return index of the first record to redeliver, which is {@code firstFailedRecord} if every
+     *         account was stamped
+     */
+    int stampDecodedRecords(List<PendingTransaction> decoded, int firstFailedRecord) {
+        // Group pending transactions by account, preserving arrival order within each account
+        Map<String, List<Transaction>> pendingByAccount = new LinkedHashMap<>();
+        Map<String, Integer> recordIndexByTransaction = new HashMap<>();
+
+        for (int i = 0; i < decoded.size(); i++) {
+            PendingTransaction pending = decoded.get(i);
+            if (pending != null) {
+                pendingByAccount.computeIfAbsent(pending.accountId(), id -> new ArrayList<>())
+                    .add(pending.image());
+                recordIndexByTransaction.putIfAbsent(pending.transactionId(), i);
+            }
+        }
+
+        log.info("Batch contains pending transactions for {} accounts", pendingByAccount.size());
+
+        Map<String, PartitionFailure> failedPartitions = processAccountPartitions(pendingByAccount);
+        List<String> failedAccounts = new ArrayList<>();
+        for (Map.Entry<String, PartitionFailure> failure : failedPartitions.entrySet()) {
+            String firstFailed = parkPoisonTransactions(failure.getKey(), pendingByAccount.get(failure.getKey()), failure.getValue());
+            if (firstFailed == null) {
+                continue;
+            }
+            failedAccounts.add(failure.getKey());
+            Integer index = recordIndexByTransaction.get(firstFailed);
+            if (index != null && index < firstFailedRecord) {
+                firstFailedRecord = index;
+            }
+        }
+
+        if (!failedAccounts.isEmpty()) {
+            log.warn("Failed accounts: {}", failedAccounts);
+        }
+        return firstFailedRecord;
+    }
+
+    void ensureClient() {
+        if (dynamoDbClient == null) {
+            log.info("Initializing DynamoDB client...");
+            initializeSpringContext();
+            log.info("DynamoDB client initialized successfully");
+        }
+    }
+
+    /**
+     * Replaces the pending transactions decoded without an image, from a {@code KEYS_ONLY} stream, with
+     * their items read in one consistent batch get per 100 keys, or with null for items that no longer
+     * need a stamp.
+     */
+    private List<PendingTransaction> readKeysOnly(List<PendingTransaction> decoded) {
+        List<String> ids = decoded.stream()
+            .filter(pending -> pending != null && pending.image() == null)
+            .map(PendingTransaction::transactionId)
+            .distinct()
+            .toList();
+        if (ids.isEmpty()) {
+            return decoded;
+        }
+
+        Map<String, Transaction> items = loadTransactionsById(ids);
+        log.info("Read {} of {} transactions whose stream records had no image", items.size(), ids.size());
+        List<PendingTransaction> resolved = new ArrayList<>(decoded.size());
+        for (PendingTransaction pending : decoded) {
+            if (pending == null || pending.image() != null) {
+                resolved.add(pending);
+            } else {
+                Transaction item = items.get(pending.transactionId());
+                resolved.add(isPendingTransaction(item) ? new PendingTransaction(item.getId(), item.getAccountId(), item) : null);
+            }
         }
+        return resolved;
+    }
+
+    static boolean isPendingTransaction(Transaction item) {
+        return item != null
+            && Transaction.ENTITY_TYPE.equals(item.getType())
+            && item.getSequence() != null
+            && item.getSequence().startsWith("pending-");
+    }
+
+    /**
+     * Whether pending transactions can be stamped from images holding only the attributes the stamp
+     * reads. Full-item puts would drop every other attribute, so they need the complete transaction.
+     */
+    boolean stampsFromPartialImages() {
+        return stampMode == StampMode.UPDATE;
+    }
+
+    /**
+     * Reads items by id with a consistent batch get, mapped as transactions. Items of other types
+     * are returned too and must be filtered by the caller.
+     */
+    Map<String, Transaction> loadTransactionsById(List<String> ids) {
+        WorkflowTables tables = tables();
+        return loadTransactions(tables.enhancedClient(), tables.transactions(), ids);
+    }
+
+    /**
+     * The shared handles on the current client and table. The client is replaced around a SnapStart
+     * snapshot, and tests point the handler at their own table, so the handles follow both.
+     */
+    WorkflowTables tables() {
+        WorkflowTables current = tables;
+        if (current == null || current.dynamoDbClient() != dynamoDbClient || !current.tableName().equals(tableName)) {
+            current = new WorkflowTables(dynamoDbClient, tableName);
+            tables = current;
+        }
+        return current;
     }
 
     private void initializeSpringContext() {
         log.info("Initializing DynamoDB client for stream handler");
         // Skip Spring Boot initialization for Lambda stream handler
         // Initialize DynamoDB client directly
+        // Lambda sets AWS_REGION to the function's region, which is where the table lives
+        String region = System.getenv("AWS_REGION");
+        // The same DYNAMODB_HTTP_* settings as the API handler
         dynamoDbClient = DynamoDbClient.builder()
-            .region(software.amazon.awssdk.regions.Region.EU_WEST_1)
+            .region(region != null ? software.amazon.awssdk.regions.Region.of(region) : software.amazon.awssdk.regions.Region.EU_WEST_1)
+            .httpClientBuilder(DynamoDbHttpTransport.fromEnv().httpClientBuilder())
             .build();
+        ownsClient = true;
         tableName = System.getenv("WORKFLOW_TABLE");
         if (tableName == null) {
             tableName = "fintechdemo-workflow-dev";
@@ -85,21 +457,413 @@ public class DynamoDbStreamHandler implements RequestHandler<DynamodbEvent, Stri
         log.info("Initialized with table name: {}", tableName);
     }
 
-    private void processRecord(DynamodbEvent.DynamodbStreamRecord record) {
+    /**
+     * Exercises the per-batch code paths against synthetic data without writing anything.
+     */
+    void prime() {
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+
+        Account account = Account.builder()
+            .id(UUID.fromString(PRIMING_ID))
+            .type(Account.ENTITY_TYPE)
+            .currency("EUR")
+            .balance(BigDecimal.ZERO)
+            .pending(BigDecimal.ZERO)
+            .status(Account.AccountStatus.ACTIVE)
+            .version(UuidV7.generate())
+            .createdAt(now)
+            .updatedAt(now)
+            .build();
+
+        Transaction transaction = Transaction.builder()
+            .id(UuidV7.generate())
+            .type(Transaction.ENTITY_TYPE)
+            .parent(PRIMING_ID)
+            .sequence("pending-" + UuidV7.generate())
+            .version(UuidV7.generate())
+            .createdAt(now)
+            .updatedAt(now)
+            .accountId(PRIMING_ID)
+            .currency("EUR")
+            .amount(BigDecimal.ONE)
+            .transactedAt(now)
+            .transactionType(Transaction.TransactionType.DEPOSIT)
+            .build();
+
+        // Decode path: stream image conversion, record filtering and schema mapping
+        PendingTransaction pending = processRecord(primingRecord(transaction));
+
+        // Stamp path: sequence generation and both write encodings, built but never sent
+        int today = SequenceCodec.dateKey(now);
+        String sequence = generateNextSequence(generateNextSequence(null, today), today);
+        UUID version = UuidV7.generate();
+        Account updatedAccount = updateAccount(account, BigDecimal.ONE, BigDecimal.ZERO, sequence, UuidV7.generate(), now);
+        SequenceCounters.Allocation allocation = SequenceCounters.allocate(
+            new SequenceCounters.CounterState(today, 1, 1), today, null, 1);
+        LedgerShard shard = LedgerShard.create(account, 0, UuidV7.generate(), now);
+        LedgerShard updatedShard = updateShard(shard, BigDecimal.ONE, BigDecimal.ZERO,
+            SequenceCodec.nextInterleaved(null, today, null, 0, 2), UuidV7.generate(), now);
+        TransactWriteItemsRequest.builder()
+            .transactItems(
+                transactionUpdate(pending.image(), sequence, version, now),
+                transactionPut(pending.image(), sequence, version, now),
+                accountUpdate(account, updatedAccount, BigDecimal.ONE, BigDecimal.ZERO),
+                accountPut(account, updatedAccount),
+                counters.counterUpdate(PRIMING_ID, allocation, now),
+                counters.accountUpdate(PRIMING_ID, allocation, BigDecimal.ONE, BigDecimal.ZERO, null, version, now),
+                checkpointPut(BalanceCheckpoint.closing(updatedAccount, version, now)),
+                shardUpdate(shard, updatedShard, BigDecimal.ONE, BigDecimal.ZERO),
+                shardPut(shard, updatedShard))
+            .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+            .build();
+
+        StreamMetrics.prime();
+
+        // Read path, which also loads the HTTP client, signer and marshallers
+        primeConnection();
+
+        log.info("Primed stream handler in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Reads an item that never exists, opening a connection to DynamoDB. A failure here is only logged:
+     * the first batch would then connect as it would have without priming.
+     */
+    private void primeConnection() {
+        try {
+            WorkflowTables tables = tables();
+            loadAccount(tables.accounts(), PRIMING_ID);
+            counters.load(PRIMING_ID, null, false);
+            loadTransactions(tables.enhancedClient(), tables.transactions(), List.of(PRIMING_ID));
+        } catch (SdkException e) {
+            log.warn("Priming read from table {} failed: {}", tableName, e.getMessage());
+        }
+    }
+
+    private static DynamodbEvent.DynamodbStreamRecord primingRecord(Transaction transaction) {
+        Map<String, AttributeValue> image = new HashMap<>();
+        TRANSACTION_SCHEMA.itemToMap(transaction, true).forEach((name, value) -> {
+            if (value.s() != null) {
+                image.put(name, new AttributeValue().withS(value.s()));
+            } else if (value.n() != null) {
+                image.put(name, new AttributeValue().withN(value.n()));
+            }
+        });
+
+        StreamRecord streamRecord = new StreamRecord();
+        streamRecord.setKeys(Map.of("id", image.get("id")));
+        streamRecord.setNewImage(image);
+
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setEventName("INSERT");
+        record.setEventSource("aws:dynamodb");
+        record.setDynamodb(streamRecord);
+        return record;
+    }
+
+    /**
+     * Stamps each account's partition of the batch. Partitions are independent of each other and run
+     * concurrently on virtual threads, bounded by {@code accountConcurrency}; within a partition the
+     * transactions are still stamped strictly in arrival order.
+     *
+     * @return the first transaction that could not be stamped, keyed by account, for failed partitions
+     */
+    Map<String, PartitionFailure> processAccountPartitions(Map<String, List<Transaction>> pendingByAccount) {
+        Map<String, PartitionFailure> failures = new LinkedHashMap<>();
+
+        if (pendingByAccount.size() <= 1 || accountConcurrency <= 1) {
+            for (Map.Entry<String, List<Transaction>> entry : pendingByAccount.entrySet()) {
+                try {
+                    processAccountImages(entry.getKey(), entry.getValue());
+                } catch (RuntimeException e) {
+                    recordPartitionFailure(failures, entry.getKey(), entry.getValue(), e);
+                }
+            }
+            return failures;
+        }
+
+        log.info("Processing {} account partitions with concurrency {}", pendingByAccount.size(), accountConcurrency);
+
+        Semaphore permits = new Semaphore(accountConcurrency);
+        Map<String, Future<?>> results = new LinkedHashMap<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Map.Entry<String, List<Transaction>> entry : pendingByAccount.entrySet()) {
+                permits.acquire();
+                results.put(entry.getKey(), executor.submit(() -> {
+                    try {
+                        processAccountImages(entry.getKey(), entry.getValue());
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing account partitions", e);
+        }
+
+        // Every partition has finished once the executor is closed
+        for (Map.Entry<String, Future<?>> result : results.entrySet()) {
+            try {
+                result.getValue().get();
+            } catch (ExecutionException e) {
+                recordPartitionFailure(failures, result.getKey(), pendingByAccount.get(result.getKey()), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while processing account partitions", e);
+            }
+        }
+
+        return failures;
+    }
+
+    private void recordPartitionFailure(Map<String, PartitionFailure> failures, String accountId,
+                                        List<Transaction> transactions, Throwable cause) {
+        log.error("Failed to process account partition {}: {}", accountId, cause.getMessage(), cause);
+        failures.put(accountId, partitionFailure(transactions, cause));
+    }
+
+    private static PartitionFailure partitionFailure(List<Transaction> transactions, Throwable cause) {
+        String firstFailed = cause instanceof AccountBatchException batchException
+            ? batchException.getFirstFailedTransactionId()
+            : transactions.get(0).getId();
+        return new PartitionFailure(firstFailed, cause);
+    }
+
+    /**
+     * Counts a partition's failure against the transaction it failed at. Once that transaction has failed
+     * {@code parkAfterAttempts} times it is parked, and the rest of the partition is stamped without it,
+     * so that one bad transaction cannot hold up its stream shard. A later transaction of the partition
+     * failing for the same reason is parked right away: a deleted or corrupt account fails them all alike.
+     * Retryable failures, see {@link #isRetryable}, are not counted and only go back to redelivery.
+     *
+     * @return the first transaction of the partition to redeliver, or null if there is none left
+     */
+    private String parkPoisonTransactions(String accountId, List<Transaction> transactions, PartitionFailure failure) {
+        if (parkAfterAttempts <= 0) {
+            return failure.transactionId();
+        }
+
+        String parkedError = null;
+        while (true) {
+            String transactionId = failure.transactionId();
+            String error = rootMessage(failure.cause());
+            List<Transaction> rest = transactionsAfter(transactions, transactionId);
+            if (rest == null) {
+                return transactionId;
+            }
+            if (isRetryable(failure.cause())) {
+                log.info("Transaction {} of account {} failed with a retryable error, leaving it to redelivery: {}",
+                         transactionId, accountId, error);
+                return transactionId;
+            }
+
+            try {
+                int attempts = parkedRecords().recordFailure(transactionId, accountId, error);
+                if (attempts < parkAfterAttempts && !error.equals(parkedError)) {
+                    log.info("Transaction {} of account {} failed {} of {} attempts before parking",
+                             transactionId, accountId, attempts, parkAfterAttempts);
+                    return transactionId;
+                }
+                parkedRecords().park(transactionId, accountId, error);
+            } catch (SdkException e) {
+                // Without a count, the record is simply redelivered as before
+                log.warn("Failed to record failure of transaction {}: {}", transactionId, e.getMessage());
+                return transactionId;
+            }
+            metrics.increment(StreamMetrics.RECORDS_PARKED);
+            log.warn("🅿️ Parked transaction {} of account {}: {}", transactionId, accountId, error);
+            parkedError = error;
+
+            if (rest.isEmpty()) {
+                return null;
+            }
+            try {
+                processAccountImages(accountId, rest);
+                return null;
+            } catch (RuntimeException e) {
+                failure = partitionFailure(rest, e);
+            }
+        }
+    }
+
+    /**
+     * Counts a failure to decode a stream record against the transaction it holds, or against its
+     * sequence number if not even the key could be read. Once it has failed {@code parkAfterAttempts}
+     * times the record is parked with an {@link #UNKNOWN_ACCOUNT}, and the caller skips past it.
+     *
+     * @param transactionId the id in the record's keys, or null if there is none
+     * @return whether the record was parked and can be skipped
+     */
+    boolean parkUndecodableRecord(String transactionId, String sequenceNumber, String error) {
+        if (parkAfterAttempts <= 0) {
+            return false;
+        }
+        String recordKey = transactionId != null ? transactionId : "stream-record-" + sequenceNumber;
+        try {
+            int attempts = parkedRecords().recordFailure(recordKey, UNKNOWN_ACCOUNT, error);
+            if (attempts < parkAfterAttempts) {
+                log.info("Stream record {} failed to decode {} of {} attempts before parking", recordKey, attempts, parkAfterAttempts);
+                return false;
+            }
+            parkedRecords().park(recordKey, UNKNOWN_ACCOUNT, error);
+        } catch (SdkException e) {
+            log.warn("Failed to record decode failure of stream record {}: {}", recordKey, e.getMessage());
+            return false;
+        }
+        metrics.increment(StreamMetrics.RECORDS_PARKED);
+        log.warn("🅿️ Parked undecodable stream record {}: {}", recordKey, error);
+        return true;
+    }
+
+    private static String keyId(DynamodbEvent.DynamodbStreamRecord record) {
+        if (record.getDynamodb() == null || record.getDynamodb().getKeys() == null) {
+            return null;
+        }
+        AttributeValue id = record.getDynamodb().getKeys().get("id");
+        return id != null ? id.getS() : null;
+    }
+
+    /**
+     * Whether a failure may go away on redelivery: lock conflicts that outlasted the in-process retries,
+     * throttling, server errors and failures to reach DynamoDB at all. Anything else, such as a missing
+     * account, an undecodable sequence or an item that cannot be mapped, fails every delivery alike.
+     */
+    static boolean isRetryable(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof AccountConflictException || t instanceof CounterConflictException
+                || t instanceof StaleTransactionException || t instanceof SdkClientException) {
+                return true;
+            }
+            if (t instanceof TransactionCanceledException canceled && canceled.hasCancellationReasons()
+                && canceled.cancellationReasons().stream()
+                    .anyMatch(reason -> "ThrottlingError".equals(reason.code()) || "TransactionConflict".equals(reason.code()))) {
+                return true;
+            }
+            if (t instanceof AwsServiceException service && (service.isThrottlingException() || service.statusCode() >= 500)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The transactions following one in a partition, or null if it is not part of the partition.
+     */
+    private static List<Transaction> transactionsAfter(List<Transaction> transactions, String transactionId) {
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i).getId().equals(transactionId)) {
+                return transactions.subList(i + 1, transactions.size());
+            }
+        }
+        return null;
+    }
+
+    private static String rootMessage(Throwable cause) {
+        Throwable root = cause;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getName();
+    }
+
+    /**
+     * Stamps parked transactions again, oldest first, through {@link #processTransactionSequencing}.
+     * Transactions that get stamped, or turn out to need no stamp any more, are released; those that
+     * still fail stay parked with their new error. Records parked before they could be decoded are
+     * stamped on the account their item names; without an item there is nothing left to stamp.
+     */
+    ParkedRecordRedriver.RedriveResult redriveParkedRecords(int limit) {
+        ensureClient();
+        List<ParkedRecord> parked = parkedRecords().listParked(limit);
+        log.info("Redriving {} parked transactions", parked.size());
+
+        int redriven = 0;
+        List<String> stillFailing = new ArrayList<>();
+        for (ParkedRecord record : parked) {
+            try {
+                String accountId = record.getAccountId();
+                if (UNKNOWN_ACCOUNT.equals(accountId)) {
+                    Transaction item = loadTransactionsById(List.of(record.getTransactionId())).get(record.getTransactionId());
+                    accountId = item != null ? item.getAccountId() : null;
+                }
+                if (accountId != null) {
+                    processTransactionSequencing(record.getTransactionId(), accountId);
+                } else {
+                    log.warn("Parked stream record {} has no transaction left to stamp", record.getTransactionId());
+                }
+                parkedRecords().release(record.getTransactionId());
+                metrics.increment(StreamMetrics.RECORDS_REDRIVEN);
+                redriven++;
+            } catch (RuntimeException e) {
+                log.warn("Parked transaction {} of account {} still fails: {}",
+                         record.getTransactionId(), record.getAccountId(), e.getMessage());
+                parkedRecords().park(record.getTransactionId(), record.getAccountId(), rootMessage(e));
+                stillFailing.add(record.getTransactionId());
+            }
+        }
+
+        log.info("✅ Redrove {} of {} parked transactions", redriven, parked.size());
+        return new ParkedRecordRedriver.RedriveResult(redriven, stillFailing);
+    }
+
+    /**
+     * Records how long a stream record waited between its write and this invocation.
+     */
+    void recordStreamLag(long approximateCreationMillis) {
+        if (approximateCreationMillis > 0) {
+            metrics.recordMillis(StreamMetrics.STREAM_LAG, System.currentTimeMillis() - approximateCreationMillis);
+        }
+    }
+
+    /**
+     * Records how long stamped transactions were pending, from their creation to their stamp.
+     */
+    private void recordStamped(List<Transaction> stamped) {
+        long now = System.currentTimeMillis();
+        for (Transaction transaction : stamped) {
+            if (transaction.getCreatedAt() != null) {
+                metrics.recordMillis(StreamMetrics.STAMP_LATENCY, now - transaction.getCreatedAt().toEpochMilli());
+            }
+        }
+    }
+
+    ParkedRecordStore parkedRecords() {
+        if (parkedRecords == null) {
+            synchronized (this) {
+                if (parkedRecords == null) {
+                    parkedRecords = "memory".equalsIgnoreCase(System.getenv("STREAM_PARKED_RECORD_STORE"))
+                        ? new InMemoryParkedRecordStore()
+                        : new DynamoDbParkedRecordStore(this::tables);
+                }
+            }
+        }
+        return parkedRecords;
+    }
+
+    private PendingTransaction processRecord(DynamodbEvent.DynamodbStreamRecord record) {
         try {
             log.info("Processing record with eventName: {}", record.getEventName());
-            
+
             // Only process INSERT events (new transactions)
             if (!"INSERT".equals(record.getEventName())) {
                 log.info("Skipping non-INSERT event: {}", record.getEventName());
-                return;
+                return null;
             }
 
             // Extract the new image
             java.util.Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();
             if (newImage == null) {
-                log.warn("No new image in record, skipping");
-                return;
+                // A KEYS_ONLY stream: the transaction is read from the table before stamping
+                String transactionId = keyId(record);
+                if (transactionId == null) {
+                    log.warn("No new image and no key in record, skipping");
+                    return null;
+                }
+                log.info("No new image in record, reading transaction {} from the table", transactionId);
+                return new PendingTransaction(transactionId, null, null);
             }
 
             log.info("Record has {} attributes", newImage.size());
@@ -107,103 +871,960 @@ public class DynamoDbStreamHandler implements RequestHandler<DynamodbEvent, Stri
             // Check if this is a transaction with pending sequence
             AttributeValue typeAttr = newImage.get("type");
             AttributeValue sequenceAttr = newImage.get("sequence");
-            
+
             if (typeAttr == null) {
                 log.info("No 'type' attribute found, skipping");
-                return;
+                return null;
             }
-            
+
             if (!"TRANSACTION".equals(typeAttr.getS())) {
                 log.info("Not a TRANSACTION type ({}), skipping", typeAttr.getS());
-                return;
+                return null;
             }
-            
+
             if (sequenceAttr == null) {
                 log.warn("No 'sequence' attribute found for transaction, skipping");
-                return;
+                return null;
             }
-            
+
             if (!sequenceAttr.getS().startsWith("pending-")) {
                 log.info("Transaction sequence does not start with 'pending-' ({}), skipping", sequenceAttr.getS());
-                return;
+                return null;
             }
 
             String transactionId = newImage.get("id").getS();
             String accountId = newImage.get("accountId").getS();
-            
-            log.info("Processing pending transaction: {} for account: {}", transactionId, accountId);
-            
-            processTransactionSequencing(transactionId, accountId);
-            
+
+            // With NEW_IMAGE or NEW_AND_OLD_IMAGES the full transaction is already here
+            Transaction image = TRANSACTION_SCHEMA.mapToItem(StreamImages.toAttributeValueMap(newImage));
+
+            log.info("Queued pending transaction: {} for account: {}", transactionId, accountId);
+
+            return new PendingTransaction(transactionId, accountId, image);
+
         } catch (Exception e) {
             log.error("Failed to process record: {}", e.getMessage(), e);
             e.printStackTrace();
-            throw e; // Re-throw to trigger retry
+            throw e; // Re-throw so the record is reported as a batch item failure
         }
     }
 
     void processTransactionSequencing(String transactionId, String accountId) {
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
+        processAccountBatch(accountId, List.of(transactionId));
+    }
 
-        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
-        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+    /**
+     * Stamps pending transactions of one account, reading each of them by ID. The account is read once,
+     * consecutive sequences are assigned in arrival order, and the stamped transactions are written
+     * together with a single account update per TransactWriteItems call.
+     */
+    void processAccountBatch(String accountId, List<String> transactionIds) {
+        // Keep arrival order and drop duplicate deliveries
+        List<String> orderedIds = new ArrayList<>(new LinkedHashSet<>(transactionIds));
 
-        // Fetch the transaction
-        Transaction transaction = transactionTable.getItem(Key.builder().partitionValue(transactionId).build());
-        if (transaction == null) {
-            log.warn("Transaction {} not found, skipping", transactionId);
-            return;
+        try {
+            WorkflowTables tables = tables();
+            DynamoDbTable<Account> accountTable = tables.accounts();
+
+            // Fetch all transactions of the batch
+            Map<String, Transaction> fetched = loadTransactions(tables.enhancedClient(), tables.transactions(), orderedIds);
+
+            List<Transaction> pendingTransactions = new ArrayList<>();
+            for (String transactionId : orderedIds) {
+                Transaction transaction = fetched.get(transactionId);
+                if (transaction == null) {
+                    log.warn("Transaction {} not found, skipping", transactionId);
+                    continue;
+                }
+
+                // Check if transaction already has a final sequence (idempotency)
+                if (!transaction.getSequence().startsWith("pending-")) {
+                    log.info("Transaction {} already has final sequence: {}, skipping", transactionId, transaction.getSequence());
+                    continue;
+                }
+
+                pendingTransactions.add(transaction);
+            }
+
+            stampPendingTransactions(accountTable, accountId, pendingTransactions, false);
+        } catch (AccountBatchException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new AccountBatchException(accountId, orderedIds.get(0), e);
         }
+    }
+
+    /**
+     * Stamps pending transactions decoded from stream NewImages without reading them again. Each write
+     * is conditioned on the image's version; if a transaction changed after the image was captured
+     * (for example a redelivered record that was already stamped), the remaining transactions fall
+     * back to {@link #processAccountBatch}, which re-reads them.
+     */
+    void processAccountImages(String accountId, List<Transaction> images) {
+        // Keep arrival order and drop duplicate deliveries
+        Map<String, Transaction> uniqueImages = new LinkedHashMap<>();
+        images.forEach(image -> uniqueImages.putIfAbsent(image.getId(), image));
+        List<Transaction> pendingTransactions = new ArrayList<>(uniqueImages.values());
 
-        // Check if transaction already has a final sequence (idempotency)
-        if (!transaction.getSequence().startsWith("pending-")) {
-            log.info("Transaction {} already has final sequence: {}, skipping", transactionId, transaction.getSequence());
+        try {
+            stampPendingTransactions(tables().accounts(), accountId, pendingTransactions, true);
+        } catch (AccountBatchException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new AccountBatchException(accountId, pendingTransactions.get(0).getId(), e);
+        }
+    }
+
+    private void stampPendingTransactions(DynamoDbTable<Account> accountTable,
+                                          String accountId,
+                                          List<Transaction> pendingTransactions,
+                                          boolean fromStreamImages) {
+        if (pendingTransactions.isEmpty()) {
+            log.info("No pending transactions left to stamp for account {}", accountId);
             return;
         }
 
-        // Fetch the account
-        Account account = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+        if (usesSequenceCounters()) {
+            // Without a counter written by this container the account is read first, so that sharded
+            // accounts go straight to their shards instead of failing the counter stamp's condition
+            SequenceCounters.CounterState counter = counters.cached(accountId);
+            Account known = null;
+            if (counter == null) {
+                known = cachedAccount(accountTable, accountId);
+                if (known != null && !LedgerShard.isSharded(known)) {
+                    // A stale read only costs a conflict and a consistent re-read, so it may be eventually consistent
+                    counter = counters.load(accountId, known.getLatestTransaction(), false);
+                }
+            }
+            if (counter != null) {
+                stampWithCounters(accountTable, accountId, counter, known, pendingTransactions, fromStreamImages);
+                return;
+            }
+        }
+
+        // Fetch the account once for the whole batch, unless this container wrote it last
+        Account account = cachedAccount(accountTable, accountId);
         if (account == null) {
-            log.error("Account {} not found for transaction {}", accountId, transactionId);
+            log.error("Account {} not found for {} pending transactions", accountId, pendingTransactions.size());
             throw new RuntimeException("Account not found: " + accountId);
         }
 
-        // Generate the next sequence number
-        String newSequence = generateNextSequence(account.getLatestTransaction());
-        
-        log.info("Assigning sequence {} to transaction {} for account {}", newSequence, transactionId, accountId);
-
-        // Calculate updated account balances based on transaction type
-        BigDecimal newBalance = account.getBalance();
-        BigDecimal newPending = account.getPending();
-        
-        if (transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT) {
-            // Deposits only update balance (positive amounts)
-            newBalance = newBalance.add(transaction.getAmount());
-            log.info("Deposit: Adding {} to account balance. New balance: {}, Pending: {}", 
-                     transaction.getAmount(), newBalance, newPending);
-        } else if (transaction.getTransactionType() == Transaction.TransactionType.WITHDRAWAL) {
-            // Withdrawals only update pending (negative amounts, so pending grows)
-            newPending = newPending.add(transaction.getAmount().abs());
-            log.info("Withdrawal: Adding {} to pending. Balance: {}, New pending: {}", 
-                     transaction.getAmount().abs(), newBalance, newPending);
-        }
-
-        // Prepare updated entities with new versions for optimistic locking
-        UUID originalTransactionVersion = transaction.getVersion();
-        UUID originalAccountVersion = account.getVersion();
-        UUID transactionVersion = UUID_V7_GENERATOR.generate();
-        UUID accountVersion = UUID_V7_GENERATOR.generate();
+        if (LedgerShard.isSharded(account)) {
+            stampOnLedgerShards(accountTable, account, pendingTransactions, fromStreamImages);
+            return;
+        }
+
+        log.info("Stamping {} pending transactions for account {}", pendingTransactions.size(), accountId);
+
+        // Two actions per TransactWriteItems call are reserved for the account update and checkpoint
+        int chunkSize = MAX_TRANSACT_ITEMS - 2;
+        for (int start = 0; start < pendingTransactions.size(); start += chunkSize) {
+            List<Transaction> chunk = pendingTransactions.subList(start, Math.min(start + chunkSize, pendingTransactions.size()));
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    metrics.increment(StreamMetrics.STAMP_ATTEMPTS);
+                    account = stampChunk(account, chunk);
+                    recordStamped(chunk);
+                    accountCache.put(account.getId(), account);
+                    accountUpdateListener.accountWritten(account);
+                    break;
+                } catch (StaleTransactionException e) {
+                    // The failed write may also have hit a stale cached account
+                    accountCache.evict(accountId);
+                    if (!fromStreamImages) {
+                        throw new AccountBatchException(accountId, chunk.get(0).getId(), e);
+                    }
+                    List<String> remainingIds = pendingTransactions.subList(start, pendingTransactions.size()).stream()
+                        .map(Transaction::getId)
+                        .toList();
+                    log.info("Stream image is stale for a transaction of account {}, re-reading {} remaining transactions",
+                             accountId, remainingIds.size());
+                    processAccountBatch(accountId, remainingIds);
+                    return;
+                } catch (AccountConflictException e) {
+                    metrics.increment(StreamMetrics.LOCK_CONFLICTS);
+                    accountCache.evict(accountId);
+                    if (attempt >= retryPolicy.getMaxAttempts()) {
+                        metrics.increment(StreamMetrics.LOCK_RETRIES_EXHAUSTED);
+                        log.warn("Giving up on account {} after {} conflicting attempts", accountId, attempt);
+                        throw new AccountBatchException(accountId, chunk.get(0).getId(), e);
+                    }
+
+                    // Only the account moved on; the transactions are unchanged, so re-read just the account
+                    retryPolicy.backoff(attempt);
+                    account = loadAccount(accountTable, accountId);
+                    if (account == null) {
+                        throw new AccountBatchException(accountId, chunk.get(0).getId(),
+                            new RuntimeException("Account not found: " + accountId));
+                    }
+                    if (LedgerShard.isSharded(account)) {
+                        // The conflicting write enabled ledger sharding; the rest goes to the shards
+                        stampOnLedgerShards(accountTable, account, pendingTransactions.subList(start, pendingTransactions.size()),
+                                            fromStreamImages);
+                        return;
+                    }
+                    log.info("Retrying {} transactions for account {} (attempt {} of {}) at version {}",
+                             chunk.size(), accountId, attempt + 1, retryPolicy.getMaxAttempts(), account.getVersion());
+                } catch (RuntimeException e) {
+                    throw new AccountBatchException(accountId, chunk.get(0).getId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stamps the pending transactions of an unsharded account with sequences from its counter item of
+     * the day. Past the day's first stamp, the account item is neither read nor version-checked: its
+     * balance and pending are only added to, and its condition merely checks that it exists, is not
+     * sharded and holds no later sequence. The account is otherwise read only when that condition fails.
+     */
+    private void stampWithCounters(DynamoDbTable<Account> accountTable, String accountId,
+                                   SequenceCounters.CounterState counter, Account known,
+                                   List<Transaction> pendingTransactions, boolean fromStreamImages) {
+        log.info("Stamping {} pending transactions for account {} from its sequence counter", pendingTransactions.size(), accountId);
+
+        // Three actions per TransactWriteItems call are reserved for the counter, account and checkpoint
+        int chunkSize = MAX_TRANSACT_ITEMS - 3;
+        for (int start = 0; start < pendingTransactions.size(); start += chunkSize) {
+            List<Transaction> chunk = pendingTransactions.subList(start, Math.min(start + chunkSize, pendingTransactions.size()));
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    metrics.increment(StreamMetrics.STAMP_ATTEMPTS);
+                    counter = stampCounterChunk(accountTable, accountId, counter, known, chunk);
+                    known = null;
+                    recordStamped(chunk);
+                    counters.written(accountId, counter);
+                    // The account moved on without its state in hand
+                    accountCache.evict(accountId);
+                    accountUpdateListener.accountChanged(accountId);
+                    break;
+                } catch (StaleTransactionException e) {
+                    counters.evict(accountId);
+                    if (!fromStreamImages) {
+                        throw new AccountBatchException(accountId, chunk.get(0).getId(), e);
+                    }
+                    List<String> remainingIds = pendingTransactions.subList(start, pendingTransactions.size()).stream()
+                        .map(Transaction::getId)
+                        .toList();
+                    log.info("Stream image is stale for a transaction of account {}, re-reading {} remaining transactions",
+                             accountId, remainingIds.size());
+                    processAccountBatch(accountId, remainingIds);
+                    return;
+                } catch (CounterConflictException | AccountConflictException e) {
+                    metrics.increment(StreamMetrics.LOCK_CONFLICTS);
+                    counters.evict(accountId);
+                    accountCache.evict(accountId);
+                    known = null;
+                    if (attempt >= retryPolicy.getMaxAttempts()) {
+                        metrics.increment(StreamMetrics.LOCK_RETRIES_EXHAUSTED);
+                        log.warn("Giving up on account {} after {} conflicting attempts", accountId, attempt);
+                        throw new AccountBatchException(accountId, chunk.get(0).getId(), e);
+                    }
+
+                    retryPolicy.backoff(attempt);
+                    String floorSequence = counter.floorSequence();
+                    if (e instanceof AccountConflictException) {
+                        // The counter matched, so the account is missing, sharded, or ahead of its counter
+                        Account account = loadAccount(accountTable, accountId);
+                        if (account == null) {
+                            throw new AccountBatchException(accountId, chunk.get(0).getId(),
+                                new RuntimeException("Account not found: " + accountId));
+                        }
+                        if (LedgerShard.isSharded(account)) {
+                            stampOnLedgerShards(accountTable, account, pendingTransactions.subList(start, pendingTransactions.size()),
+                                                fromStreamImages);
+                            return;
+                        }
+                        floorSequence = account.getLatestTransaction();
+                        known = account;
+                    }
+                    counter = counters.load(accountId, floorSequence, true);
+                    log.info("Retrying {} transactions for account {} (attempt {} of {}) at counter {}",
+                             chunk.size(), accountId, attempt + 1, retryPolicy.getMaxAttempts(), counter.counter());
+                } catch (RuntimeException e) {
+                    throw new AccountBatchException(accountId, chunk.get(0).getId(), e);
+                }
+            }
+        }
+    }
+
+    private Account cachedAccount(DynamoDbTable<Account> accountTable, String accountId) {
+        metrics.increment(StreamMetrics.ACCOUNT_CACHE_LOOKUPS);
+        Account account = accountCache.get(accountId);
+        if (account != null) {
+            metrics.increment(StreamMetrics.ACCOUNT_CACHE_HITS);
+            log.debug("Using cached state of account {} at version {}", accountId, account.getVersion());
+            return account;
+        }
+        metrics.increment(StreamMetrics.ACCOUNT_CACHE_MISSES);
+        return loadAccount(accountTable, accountId);
+    }
+
+    /**
+     * Stamps the pending transactions of a sharded account. Each transaction goes to the shard its ID
+     * hashes to, and each shard is written conditioned on its own version, so concurrent batches of one
+     * account only conflict when they hit the same shard. The account item is not written; its totals
+     * are caught up by {@link #rollUpLedger} from time to time.
+     */
+    private void stampOnLedgerShards(DynamoDbTable<Account> accountTable, Account account,
+                                     List<Transaction> pendingTransactions, boolean fromStreamImages) {
+        String accountId = account.getId();
+        int shardCount = account.getLedgerShards();
+
+        // Arrival order is kept within each shard
+        Map<Integer, List<Transaction>> byShard = new TreeMap<>();
+        for (Transaction transaction : pendingTransactions) {
+            byShard.computeIfAbsent(LedgerShard.shardFor(transaction.getId(), shardCount), index -> new ArrayList<>())
+                .add(transaction);
+        }
+
+        log.info("Stamping {} pending transactions for account {} on {} of its {} ledger shards",
+                 pendingTransactions.size(), accountId, byShard.size(), shardCount);
+
+        DynamoDbTable<LedgerShard> shardTable = tables().ledgerShards();
+
+        Set<String> stamped = new HashSet<>();
+        try {
+            for (Map.Entry<Integer, List<Transaction>> entry : byShard.entrySet()) {
+                stampShard(shardTable, account, entry.getKey(), entry.getValue(), stamped);
+            }
+        } catch (RuntimeException e) {
+            List<String> remainingIds = pendingTransactions.stream()
+                .map(Transaction::getId)
+                .filter(id -> !stamped.contains(id))
+                .toList();
+            if (e instanceof StaleTransactionException && fromStreamImages) {
+                log.info("Stream image is stale for a transaction of account {}, re-reading {} remaining transactions",
+                         accountId, remainingIds.size());
+                processAccountBatch(accountId, remainingIds);
+                return;
+            }
+            throw new AccountBatchException(accountId, remainingIds.get(0), e);
+        }
+
+        // Stamps on the shards leave the account item as it was read
+        accountCache.put(account.getId(), account);
+
+        Long lastRollup = lastLedgerRollup.get(accountId);
+        if (lastRollup == null || System.currentTimeMillis() - lastRollup >= ledgerRollupIntervalMillis) {
+            lastLedgerRollup.put(accountId, System.currentTimeMillis());
+            rollUpLedger(accountTable, shardTable, accountId);
+        }
+    }
+
+    private void stampShard(DynamoDbTable<LedgerShard> shardTable, Account account, int shardIndex,
+                            List<Transaction> transactions, Set<String> stamped) {
+        LedgerShard shard = loadShard(shardTable, account.getId(), shardIndex);
+        if (shard == null) {
+            throw new RuntimeException("Ledger shard " + shardIndex + " of account " + account.getId() + " not found");
+        }
+
+        int chunkSize = MAX_TRANSACT_ITEMS - 1;
+        for (int start = 0; start < transactions.size(); start += chunkSize) {
+            List<Transaction> chunk = transactions.subList(start, Math.min(start + chunkSize, transactions.size()));
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    metrics.increment(StreamMetrics.STAMP_ATTEMPTS);
+                    int today = SequenceCodec.dateKey(Instant.now());
+                    if (!SequenceCodec.isOnDate(shard.getLatestTransaction(), today) && closeLedgerDay(account, today)) {
+                        // Closing the day moved every shard's version on
+                        shard = loadShard(shardTable, account.getId(), shardIndex);
+                        if (shard == null) {
+                            throw new RuntimeException("Ledger shard " + shardIndex + " of account " + account.getId() + " not found");
+                        }
+                    }
+                    shard = stampShardChunk(account, shard, chunk);
+                    recordStamped(chunk);
+                    accountUpdateListener.accountChanged(account.getId());
+                    chunk.forEach(transaction -> stamped.add(transaction.getId()));
+                    break;
+                } catch (AccountConflictException e) {
+                    metrics.increment(StreamMetrics.LOCK_CONFLICTS);
+                    if (attempt >= retryPolicy.getMaxAttempts()) {
+                        metrics.increment(StreamMetrics.LOCK_RETRIES_EXHAUSTED);
+                        log.warn("Giving up on shard {} of account {} after {} conflicting attempts", shardIndex, account.getId(), attempt);
+                        throw e;
+                    }
+                    retryPolicy.backoff(attempt);
+                    shard = loadShard(shardTable, account.getId(), shardIndex);
+                    if (shard == null) {
+                        throw new RuntimeException("Ledger shard " + shardIndex + " of account " + account.getId() + " not found");
+                    }
+                    log.info("Retrying {} transactions on shard {} of account {} (attempt {} of {}) at version {}",
+                             chunk.size(), shardIndex, account.getId(), attempt + 1, retryPolicy.getMaxAttempts(), shard.getVersion());
+                }
+            }
+        }
+    }
+
+    /**
+     * Like {@link #stampChunk}, but assigns the shard's interleaved sequences and writes the deltas to
+     * the shard instead of the account. Returns the shard as written.
+     */
+    private LedgerShard stampShardChunk(Account account, LedgerShard shard, List<Transaction> chunk) {
+        String latestSequence = shard.getLatestTransaction();
+        BigDecimal depositTotal = BigDecimal.ZERO;
+        BigDecimal withdrawalTotal = BigDecimal.ZERO;
+        Instant now = Instant.now();
+        int today = SequenceCodec.dateKey(now);
+
+        List<TransactWriteItem> actions = new ArrayList<>(chunk.size() + 1);
+
+        for (Transaction transaction : chunk) {
+            latestSequence = SequenceCodec.nextInterleaved(latestSequence, today, account.getLedgerShardedFrom(),
+                                                           shard.getShardIndex(), account.getLedgerShards());
+
+            log.info("Assigning sequence {} to transaction {} on shard {} of account {}",
+                     latestSequence, transaction.getId(), shard.getShardIndex(), account.getId());
+
+            if (transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT) {
+                depositTotal = depositTotal.add(transaction.getAmount());
+            } else if (transaction.getTransactionType() == Transaction.TransactionType.WITHDRAWAL) {
+                withdrawalTotal = withdrawalTotal.add(transaction.getAmount().abs());
+            }
+
+            UUID transactionVersion = UuidV7.generate();
+            actions.add(stampMode == StampMode.UPDATE
+                ? transactionUpdate(transaction, latestSequence, transactionVersion, now)
+                : transactionPut(transaction, latestSequence, transactionVersion, now));
+        }
+
+        LedgerShard updatedShard = updateShard(shard, shard.getBalance().add(depositTotal), shard.getPending().add(withdrawalTotal),
+                                               latestSequence, UuidV7.generate(), now);
+
+        actions.add(stampMode == StampMode.UPDATE
+            ? shardUpdate(shard, updatedShard, depositTotal, withdrawalTotal)
+            : shardPut(shard, updatedShard));
+
+        double writeUnits = writeStamp(actions, chunk.size(), -1, "shard " + shard.getShardIndex() + " of account " + account.getId(),
+                                       shard.getVersionString());
+
+        log.info("✅ TRANSACTIONS STAMPED SUCCESSFULLY: {} transactions on shard {} of account {}, latest sequence {} ({} mode, {} WCU)",
+                 chunk.size(), shard.getShardIndex(), account.getId(), latestSequence, stampMode, writeUnits);
+        return updatedShard;
+    }
+
+    /**
+     * Writes the checkpoint closing a sharded account's latest day before a shard stamps its first
+     * transaction of a later one. The account and all its shards are read in one transactional read and
+     * summed; the checkpoint is written together with a new version for every shard, so that a stamp of
+     * the closed day still in flight conflicts and is stamped on today instead. Once the account or any
+     * shard holds a sequence of today, the day was closed before that stamp and nothing is written.
+     *
+     * @return whether the checkpoint was written
+     * @throws AccountConflictException if a shard changed since it was read
+     */
+    private boolean closeLedgerDay(Account account, int today) {
+        WorkflowTables tables = tables();
+        String accountId = account.getId();
+
+        TransactGetItemsEnhancedRequest.Builder request = TransactGetItemsEnhancedRequest.builder()
+            .addGetItem(tables.accounts(), Key.builder().partitionValue(accountId).build());
+        for (int i = 0; i < account.getLedgerShards(); i++) {
+            request.addGetItem(tables.ledgerShards(), Key.builder().partitionValue(LedgerShard.shardId(accountId, i)).build());
+        }
+        List<Document> documents = tables.enhancedClient().transactGetItems(request.build());
+        Account closing = documents.get(0).getItem(tables.accounts());
+        if (closing == null) {
+            throw new RuntimeException("Account not found: " + accountId);
+        }
+
+        BigDecimal balance = closing.getBalance();
+        BigDecimal pending = closing.getPending();
+        String latestTransaction = closing.getLatestTransaction();
+        UUID version = UuidV7.generate();
+        Instant now = Instant.now();
+        List<TransactWriteItem> actions = new ArrayList<>(documents.size());
+
+        for (Document document : documents.subList(1, documents.size())) {
+            LedgerShard shard = document.getItem(tables.ledgerShards());
+            if (shard == null) {
+                continue;
+            }
+            balance = balance.add(shard.getBalance());
+            pending = pending.add(shard.getPending());
+            if (shard.getLatestTransaction() != null
+                    && (latestTransaction == null || shard.getLatestTransaction().compareTo(latestTransaction) > 0)) {
+                latestTransaction = shard.getLatestTransaction();
+            }
+            actions.add(ledgerUpdate(shard.getId(), shard.getVersionString(), BigDecimal.ZERO, BigDecimal.ZERO, null, version, now));
+        }
+
+        if (latestTransaction == null || !latestTransaction.startsWith(SequenceCodec.PREFIX)
+                || SequenceCodec.decodeDate(latestTransaction) >= today) {
+            return false;
+        }
+
+        closing.setBalance(balance);
+        closing.setPending(pending);
+        closing.setLatestTransaction(latestTransaction);
+        actions.add(checkpointPut(BalanceCheckpoint.closing(closing, version, now)));
+        writeStamp(actions, 0, -1, "ledger shards of account " + accountId, "closing " + latestTransaction);
+
+        log.info("📌 Closed day {} of sharded account {}: balance {}, pending {}, latest sequence {}",
+                 SequenceCodec.decodeDate(latestTransaction), accountId, balance, pending, latestTransaction);
+        return true;
+    }
+
+    /**
+     * Moves the balance and pending totals of every shard into the account, in one transaction
+     * conditioned on all their versions. A conflict with a concurrent stamp is not retried: the totals
+     * stay on the shards, where reads already include them, until the next rollup.
+     */
+    void rollUpLedger(DynamoDbTable<Account> accountTable, DynamoDbTable<LedgerShard> shardTable, String accountId) {
+        try {
+            Account account = loadAccount(accountTable, accountId);
+            if (account == null || !LedgerShard.isSharded(account)) {
+                return;
+            }
+
+            BigDecimal balanceTotal = BigDecimal.ZERO;
+            BigDecimal pendingTotal = BigDecimal.ZERO;
+            String latestTransaction = account.getLatestTransaction();
+            UUID version = UuidV7.generate();
+            Instant now = Instant.now();
+            List<TransactWriteItem> actions = new ArrayList<>();
+
+            for (int i = 0; i < account.getLedgerShards(); i++) {
+                LedgerShard shard = loadShard(shardTable, accountId, i);
+                if (shard == null || shard.getBalance().signum() == 0 && shard.getPending().signum() == 0) {
+                    continue;
+                }
+                balanceTotal = balanceTotal.add(shard.getBalance());
+                pendingTotal = pendingTotal.add(shard.getPending());
+                if (shard.getLatestTransaction() != null
+                        && (latestTransaction == null || shard.getLatestTransaction().compareTo(latestTransaction) > 0)) {
+                    latestTransaction = shard.getLatestTransaction();
+                }
+                actions.add(ledgerUpdate(shard.getId(), shard.getVersionString(),
+                                             shard.getBalance().negate(), shard.getPending().negate(), null, version, now));
+            }
+
+            if (actions.isEmpty()) {
+                log.info("Nothing to roll up for account {}", accountId);
+                return;
+            }
+
+            actions.add(ledgerUpdate(accountId, account.getVersionString(),
+                                         balanceTotal, pendingTotal, latestTransaction, version, now));
+
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(actions)
+                .build());
+            accountCache.evict(accountId);
+            accountUpdateListener.accountChanged(accountId);
+            metrics.increment(StreamMetrics.LEDGER_ROLLUPS);
+
+            log.info("✅ Rolled up {} ledger shards of account {}: balance +{}, pending +{}, latest sequence {}",
+                     actions.size() - 1, accountId, balanceTotal, pendingTotal, latestTransaction);
+        } catch (TransactionCanceledException e) {
+            metrics.increment(StreamMetrics.LEDGER_ROLLUP_CONFLICTS);
+            log.info("Rollup of account {} conflicted with a concurrent write, leaving totals on the shards: {}",
+                     accountId, e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Rollup of account {} failed, leaving totals on the shards: {}", accountId, e.getMessage());
+        }
+    }
+
+    private LedgerShard loadShard(DynamoDbTable<LedgerShard> shardTable, String accountId, int shardIndex) {
+        return shardTable.getItem(GetItemEnhancedRequest.builder()
+            .key(Key.builder().partitionValue(LedgerShard.shardId(accountId, shardIndex)).build())
+            .consistentRead(true)
+            .build());
+    }
+
+    Account loadAccount(DynamoDbTable<Account> accountTable, String accountId) {
+        GetItemEnhancedResponse<Account> response = accountTable.getItemWithResponse(GetItemEnhancedRequest.builder()
+            .key(Key.builder().partitionValue(accountId).build())
+            .consistentRead(true)
+            .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+            .build());
+        addReadCapacity(response.consumedCapacity());
+        return response.attributes();
+    }
+
+    private void addReadCapacity(ConsumedCapacity capacity) {
+        if (capacity != null && capacity.capacityUnits() != null) {
+            consumedReadCapacity.add(capacity.capacityUnits());
+        }
+    }
+
+    private Map<String, Transaction> loadTransactions(DynamoDbEnhancedClient enhancedClient,
+                                                      DynamoDbTable<Transaction> transactionTable,
+                                                      List<String> transactionIds) {
+        Map<String, Transaction> transactions = new HashMap<>();
+
+        for (int start = 0; start < transactionIds.size(); start += MAX_BATCH_GET_ITEMS) {
+            ReadBatch.Builder<Transaction> readBatch = ReadBatch.builder(Transaction.class)
+                .mappedTableResource(transactionTable);
+
+            for (String transactionId : transactionIds.subList(start, Math.min(start + MAX_BATCH_GET_ITEMS, transactionIds.size()))) {
+                readBatch.addGetItem(GetItemEnhancedRequest.builder()
+                    .key(Key.builder().partitionValue(transactionId).build())
+                    .consistentRead(true)
+                    .build());
+            }
+
+            // The result iterable follows UnprocessedKeys until every key has been answered
+            enhancedClient.batchGetItem(BatchGetItemEnhancedRequest.builder()
+                    .readBatches(readBatch.build())
+                    .build())
+                .resultsForTable(transactionTable)
+                .forEach(transaction -> transactions.put(transaction.getId(), transaction));
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Assigns consecutive sequences to a chunk of transactions and writes them together with the
+     * account update in one TransactWriteItems call. Returns the account as written.
+     */
+    private Account stampChunk(Account account, List<Transaction> chunk) {
+        String accountId = account.getId();
+        String latestSequence = account.getLatestTransaction();
+        BigDecimal depositTotal = BigDecimal.ZERO;
+        BigDecimal withdrawalTotal = BigDecimal.ZERO;
         Instant now = Instant.now();
 
-        Transaction updatedTransaction = Transaction.builder()
+        // One date for the whole chunk, so a chunk written across midnight is numbered consistently
+        int today = SequenceCodec.dateKey(now);
+
+        List<TransactWriteItem> actions = new ArrayList<>(chunk.size() + 1);
+
+        for (Transaction transaction : chunk) {
+            // Generate the next sequence number
+            latestSequence = generateNextSequence(latestSequence, today);
+
+            log.info("Assigning sequence {} to transaction {} for account {}", latestSequence, transaction.getId(), accountId);
+
+            // Calculate updated account balances based on transaction type
+            if (transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT) {
+                // Deposits only update balance (positive amounts)
+                depositTotal = depositTotal.add(transaction.getAmount());
+            } else if (transaction.getTransactionType() == Transaction.TransactionType.WITHDRAWAL) {
+                // Withdrawals only update pending (negative amounts, so pending grows)
+                withdrawalTotal = withdrawalTotal.add(transaction.getAmount().abs());
+            }
+
+            UUID transactionVersion = UuidV7.generate();
+            actions.add(stampMode == StampMode.UPDATE
+                ? transactionUpdate(transaction, latestSequence, transactionVersion, now)
+                : transactionPut(transaction, latestSequence, transactionVersion, now));
+        }
+
+        BigDecimal newBalance = account.getBalance().add(depositTotal);
+        BigDecimal newPending = account.getPending().add(withdrawalTotal);
+        Account updatedAccount = updateAccount(account, newBalance, newPending, latestSequence, UuidV7.generate(), now);
+
+        actions.add(stampMode == StampMode.UPDATE
+            ? accountUpdate(account, updatedAccount, depositTotal, withdrawalTotal)
+            : accountPut(account, updatedAccount));
+
+        // The account's first stamp of a new day closes its previous one; the version check keeps the closing state exact
+        if (closesPreviousDay(account, today)) {
+            actions.add(checkpointPut(BalanceCheckpoint.closing(account, UuidV7.generate(), now)));
+        }
+
+        // Perform transactional write with optimistic locking
+        double writeUnits = writeStamp(actions, chunk.size(), -1, accountId, account.getVersionString());
+
+        log.info("✅ TRANSACTIONS STAMPED SUCCESSFULLY: {} transactions for account {}, latest sequence {} ({} mode, {} WCU)",
+                 chunk.size(), accountId, latestSequence, stampMode, writeUnits);
+        log.info("📊 Account {} balance updated: {} -> {}, pending: {} -> {}",
+                 accountId, account.getBalance(), newBalance, account.getPending(), newPending);
+        return updatedAccount;
+    }
+
+    /**
+     * Assigns the counters following {@code counter} to a chunk of transactions and writes them together
+     * with the counter and account updates in one TransactWriteItems call. Returns the counter as written.
+     * The day's first chunk also needs the account, to checkpoint the day it closes; it is read unless
+     * {@code known} was just read.
+     */
+    private SequenceCounters.CounterState stampCounterChunk(DynamoDbTable<Account> accountTable, String accountId,
+                                                            SequenceCounters.CounterState counter, Account known,
+                                                            List<Transaction> chunk) {
+        BigDecimal depositTotal = BigDecimal.ZERO;
+        BigDecimal withdrawalTotal = BigDecimal.ZERO;
+        Instant now = Instant.now();
+
+        // One date for the whole chunk
+        int today = SequenceCodec.dateKey(now);
+
+        Account account = null;
+        if (counter.dateKey() != today || counter.counter() == 0) {
+            log.info("Starting sequence counter of account {} for date {}", accountId, today);
+            account = known != null ? known : loadAccount(accountTable, accountId);
+            if (account == null) {
+                throw new RuntimeException("Account not found: " + accountId);
+            }
+        }
+        SequenceCounters.Allocation allocation = SequenceCounters.allocate(counter, today,
+            account != null ? account.getLatestTransaction() : null, chunk.size());
+        Account closing = account != null && closesPreviousDay(account, today) ? account : null;
+
+        List<TransactWriteItem> actions = new ArrayList<>(chunk.size() + 3);
+        for (int index = 0; index < chunk.size(); index++) {
+            Transaction transaction = chunk.get(index);
+            String sequence = allocation.sequence(index);
+
+            log.info("Assigning sequence {} to transaction {} for account {}", sequence, transaction.getId(), accountId);
+
+            if (transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT) {
+                depositTotal = depositTotal.add(transaction.getAmount());
+            } else if (transaction.getTransactionType() == Transaction.TransactionType.WITHDRAWAL) {
+                withdrawalTotal = withdrawalTotal.add(transaction.getAmount().abs());
+            }
+
+            actions.add(transactionUpdate(transaction, sequence, UuidV7.generate(), now));
+        }
+
+        actions.add(counters.counterUpdate(accountId, allocation, now));
+        actions.add(counters.accountUpdate(accountId, allocation, depositTotal, withdrawalTotal,
+                                           closing != null ? closing.getVersionString() : null, UuidV7.generate(), now));
+        if (closing != null) {
+            actions.add(checkpointPut(BalanceCheckpoint.closing(closing, UuidV7.generate(), now)));
+        }
+
+        double writeUnits = writeStamp(actions, chunk.size(), chunk.size(), accountId, "counter " + allocation.expected());
+
+        log.info("✅ TRANSACTIONS STAMPED SUCCESSFULLY: {} transactions for account {}, latest sequence {} (counter mode, {} WCU)",
+                 chunk.size(), accountId, allocation.latestSequence(), writeUnits);
+        log.info("📊 Account {} balance +{}, pending +{}", accountId, depositTotal, withdrawalTotal);
+        return allocation.written();
+    }
+
+    /**
+     * Writes stamped transactions, followed by the account or shard update, in one TransactWriteItems
+     * call and returns the write units it consumed.
+     *
+     * @param counterIndex position of the counter update, followed by the account update, or -1
+     * @throws StaleTransactionException if a transaction's version condition failed
+     * @throws CounterConflictException if the counter's condition failed
+     * @throws AccountConflictException if the account's or shard's condition failed
+     */
+    private double writeStamp(List<TransactWriteItem> actions, int transactionCount, int counterIndex,
+                              String ledgerId, String expectedVersion) {
+        try {
+            TransactWriteItemsResponse response = dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(actions)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build());
+
+            double writeUnits = response.hasConsumedCapacity()
+                ? response.consumedCapacity().stream().mapToDouble(capacity -> capacity.capacityUnits() != null ? capacity.capacityUnits() : 0.0).sum()
+                : 0.0;
+            consumedWriteCapacity.add(writeUnits);
+            return writeUnits;
+        } catch (ConditionalCheckFailedException | TransactionCanceledException e) {
+            if (e instanceof TransactionCanceledException canceled && transactionConditionFailed(canceled, transactionCount)) {
+                log.info("Transaction version check failed for {}: {}", ledgerId, e.getMessage());
+                throw new StaleTransactionException(e);
+            }
+            if (e instanceof TransactionCanceledException canceled && counterIndex >= 0 && conditionFailed(canceled, counterIndex)) {
+                // Usually a stale cached counter, which also fails the account's sequence check
+                log.info("Sequence counter check failed for {} ({}), will retry: {}", ledgerId, expectedVersion, e.getMessage());
+                throw new CounterConflictException(e);
+            }
+            log.warn("Optimistic lock failed for {} transactions or {} (expected {}), will retry: {}",
+                     transactionCount, ledgerId, expectedVersion, e.getMessage());
+            throw new AccountConflictException(e);
+        }
+    }
+
+    private TransactWriteItem transactionPut(Transaction transaction, String sequence, UUID version, Instant now) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(tableName)
+                .item(TRANSACTION_SCHEMA.itemToMap(stampTransaction(transaction, sequence, version, now), true))
+                .conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(Map.of("#version", "version"))
+                .expressionAttributeValues(Map.of(":expectedVersion", stringValue(transaction.getVersion().toString())))
+                .build())
+            .build();
+    }
+
+    private TransactWriteItem accountPut(Account account, Account updatedAccount) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(tableName)
+                .item(ACCOUNT_SCHEMA.itemToMap(updatedAccount, true))
+                .conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(Map.of("#version", "version"))
+                .expressionAttributeValues(Map.of(":expectedVersion", stringValue(account.getVersion().toString())))
+                .build())
+            .build();
+    }
+
+    /**
+     * Sets only the attributes a stamp changes. Both {@code version} and {@code versionString} are
+     * written because the bean schema maps both and would otherwise read back a stale version.
+     */
+    private TransactWriteItem transactionUpdate(Transaction transaction, String sequence, UUID version, Instant now) {
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(tableName)
+                .key(Map.of("id", stringValue(transaction.getId())))
+                .updateExpression("SET #sequence = :sequence, #version = :version, #versionString = :version, #updatedAt = :updatedAt")
+                .conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(Map.of(
+                    "#sequence", "sequence",
+                    "#version", "version",
+                    "#versionString", "versionString",
+                    "#updatedAt", "updatedAt"))
+                .expressionAttributeValues(Map.of(
+                    ":sequence", stringValue(sequence),
+                    ":version", stringValue(version.toString()),
+                    ":updatedAt", stringValue(now.toString()),
+                    ":expectedVersion", stringValue(transaction.getVersion().toString())))
+                .build())
+            .build();
+    }
+
+    private TransactWriteItem accountUpdate(Account account, Account updatedAccount,
+                                            BigDecimal depositTotal, BigDecimal withdrawalTotal) {
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(tableName)
+                .key(Map.of("id", stringValue(account.getId())))
+                .updateExpression("SET #latestTransaction = :latestTransaction, #version = :version, "
+                    + "#versionString = :version, #updatedAt = :updatedAt "
+                    + "ADD #balance :depositTotal, #pending :withdrawalTotal")
+                .conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(Map.of(
+                    "#latestTransaction", "latestTransaction",
+                    "#version", "version",
+                    "#versionString", "versionString",
+                    "#updatedAt", "updatedAt",
+                    "#balance", "balance",
+                    "#pending", "pending"))
+                .expressionAttributeValues(Map.of(
+                    ":latestTransaction", stringValue(updatedAccount.getLatestTransaction()),
+                    ":version", stringValue(updatedAccount.getVersion().toString()),
+                    ":updatedAt", stringValue(updatedAccount.getUpdatedAt().toString()),
+                    ":depositTotal", numberValue(depositTotal),
+                    ":withdrawalTotal", numberValue(withdrawalTotal),
+                    ":expectedVersion", stringValue(account.getVersion().toString())))
+                .build())
+            .build();
+    }
+
+    /**
+     * Written unconditionally: a day is only closed by the stamp that moves the account past it, or for
+     * a sharded account, with the same state by any shard that moves past it first.
+     */
+    private TransactWriteItem checkpointPut(BalanceCheckpoint checkpoint) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(tableName)
+                .item(CHECKPOINT_SCHEMA.itemToMap(checkpoint, true))
+                .build())
+            .build();
+    }
+
+    /**
+     * Whether stamping an unsharded account today moves it past an earlier day it has transactions on.
+     */
+    private static boolean closesPreviousDay(Account account, int today) {
+        String latest = account.getLatestTransaction();
+        return latest != null && !LedgerShard.isSharded(account)
+            && latest.startsWith(SequenceCodec.PREFIX) && SequenceCodec.decodeDate(latest) < today;
+    }
+
+    private TransactWriteItem shardPut(LedgerShard shard, LedgerShard updatedShard) {
+        return TransactWriteItem.builder()
+            .put(Put.builder()
+                .tableName(tableName)
+                .item(SHARD_SCHEMA.itemToMap(updatedShard, true))
+                .conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(Map.of("#version", "version"))
+                .expressionAttributeValues(Map.of(":expectedVersion", stringValue(shard.getVersion().toString())))
+                .build())
+            .build();
+    }
+
+    private TransactWriteItem shardUpdate(LedgerShard shard, LedgerShard updatedShard,
+                                          BigDecimal depositTotal, BigDecimal withdrawalTotal) {
+        return ledgerUpdate(shard.getId(), shard.getVersion().toString(), depositTotal, withdrawalTotal,
+                                updatedShard.getLatestTransaction(), updatedShard.getVersion(), updatedShard.getUpdatedAt());
+    }
+
+    /**
+     * Adds to the balance and pending of an account or shard, optionally setting its latest transaction,
+     * conditioned on its version.
+     */
+    private TransactWriteItem ledgerUpdate(String id, String expectedVersion, BigDecimal balanceDelta,
+                                               BigDecimal pendingDelta, String latestTransaction, UUID version, Instant now) {
+        Map<String, String> names = new HashMap<>(Map.of(
+            "#version", "version",
+            "#versionString", "versionString",
+            "#updatedAt", "updatedAt",
+            "#balance", "balance",
+            "#pending", "pending"));
+        Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> values = new HashMap<>(Map.of(
+            ":version", stringValue(version.toString()),
+            ":updatedAt", stringValue(now.toString()),
+            ":balanceDelta", numberValue(balanceDelta),
+            ":pendingDelta", numberValue(pendingDelta),
+            ":expectedVersion", stringValue(expectedVersion)));
+
+        String set = "SET #version = :version, #versionString = :version, #updatedAt = :updatedAt";
+        if (latestTransaction != null) {
+            set += ", #latestTransaction = :latestTransaction";
+            names.put("#latestTransaction", "latestTransaction");
+            values.put(":latestTransaction", stringValue(latestTransaction));
+        }
+
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(tableName)
+                .key(Map.of("id", stringValue(id)))
+                .updateExpression(set + " ADD #balance :balanceDelta, #pending :pendingDelta")
+                .conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build())
+            .build();
+    }
+
+    private static software.amazon.awssdk.services.dynamodb.model.AttributeValue stringValue(String value) {
+        return software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s(value).build();
+    }
+
+    private static software.amazon.awssdk.services.dynamodb.model.AttributeValue numberValue(BigDecimal value) {
+        return software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().n(value.toPlainString()).build();
+    }
+
+    /**
+     * Transactions are added to each TransactWriteItems call before the account update, so a failed
+     * condition among the first {@code transactionCount} cancellation reasons is a transaction's.
+     */
+    private static boolean conditionFailed(TransactionCanceledException e, int index) {
+        return e.hasCancellationReasons() && index < e.cancellationReasons().size()
+            && "ConditionalCheckFailed".equals(e.cancellationReasons().get(index).code());
+    }
+
+    private static boolean transactionConditionFailed(TransactionCanceledException e, int transactionCount) {
+        if (!e.hasCancellationReasons()) {
+            return false;
+        }
+        List<CancellationReason> reasons = e.cancellationReasons();
+        for (int i = 0; i < Math.min(transactionCount, reasons.size()); i++) {
+            if ("ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Transaction stampTransaction(Transaction transaction, String sequence, UUID version, Instant now) {
+        return Transaction.builder()
             .id(transaction.getUuid())
             .type(transaction.getType())
             .parent(transaction.getParent())
-            .sequence(newSequence)
-            .version(transactionVersion)
+            .sequence(sequence)
+            .version(version)
             .createdAt(transaction.getCreatedAt())
             .updatedAt(now)
             .accountId(transaction.getAccountId())
@@ -218,124 +1839,153 @@ public class DynamoDbStreamHandler implements RequestHandler<DynamodbEvent, Stri
             .purposeRef(transaction.getPurposeRef())
             .transactionType(transaction.getTransactionType())
             .build();
+    }
 
-        Account updatedAccount = Account.builder()
+    private Account updateAccount(Account account, BigDecimal balance, BigDecimal pending,
+                                  String latestTransaction, UUID version, Instant now) {
+        return Account.builder()
             .id(account.getUuid())
             .type(account.getType())
             .parent(account.getParent())
             .sequence(account.getSequence())
-            .version(accountVersion)
+            .version(version)
             .createdAt(account.getCreatedAt())
             .updatedAt(now)
             .customerId(account.getCustomerId())
             .name(account.getName())
             .accountNumber(account.getAccountNumber())
             .currency(account.getCurrency())
-            .balance(newBalance)
-            .pending(newPending)
+            .balance(balance)
+            .pending(pending)
             .status(account.getStatus())
-            .latestTransaction(newSequence)
-            .build();
-
-        // Create conditional expressions for optimistic locking
-        Expression transactionCondition = Expression.builder()
-            .expression("#version = :expectedTransactionVersion")
-            .putExpressionName("#version", "version")
-            .putExpressionValue(":expectedTransactionVersion", 
-                software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder()
-                    .s(originalTransactionVersion.toString())
-                    .build())
-            .build();
-            
-        Expression accountCondition = Expression.builder()
-            .expression("#version = :expectedAccountVersion")
-            .putExpressionName("#version", "version")
-            .putExpressionValue(":expectedAccountVersion", 
-                software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder()
-                    .s(originalAccountVersion.toString())
-                    .build())
+            .latestTransaction(latestTransaction)
+            .ledgerShards(account.getLedgerShards())
+            .ledgerShardedFrom(account.getLedgerShardedFrom())
             .build();
+    }
 
-        // Create put requests with conditional expressions for optimistic locking
-        TransactPutItemEnhancedRequest<Transaction> transactionPutRequest = TransactPutItemEnhancedRequest.builder(Transaction.class)
-            .item(updatedTransaction)
-            .conditionExpression(transactionCondition)
-            .build();
-            
-        TransactPutItemEnhancedRequest<Account> accountPutRequest = TransactPutItemEnhancedRequest.builder(Account.class)
-            .item(updatedAccount)
-            .conditionExpression(accountCondition)
+    private LedgerShard updateShard(LedgerShard shard, BigDecimal balance, BigDecimal pending,
+                                    String latestTransaction, UUID version, Instant now) {
+        return LedgerShard.builder()
+            .id(shard.getUuid())
+            .type(shard.getType())
+            .parent(shard.getParent())
+            .sequence(shard.getSequence())
+            .version(version)
+            .createdAt(shard.getCreatedAt())
+            .updatedAt(now)
+            .accountId(shard.getAccountId())
+            .shardIndex(shard.getShardIndex())
+            .balance(balance)
+            .pending(pending)
+            .latestTransaction(latestTransaction)
             .build();
-
-        // Perform transactional write with optimistic locking
-        try {
-            enhancedClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
-                .addPutItem(transactionTable, transactionPutRequest)
-                .addPutItem(accountTable, accountPutRequest)
-                .build());
-            
-            log.info("✅ TRANSACTION STAMPED SUCCESSFULLY: Transaction {} assigned sequence {} for account {}", 
-                     transactionId, newSequence, accountId);
-            log.info("📊 Account {} balance updated: {} -> {}, pending: {} -> {}", 
-                     accountId, account.getBalance(), newBalance, account.getPending(), newPending);
-            log.info("🎯 Stream processing completed for {} transaction of {} {}", 
-                     transaction.getTransactionType().toString().toLowerCase(), 
-                     transaction.getAmount(), transaction.getCurrency());
-            
-        } catch (ConditionalCheckFailedException | TransactionCanceledException e) {
-            log.warn("Optimistic lock failed for transaction {} (version {}) or account {} (version {}), will retry: {}", 
-                     transactionId, originalTransactionVersion, accountId, originalAccountVersion, e.getMessage());
-            throw new RuntimeException("Optimistic lock failure", e);
-        }
     }
 
-    private String generateNextSequence(String currentLatestTransaction) {
-        String today = LocalDate.now(ZoneOffset.UTC).format(DATE_FORMATTER);
-        
+    private String generateNextSequence(String currentLatestTransaction, int today) {
+        String next = SequenceCodec.next(currentLatestTransaction, today);
         if (currentLatestTransaction == null) {
             // First transaction ever for this account
-            log.info("No previous transaction found, starting with sequence 1 for date {}", today);
-            return String.format("transaction-%s-%06d", today, 1);
-        }
-        
-        // Check if latest transaction is from today
-        if (!currentLatestTransaction.startsWith("transaction-" + today)) {
-            // Latest transaction is from a previous day, start fresh at 1
-            log.info("Latest transaction {} is from previous day, starting with sequence 1 for date {}", 
-                     currentLatestTransaction, today);
-            return String.format("transaction-%s-%06d", today, 1);
-        }
-        
-        // Extract the sequence number from the latest transaction (same day)
-        try {
-            String[] parts = currentLatestTransaction.split("-");
-            if (parts.length >= 3) {
-                int lastSequence = Integer.parseInt(parts[2]);
-                int nextSequence = lastSequence + 1;
-                log.info("Latest transaction {} has sequence {}, generating next sequence {} for date {}", 
-                         currentLatestTransaction, lastSequence, nextSequence, today);
-                return String.format("transaction-%s-%06d", today, nextSequence);
-            }
-        } catch (NumberFormatException e) {
-            log.error("Could not parse sequence number from latest transaction: {}", currentLatestTransaction, e);
-            throw new RuntimeException("Invalid latest transaction sequence format: " + currentLatestTransaction, e);
+            log.info("No previous transaction found, starting with sequence {} for date {}", next, today);
+        } else if (!SequenceCodec.isOnDate(currentLatestTransaction, today)) {
+            log.info("Latest transaction {} is from previous day, starting with sequence {} for date {}",
+                     currentLatestTransaction, next, today);
         }
-        
-        // If we can't parse the sequence, this is an error condition
-        log.error("Could not parse latest transaction format: {}", currentLatestTransaction);
-        throw new RuntimeException("Invalid latest transaction format: " + currentLatestTransaction);
+        return next;
     }
-    
+
     // Package-private setters for testing
     void setDynamoDbClient(DynamoDbClient dynamoDbClient) {
         this.dynamoDbClient = dynamoDbClient;
+        this.ownsClient = false;
     }
-    
+
     void setTableName(String tableName) {
         this.tableName = tableName;
     }
 
+    /**
+     * Uses handles built elsewhere, such as the API's, for the client and table they were built on.
+     */
+    void setTables(WorkflowTables tables) {
+        this.dynamoDbClient = tables.dynamoDbClient();
+        this.tableName = tables.tableName();
+        this.tables = tables;
+    }
+
+    void setAccountConcurrency(int accountConcurrency) {
+        this.accountConcurrency = accountConcurrency;
+    }
+
+    void setStampMode(StampMode stampMode) {
+        this.stampMode = stampMode;
+    }
+
+    void setSequenceCounters(boolean sequenceCounters) {
+        this.sequenceCounters = sequenceCounters;
+    }
+
+    /**
+     * Counter items are only used with update expressions; full-item puts need the account read anyway.
+     */
+    boolean usesSequenceCounters() {
+        return sequenceCounters && stampMode == StampMode.UPDATE;
+    }
+
+    double getConsumedWriteCapacity() {
+        return consumedWriteCapacity.sum();
+    }
+
+    double getConsumedReadCapacity() {
+        return consumedReadCapacity.sum();
+    }
+
+    void setRetryPolicy(ConflictRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    void setLedgerRollupIntervalMillis(long ledgerRollupIntervalMillis) {
+        this.ledgerRollupIntervalMillis = ledgerRollupIntervalMillis;
+    }
+
+    void setParkAfterAttempts(int parkAfterAttempts) {
+        this.parkAfterAttempts = parkAfterAttempts;
+    }
+
+    void setParkedRecordStore(ParkedRecordStore parkedRecords) {
+        this.parkedRecords = parkedRecords;
+    }
+
+    void setAccountUpdateListener(AccountUpdateListener accountUpdateListener) {
+        this.accountUpdateListener = accountUpdateListener;
+    }
+
+    StreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value for {}: {}, using default {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static boolean booleanFromEnv(String name, boolean defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
     public static void main(String[] args) {
         log.info("DynamoDB Stream Handler started");
     }
-} 
+}
@@ -0,0 +1,182 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fintechdemo.workflow.lambda.DynamoDbStreamHandler.PendingTransaction;
+import com.fintechdemo.workflow.lambda.StreamEventDecoder.DecodedRecord;
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stream processor that reads the raw Lambda event with {@link StreamEventDecoder}, instead of letting
+ * the runtime build a {@code DynamodbEvent} with every attribute of every image. Stamping, partial batch
+ * failure reporting and metrics are shared with {@link DynamoDbStreamHandler}.
+ *
+ * <p>Transactions are stamped from their partial NewImage where the stamp mode allows it. INSERTs from a
+ * {@code KEYS_ONLY} stream, and all images when stamping with full-item puts, are read with one
+ * consistent batch get per 100 keys first.
+ */
+@Slf4j
+public class DynamoDbStreamRawHandler implements RequestStreamHandler, Resource {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // One pending transaction and one MODIFY record, in the shape Lambda delivers them
+    private static final String PRIMING_EVENT = """
+        {"Records":[
+          {"eventID":"1","eventName":"INSERT","eventSource":"aws:dynamodb","dynamodb":{
+            "Keys":{"id":{"S":"00000000-0000-0000-0000-000000000001"}},
+            "NewImage":{"id":{"S":"00000000-0000-0000-0000-000000000001"},"type":{"S":"TRANSACTION"},
+              "sequence":{"S":"pending-00000000-0000-0000-0000-000000000002"},
+              "accountId":{"S":"00000000-0000-0000-0000-000000000000"},
+              "version":{"S":"00000000-0000-0000-0000-000000000003"},"amount":{"N":"1"},
+              "transactionType":{"S":"DEPOSIT"},"currency":{"S":"EUR"}},
+            "SequenceNumber":"1","StreamViewType":"NEW_AND_OLD_IMAGES"}},
+          {"eventID":"2","eventName":"MODIFY","eventSource":"aws:dynamodb","dynamodb":{
+            "Keys":{"id":{"S":"00000000-0000-0000-0000-000000000001"}},
+            "OldImage":{"id":{"S":"00000000-0000-0000-0000-000000000001"}},
+            "SequenceNumber":"2","StreamViewType":"NEW_AND_OLD_IMAGES"}},
+          {"eventID":"3","eventName":"INSERT","eventSource":"aws:dynamodb","dynamodb":{
+            "Keys":{"id":{"S":"00000000-0000-0000-0000-000000000004"}},
+            "SequenceNumber":"3","StreamViewType":"KEYS_ONLY"}}
+        ]}
+        """;
+
+    private final DynamoDbStreamHandler sequencer;
+
+    public DynamoDbStreamRawHandler() {
+        this(new DynamoDbStreamHandler());
+    }
+
+    DynamoDbStreamRawHandler(DynamoDbStreamHandler sequencer) {
+        this.sequencer = sequencer;
+        // The sequencer registers its own hooks; these only warm up the parser
+        Core.getGlobalContext().register(this);
+    }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws IOException {
+        List<DecodedRecord> records = StreamEventDecoder.decode(
+            new ByteArrayInputStream(PRIMING_EVENT.getBytes(StandardCharsets.UTF_8)));
+        writeResponse(OutputStream.nullOutputStream(), records.get(0).sequenceNumber());
+        log.info("Primed raw stream decoder with {} records", records.size());
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Nothing to restore here; the sequencer reconnects in its own hook
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        try {
+            sequencer.ensureClient();
+
+            List<DecodedRecord> records = StreamEventDecoder.decode(input);
+            log.info("Raw stream handler invoked with {} records", records.size());
+            sequencer.getMetrics().startBatch(records.size());
+            records.forEach(record -> sequencer.recordStreamLag(record.approximateCreationMillis()));
+
+            List<DecodedRecord> decodable = new ArrayList<>(records.size());
+            int firstFailedRecord = records.size();
+            for (int i = 0; i < records.size(); i++) {
+                DecodedRecord record = records.get(i);
+                if (record.failed()) {
+                    if (!sequencer.parkUndecodableRecord(record.transactionId(), record.sequenceNumber(), record.failure())) {
+                        // Its account is unknown, so nothing after it can safely be stamped in this invocation
+                        firstFailedRecord = i;
+                        break;
+                    }
+                    record = DecodedRecord.skipped(record.sequenceNumber(), record.approximateCreationMillis());
+                }
+                decodable.add(record);
+            }
+
+            firstFailedRecord = sequencer.stampDecodedRecords(toPendingTransactions(decodable), firstFailedRecord);
+
+            if (firstFailedRecord < records.size()) {
+                String failedSequenceNumber = records.get(firstFailedRecord).sequenceNumber();
+                log.warn("Reporting batch item failure at record {} of {} (sequence number {})",
+                         firstFailedRecord, records.size(), failedSequenceNumber);
+                writeResponse(output, failedSequenceNumber);
+                return;
+            }
+
+            log.info("Successfully processed all {} records", records.size());
+            writeResponse(output, null);
+        } catch (Exception e) {
+            log.error("Failed to process DynamoDB stream event: {}", e.getMessage(), e);
+            // Throw exception to trigger retry mechanism
+            throw new RuntimeException("Stream processing failed: " + e.getMessage(), e);
+        } finally {
+            sequencer.getMetrics().publish(context != null ? context.getFunctionName() : null);
+        }
+    }
+
+    /**
+     * Resolves each decoded record to the pending transaction to stamp, or null to skip it. Records
+     * without a usable image are read from the table; already stamped ones are skipped there.
+     */
+    private List<PendingTransaction> toPendingTransactions(List<DecodedRecord> records) {
+        boolean partialImages = sequencer.stampsFromPartialImages();
+
+        Set<String> toRead = new LinkedHashSet<>();
+        for (DecodedRecord record : records) {
+            if (!record.isSkipped() && (record.isKeysOnly() || !partialImages)) {
+                toRead.add(record.transactionId());
+            }
+        }
+
+        Map<String, Transaction> items = toRead.isEmpty() ? Map.of() : sequencer.loadTransactionsById(new ArrayList<>(toRead));
+        if (!toRead.isEmpty()) {
+            log.info("Read {} of {} transactions that were not stamped from their stream image", items.size(), toRead.size());
+        }
+
+        List<PendingTransaction> pending = new ArrayList<>(records.size());
+        for (DecodedRecord record : records) {
+            if (record.isSkipped()) {
+                pending.add(null);
+            } else if (!toRead.contains(record.transactionId())) {
+                pending.add(new PendingTransaction(record.transactionId(), record.image().getAccountId(), record.image()));
+            } else {
+                Transaction item = items.get(record.transactionId());
+                pending.add(DynamoDbStreamHandler.isPendingTransaction(item)
+                    ? new PendingTransaction(item.getId(), item.getAccountId(), item)
+                    : null);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Writes the {@code StreamsEventResponse} JSON, reporting at most one failed record.
+     */
+    private static void writeResponse(OutputStream output, String failedSequenceNumber) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("batchItemFailures");
+            if (failedSequenceNumber != null) {
+                generator.writeStartObject();
+                generator.writeStringField("itemIdentifier", failedSequenceNumber);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
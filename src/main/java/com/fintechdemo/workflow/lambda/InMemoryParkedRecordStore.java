@@ -0,0 +1,64 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.model.UuidV7;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parked records held by this container only, for local runs without a table to park in. Nothing
+ * survives the container, so redrive only sees what this container parked.
+ */
+final class InMemoryParkedRecordStore implements ParkedRecordStore {
+
+    private final Map<String, ParkedRecord> records = new LinkedHashMap<>();
+
+    @Override
+    public synchronized int recordFailure(String transactionId, String accountId, String error) {
+        ParkedRecord record = recordOf(transactionId, accountId);
+        record.setAttempts(record.getAttempts() + 1);
+        record.setLastError(error);
+        record.setUpdatedAt(Instant.now());
+        return record.getAttempts();
+    }
+
+    @Override
+    public synchronized void park(String transactionId, String accountId, String error) {
+        ParkedRecord record = recordOf(transactionId, accountId);
+        record.setLastError(error);
+        record.setUpdatedAt(Instant.now());
+        if (!record.isParked()) {
+            record.setParent(ParkedRecord.PARENT);
+            record.setSequence(ParkedRecord.SEQUENCE_PREFIX + UuidV7.generate());
+            record.setParkedAt(Instant.now());
+        }
+    }
+
+    @Override
+    public synchronized List<ParkedRecord> listParked(int limit) {
+        return records.values().stream()
+            .filter(ParkedRecord::isParked)
+            .sorted(Comparator.comparing(ParkedRecord::getSequence))
+            .limit(limit)
+            .toList();
+    }
+
+    @Override
+    public synchronized void release(String transactionId) {
+        records.remove(transactionId);
+    }
+
+    private ParkedRecord recordOf(String transactionId, String accountId) {
+        return records.computeIfAbsent(transactionId, id -> ParkedRecord.builder()
+            .type(ParkedRecord.ENTITY_TYPE)
+            .transactionId(transactionId)
+            .accountId(accountId)
+            .attempts(0)
+            .createdAt(Instant.now())
+            .build());
+    }
+}
@@ -0,0 +1,54 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import com.fintechdemo.workflow.service.AccountUpdateListener;
+
+import java.util.List;
+
+/**
+ * Lists the transactions the stream processor parked and stamps them again, for use outside the stream
+ * processor. Redrive runs the same stamping code as the stream, with its own processor instance, and tells
+ * the given listener of the balances it updates.
+ */
+public final class ParkedRecordRedriver {
+
+    /**
+     * Outcome of a redrive: how many parked transactions were released, and which are still parked.
+     */
+    public record RedriveResult(int redriven, List<String> stillFailing) {
+    }
+
+    private final WorkflowTables tables;
+    private final ParkedRecordStore parkedRecords;
+    private final AccountUpdateListener accountUpdateListener;
+
+    // Built on the first redrive, as it registers for SnapStart hooks that listing has no use for
+    private DynamoDbStreamHandler sequencer;
+
+    public ParkedRecordRedriver(WorkflowTables tables, AccountUpdateListener accountUpdateListener) {
+        this.tables = tables;
+        this.parkedRecords = new DynamoDbParkedRecordStore(() -> tables);
+        this.accountUpdateListener = accountUpdateListener;
+    }
+
+    /**
+     * Parked transactions, oldest first.
+     */
+    public List<ParkedRecord> listParked(int limit) {
+        return parkedRecords.listParked(limit);
+    }
+
+    /**
+     * Stamps up to {@code limit} parked transactions, oldest first, releasing those that no longer fail.
+     */
+    public synchronized RedriveResult redrive(int limit) {
+        if (sequencer == null) {
+            sequencer = new DynamoDbStreamHandler();
+            sequencer.setTables(tables);
+            sequencer.setParkedRecordStore(parkedRecords);
+            sequencer.setAccountUpdateListener(accountUpdateListener);
+        }
+        return sequencer.redriveParkedRecords(limit);
+    }
+}
@@ -0,0 +1,35 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.model.ParkedRecord;
+
+import java.util.List;
+
+/**
+ * Where the stream processor counts failed stamps of pending transactions and parks those that keep
+ * failing, see {@link ParkedRecord}.
+ */
+interface ParkedRecordStore {
+
+    /**
+     * Counts a failed stamp of a transaction.
+     *
+     * @return the transaction's failed attempts so far, including this one
+     */
+    int recordFailure(String transactionId, String accountId, String error);
+
+    /**
+     * Parks a transaction, so that it is listed for redrive. Parking a parked transaction again only
+     * updates its error.
+     */
+    void park(String transactionId, String accountId, String error);
+
+    /**
+     * Parked records, oldest first.
+     */
+    List<ParkedRecord> listParked(int limit);
+
+    /**
+     * Forgets a transaction, once it was stamped or no longer needs to be.
+     */
+    void release(String transactionId);
+}
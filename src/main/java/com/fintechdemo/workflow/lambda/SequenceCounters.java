@@ -0,0 +1,235 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.model.SequenceCodec;
+import com.fintechdemo.workflow.model.SequenceCounter;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Allocation of stamp sequences from per-account counter items, one per UTC day. A stamp advances the
+ * counter with a conditional {@code ADD} in the same TransactWriteItems call as the transactions, and
+ * adds its totals to the account without knowing the account's version. The counters this container
+ * wrote last are cached, like accounts, so steady traffic reads neither item.
+ */
+@Slf4j
+final class SequenceCounters {
+
+    /**
+     * An account's sequence counter for one day: the value of its counter item, 0 if there is none yet,
+     * and the latest counter of that day the account item is known to hold. The two only differ after a
+     * stamp that bypassed the counter item; numbering continues from the larger.
+     */
+    record CounterState(int dateKey, long counter, long floor) {
+        String floorSequence() {
+            return floor > 0 ? SequenceCodec.encode(dateKey, floor) : null;
+        }
+    }
+
+    /**
+     * The counters taken by one stamp: {@code first} to {@code latest} of the day, advancing the counter
+     * item from {@code expected}, which is 0 for the day's first stamp.
+     */
+    record Allocation(int dateKey, long expected, long first, long latest) {
+        String sequence(int index) {
+            return SequenceCodec.encode(dateKey, first + index);
+        }
+
+        String firstSequence() {
+            return SequenceCodec.encode(dateKey, first);
+        }
+
+        String latestSequence() {
+            return SequenceCodec.encode(dateKey, latest);
+        }
+
+        CounterState written() {
+            return new CounterState(dateKey, latest, latest);
+        }
+    }
+
+    // The stream processor replaces its client around a SnapStart snapshot, so the tables are looked up per call
+    private final Supplier<WorkflowTables> tables;
+    private final AccountStateCache<CounterState> cache;
+    private final StreamMetrics metrics;
+    private final Consumer<ConsumedCapacity> readCapacity;
+
+    SequenceCounters(Supplier<WorkflowTables> tables, int cacheSize, StreamMetrics metrics,
+                     Consumer<ConsumedCapacity> readCapacity) {
+        this.tables = tables;
+        this.cache = new AccountStateCache<>(cacheSize);
+        this.metrics = metrics;
+        this.readCapacity = readCapacity;
+    }
+
+    /**
+     * The counter this container last wrote for an account, or null if it has to be read.
+     */
+    CounterState cached(String accountId) {
+        metrics.increment(StreamMetrics.COUNTER_CACHE_LOOKUPS);
+        CounterState counter = cache.get(accountId);
+        if (counter == null) {
+            metrics.increment(StreamMetrics.COUNTER_CACHE_MISSES);
+            return null;
+        }
+        metrics.increment(StreamMetrics.COUNTER_CACHE_HITS);
+        log.debug("Using cached sequence counter {} of account {} for {}", counter.counter(), accountId, counter.dateKey());
+        return counter;
+    }
+
+    void written(String accountId, CounterState counter) {
+        cache.put(accountId, counter);
+    }
+
+    void evict(String accountId) {
+        cache.evict(accountId);
+    }
+
+    /**
+     * Reads today's counter item of an account, which is absent until the day's first stamp.
+     *
+     * @param floorSequence the latest sequence the account item is known to hold, if any
+     */
+    CounterState load(String accountId, String floorSequence, boolean consistentRead) {
+        WorkflowTables tables = this.tables.get();
+        int today = SequenceCodec.dateKey(Instant.now());
+        GetItemResponse response = tables.dynamoDbClient().getItem(GetItemRequest.builder()
+            .tableName(tables.tableName())
+            .key(Map.of("id", string(SequenceCounter.counterId(accountId, today))))
+            .projectionExpression("#counter")
+            .expressionAttributeNames(Map.of("#counter", SequenceCounter.COUNTER))
+            .consistentRead(consistentRead)
+            .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+            .build());
+        readCapacity.accept(response.consumedCapacity());
+
+        AttributeValue value = response.hasItem() ? response.item().get(SequenceCounter.COUNTER) : null;
+        long counter = value != null ? Long.parseLong(value.n()) : 0;
+        long floor = SequenceCodec.isOnDate(floorSequence, today) ? SequenceCodec.decodeCounter(floorSequence) : 0;
+        return new CounterState(today, counter, floor);
+    }
+
+    /**
+     * Takes {@code count} counters of {@code today} following those already used. A counter read on an
+     * earlier day says nothing about today's, so the day starts over unless the account says otherwise.
+     *
+     * @param accountLatest the account's latest sequence, read for the day's first stamp only
+     */
+    static Allocation allocate(CounterState counter, int today, String accountLatest, int count) {
+        long expected = counter.dateKey() == today ? counter.counter() : 0;
+        long latest = counter.dateKey() == today ? Math.max(counter.counter(), counter.floor()) : 0;
+        if (SequenceCodec.isOnDate(accountLatest, today)) {
+            // Stamped today without the counter, by an earlier deployment or another mode
+            latest = Math.max(latest, SequenceCodec.decodeCounter(accountLatest));
+        }
+        return new Allocation(today, expected, latest + 1, latest + count);
+    }
+
+    /**
+     * Advances an account's counter item of the allocation's day from its expected value to its latest,
+     * creating it on the day's first stamp. The condition is what serializes concurrent stamps.
+     */
+    TransactWriteItem counterUpdate(String accountId, Allocation allocation, Instant now) {
+        int dateKey = allocation.dateKey();
+        long expected = allocation.expected();
+        Map<String, AttributeValue> values = new HashMap<>(Map.of(
+            ":type", string(SequenceCounter.ENTITY_TYPE),
+            ":accountId", string(accountId),
+            ":dateKey", number(dateKey),
+            ":expiresAt", number(SequenceCounter.expiresAt(dateKey)),
+            ":updatedAt", string(now.toString()),
+            ":delta", number(allocation.latest() - expected)));
+        if (expected > 0) {
+            values.put(":expected", number(expected));
+        }
+
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(tables.get().tableName())
+                .key(Map.of("id", string(SequenceCounter.counterId(accountId, dateKey))))
+                .updateExpression("SET #type = :type, #accountId = :accountId, #dateKey = :dateKey, "
+                    + "#expiresAt = :expiresAt, #updatedAt = :updatedAt ADD #counter :delta")
+                .conditionExpression(expected > 0 ? "#counter = :expected" : "attribute_not_exists(#counter)")
+                .expressionAttributeNames(Map.of(
+                    "#type", "type",
+                    "#accountId", SequenceCounter.ACCOUNT_ID,
+                    "#dateKey", SequenceCounter.DATE_KEY,
+                    "#expiresAt", SequenceCounter.EXPIRES_AT,
+                    "#updatedAt", "updatedAt",
+                    "#counter", SequenceCounter.COUNTER))
+                .expressionAttributeValues(values)
+                .build())
+            .build();
+    }
+
+    /**
+     * Adds a stamp's totals to an account, usually without knowing its version. The condition rejects
+     * missing and sharded accounts, and accounts already holding a sequence at or after the allocation's
+     * first, which only happens when a stamp bypassed the counter item.
+     *
+     * @param expectedVersion the version the account must still have, or null for any
+     */
+    TransactWriteItem accountUpdate(String accountId, Allocation allocation, BigDecimal depositTotal,
+                                    BigDecimal withdrawalTotal, String expectedVersion, UUID version, Instant now) {
+        Map<String, AttributeValue> values = new HashMap<>(Map.of(
+            ":latestTransaction", string(allocation.latestSequence()),
+            ":firstSequence", string(allocation.firstSequence()),
+            ":version", string(version.toString()),
+            ":updatedAt", string(now.toString()),
+            ":depositTotal", number(depositTotal),
+            ":withdrawalTotal", number(withdrawalTotal)));
+        String condition = "attribute_exists(#id) AND attribute_not_exists(#ledgerShards) "
+            + "AND (attribute_not_exists(#latestTransaction) OR #latestTransaction < :firstSequence)";
+        if (expectedVersion != null) {
+            condition += " AND #version = :expectedVersion";
+            values.put(":expectedVersion", string(expectedVersion));
+        }
+
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(tables.get().tableName())
+                .key(Map.of("id", string(accountId)))
+                .updateExpression("SET #latestTransaction = :latestTransaction, #version = :version, "
+                    + "#versionString = :version, #updatedAt = :updatedAt "
+                    + "ADD #balance :depositTotal, #pending :withdrawalTotal")
+                .conditionExpression(condition)
+                .expressionAttributeNames(Map.of(
+                    "#id", "id",
+                    "#ledgerShards", "ledgerShards",
+                    "#latestTransaction", "latestTransaction",
+                    "#version", "version",
+                    "#versionString", "versionString",
+                    "#updatedAt", "updatedAt",
+                    "#balance", "balance",
+                    "#pending", "pending"))
+                .expressionAttributeValues(values)
+                .build())
+            .build();
+    }
+
+    private static AttributeValue string(String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+
+    private static AttributeValue number(BigDecimal value) {
+        return AttributeValue.builder().n(value.toPlainString()).build();
+    }
+}
@@ -0,0 +1,231 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decodes raw DynamoDB stream events with Jackson's streaming parser. Only the attributes the sequencer
+ * reads are extracted from a NewImage; every other attribute, OldImages and records of other event types
+ * are skipped without being materialized.
+ *
+ * <p>Works with the {@code NEW_AND_OLD_IMAGES}, {@code NEW_IMAGE} and {@code KEYS_ONLY} stream view types.
+ * Without a NewImage, an INSERT is returned by key only and the caller has to read the item.
+ */
+@Slf4j
+final class StreamEventDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private StreamEventDecoder() {
+    }
+
+    /**
+     * What the sequencer needs from one stream record. A record is either skipped, a pending transaction
+     * with a partial image, an INSERT known only by key, or failed to decode. The creation time is 0 if the
+     * record carries none. A record that failed to decode keeps its transaction id, if it has one, and
+     * the reason in {@code failure}.
+     */
+    record DecodedRecord(String sequenceNumber, long approximateCreationMillis, String transactionId, Transaction image,
+                         String failure) {
+
+        static DecodedRecord skipped(String sequenceNumber, long approximateCreationMillis) {
+            return new DecodedRecord(sequenceNumber, approximateCreationMillis, null, null, null);
+        }
+
+        boolean failed() {
+            return failure != null;
+        }
+
+        boolean isSkipped() {
+            return transactionId == null && !failed();
+        }
+
+        boolean isKeysOnly() {
+            return transactionId != null && image == null && !failed();
+        }
+    }
+
+    /**
+     * The NewImage attributes read by the stamp; the type and sequence filter the record.
+     */
+    private static final class ImageFields {
+        String id;
+        String type;
+        String sequence;
+        String accountId;
+        String version;
+        String amount;
+        String transactionType;
+        String createdAt;
+
+        boolean isPendingTransaction() {
+            return Transaction.ENTITY_TYPE.equals(type) && sequence != null && sequence.startsWith("pending-");
+        }
+
+        Transaction toTransaction() {
+            if (id == null || accountId == null || version == null || amount == null || transactionType == null) {
+                throw new IllegalArgumentException("Transaction image is missing attributes: " + id);
+            }
+            return Transaction.builder()
+                .id(UUID.fromString(id))
+                .type(type)
+                .parent(accountId)
+                .sequence(sequence)
+                .version(UUID.fromString(version))
+                .accountId(accountId)
+                .amount(new BigDecimal(amount))
+                .transactionType(Transaction.TransactionType.valueOf(transactionType))
+                .createdAt(createdAt != null ? Instant.parse(createdAt) : null)
+                .build();
+        }
+    }
+
+    static List<DecodedRecord> decode(InputStream input) throws IOException {
+        List<DecodedRecord> records = new ArrayList<>();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Stream event is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("Records".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        records.add(decodeRecord(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return records;
+    }
+
+    private static DecodedRecord decodeRecord(JsonParser parser) throws IOException {
+        String eventName = null;
+        String sequenceNumber = null;
+        long approximateCreationMillis = 0;
+        String keyId = null;
+        ImageFields image = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+
+            if ("eventName".equals(field)) {
+                eventName = parser.getText();
+            } else if ("dynamodb".equals(field) && (eventName == null || "INSERT".equals(eventName))) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String streamField = parser.currentName();
+                    parser.nextToken();
+                    switch (streamField) {
+                        case "SequenceNumber" -> sequenceNumber = parser.getText();
+                        // Epoch seconds, with a fraction when the stream records milliseconds
+                        case "ApproximateCreationDateTime" -> {
+                            if (parser.currentToken().isNumeric()) {
+                                approximateCreationMillis = Math.round(parser.getDoubleValue() * 1000);
+                            }
+                        }
+                        case "Keys" -> keyId = readKeyId(parser);
+                        case "NewImage" -> image = readImage(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            } else {
+                // Also skips the dynamodb object of records already known not to be INSERTs
+                parser.skipChildren();
+            }
+        }
+
+        if (!"INSERT".equals(eventName)) {
+            return DecodedRecord.skipped(sequenceNumber, approximateCreationMillis);
+        }
+        if (image == null) {
+            return keyId != null
+                ? new DecodedRecord(sequenceNumber, approximateCreationMillis, keyId, null, null)
+                : DecodedRecord.skipped(sequenceNumber, approximateCreationMillis);
+        }
+        if (!image.isPendingTransaction()) {
+            return DecodedRecord.skipped(sequenceNumber, approximateCreationMillis);
+        }
+
+        try {
+            return new DecodedRecord(sequenceNumber, approximateCreationMillis, image.id, image.toTransaction(), null);
+        } catch (RuntimeException e) {
+            log.error("Failed to decode pending transaction {} at sequence number {}: {}",
+                      image.id, sequenceNumber, e.getMessage());
+            return new DecodedRecord(sequenceNumber, approximateCreationMillis, image.id != null ? image.id : keyId, null,
+                                     e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        }
+    }
+
+    private static String readKeyId(JsonParser parser) throws IOException {
+        String id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            if ("id".equals(name)) {
+                id = readScalar(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+
+    private static ImageFields readImage(JsonParser parser) throws IOException {
+        ImageFields image = new ImageFields();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "id" -> image.id = readScalar(parser);
+                case "type" -> image.type = readScalar(parser);
+                case "sequence" -> image.sequence = readScalar(parser);
+                case "accountId" -> image.accountId = readScalar(parser);
+                case "version" -> image.version = readScalar(parser);
+                case "versionString" -> {
+                    String versionString = readScalar(parser);
+                    if (image.version == null) {
+                        image.version = versionString;
+                    }
+                }
+                case "amount" -> image.amount = readScalar(parser);
+                case "transactionType" -> image.transactionType = readScalar(parser);
+                case "createdAt" -> image.createdAt = readScalar(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Reads a typed attribute value such as {@code {"S": "..."}} or {@code {"N": "..."}}, returning its
+     * text. Values of other types, such as maps or lists, are skipped and read as null.
+     */
+    private static String readScalar(JsonParser parser) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                value = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,68 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Converts DynamoDB stream images, as delivered in Lambda events, into SDK v2 attribute values so that
+ * they can be mapped with the same {@code TableSchema}s used for table reads.
+ */
+final class StreamImages {
+
+    private StreamImages() {
+    }
+
+    static Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> toAttributeValueMap(
+            Map<String, AttributeValue> image) {
+        Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> converted = new HashMap<>(image.size() * 2);
+        for (Map.Entry<String, AttributeValue> entry : image.entrySet()) {
+            converted.put(entry.getKey(), toAttributeValue(entry.getValue()));
+        }
+        return converted;
+    }
+
+    static software.amazon.awssdk.services.dynamodb.model.AttributeValue toAttributeValue(AttributeValue value) {
+        var builder = software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder();
+
+        if (value.getS() != null) {
+            return builder.s(value.getS()).build();
+        }
+        if (value.getN() != null) {
+            return builder.n(value.getN()).build();
+        }
+        if (value.getBOOL() != null) {
+            return builder.bool(value.getBOOL()).build();
+        }
+        if (Boolean.TRUE.equals(value.getNULL())) {
+            return builder.nul(true).build();
+        }
+        if (value.getB() != null) {
+            return builder.b(SdkBytes.fromByteBuffer(value.getB())).build();
+        }
+        if (value.getSS() != null) {
+            return builder.ss(value.getSS()).build();
+        }
+        if (value.getNS() != null) {
+            return builder.ns(value.getNS()).build();
+        }
+        if (value.getBS() != null) {
+            return builder.bs(value.getBS().stream().map(SdkBytes::fromByteBuffer).collect(Collectors.toList())).build();
+        }
+        if (value.getM() != null) {
+            return builder.m(toAttributeValueMap(value.getM())).build();
+        }
+        if (value.getL() != null) {
+            List<software.amazon.awssdk.services.dynamodb.model.AttributeValue> list = value.getL().stream()
+                .map(StreamImages::toAttributeValue)
+                .collect(Collectors.toList());
+            return builder.l(list).build();
+        }
+
+        return builder.nul(true).build();
+    }
+}
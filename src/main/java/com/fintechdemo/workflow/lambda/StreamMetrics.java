@@ -0,0 +1,204 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the stream processor, collected per invocation and published as a CloudWatch Embedded
+ * Metric Format (EMF) log line, so that they become CloudWatch metrics without any API calls.
+ * Counters and histograms are safe to update from the virtual threads processing account partitions.
+ */
+@Slf4j
+final class StreamMetrics {
+
+    static final String NAMESPACE = "Fintechdemo/StreamProcessor";
+
+    static final String STAMP_ATTEMPTS = "StampAttempts";
+    static final String LOCK_CONFLICTS = "LockConflicts";
+    static final String LOCK_RETRIES_EXHAUSTED = "LockRetriesExhausted";
+    static final String CONFLICT_RATE = "ConflictRate";
+
+    static final String ACCOUNT_CACHE_LOOKUPS = "AccountCacheLookups";
+    static final String ACCOUNT_CACHE_HITS = "AccountCacheHits";
+    static final String ACCOUNT_CACHE_MISSES = "AccountCacheMisses";
+    static final String ACCOUNT_CACHE_HIT_RATE = "AccountCacheHitRate";
+
+    static final String COUNTER_CACHE_LOOKUPS = "CounterCacheLookups";
+    static final String COUNTER_CACHE_HITS = "CounterCacheHits";
+    static final String COUNTER_CACHE_MISSES = "CounterCacheMisses";
+    static final String COUNTER_CACHE_HIT_RATE = "CounterCacheHitRate";
+
+    static final String LEDGER_ROLLUPS = "LedgerRollups";
+    static final String LEDGER_ROLLUP_CONFLICTS = "LedgerRollupConflicts";
+
+    static final String RECORDS_PARKED = "RecordsParked";
+    static final String RECORDS_REDRIVEN = "RecordsRedriven";
+
+    static final String BATCH_SIZE = "BatchSize";
+    static final String RECORDS_PER_SECOND = "RecordsPerSecond";
+
+    // Histograms in milliseconds, published as their p50, p99 and max
+    static final String STREAM_LAG = "StreamLag";
+    static final String STAMP_LATENCY = "StampLatency";
+
+    // Three significant digits keep every value within 0.1%
+    private static final int HISTOGRAM_PRECISION = 3;
+
+    /**
+     * A percentage derived from two counters when metrics are published.
+     */
+    private record Ratio(String name, String part, String total) {
+    }
+
+    private static final List<Ratio> RATIOS = List.of(
+        new Ratio(CONFLICT_RATE, LOCK_CONFLICTS, STAMP_ATTEMPTS),
+        new Ratio(ACCOUNT_CACHE_HIT_RATE, ACCOUNT_CACHE_HITS, ACCOUNT_CACHE_LOOKUPS),
+        new Ratio(COUNTER_CACHE_HIT_RATE, COUNTER_CACHE_HITS, COUNTER_CACHE_LOOKUPS)
+    );
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    // When the current batch started, 0 outside of a batch
+    private volatile long batchStartNanos;
+
+    void increment(String name) {
+        add(name, 1);
+    }
+
+    void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Records a duration in a histogram; negative durations, from clock skew between hosts, count as 0.
+     */
+    void recordMillis(String name, long millis) {
+        histograms.computeIfAbsent(name, key -> new ConcurrentHistogram(HISTOGRAM_PRECISION))
+            .recordValue(Math.max(0, millis));
+    }
+
+    long samples(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram.getTotalCount() : 0;
+    }
+
+    long percentile(String name, double percentile) {
+        Histogram histogram = histograms.get(name);
+        return histogram != null ? histogram.getValueAtPercentile(percentile) : 0;
+    }
+
+    /**
+     * Starts timing a batch of stream records, from which the records per second are published.
+     */
+    void startBatch(int records) {
+        batchStartNanos = System.nanoTime();
+        add(BATCH_SIZE, records);
+    }
+
+    /**
+     * Serializes a throwaway EMF-shaped document, so that Jackson is initialized before the first publish.
+     */
+    static void prime() {
+        try {
+            MAPPER.writeValueAsString(Map.of("_aws", Map.of("Timestamp", 0L, "CloudWatchMetrics", List.of()), NAMESPACE, 0.0));
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to prime stream metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes everything collected since the previous call as one EMF line and resets the counters.
+     */
+    void publish(String functionName) {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sumThenReset()));
+
+        // Published after the batch, when nothing records any more, so nothing is lost between copy and reset
+        Map<String, Histogram> histogramSnapshot = new LinkedHashMap<>();
+        histograms.forEach((name, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                histogramSnapshot.put(name, histogram.copy());
+                histogram.reset();
+            }
+        });
+
+        long batchNanos = batchStartNanos > 0 ? System.nanoTime() - batchStartNanos : 0;
+        batchStartNanos = 0;
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        List<Map<String, String>> definitions = new ArrayList<>();
+
+        snapshot.forEach((name, value) -> {
+            document.put(name, value);
+            definitions.add(Map.of("Name", name, "Unit", "Count"));
+        });
+
+        for (Ratio ratio : RATIOS) {
+            long total = snapshot.getOrDefault(ratio.total(), 0L);
+            if (total > 0) {
+                document.put(ratio.name(), 100.0 * snapshot.getOrDefault(ratio.part(), 0L) / total);
+                definitions.add(Map.of("Name", ratio.name(), "Unit", "Percent"));
+            }
+        }
+
+        histogramSnapshot.forEach((name, histogram) -> {
+            document.put(name + "P50", histogram.getValueAtPercentile(50.0));
+            document.put(name + "P99", histogram.getValueAtPercentile(99.0));
+            document.put(name + "Max", histogram.getMaxValue());
+            for (String statistic : List.of("P50", "P99", "Max")) {
+                definitions.add(Map.of("Name", name + statistic, "Unit", "Milliseconds"));
+            }
+        });
+
+        long batchSize = snapshot.getOrDefault(BATCH_SIZE, 0L);
+        if (batchSize > 0 && batchNanos > 0) {
+            document.put(RECORDS_PER_SECOND, batchSize * 1_000_000_000.0 / batchNanos);
+            definitions.add(Map.of("Name", RECORDS_PER_SECOND, "Unit", "Count/Second"));
+        }
+
+        if (definitions.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> directive = new LinkedHashMap<>();
+        directive.put("Namespace", NAMESPACE);
+        directive.put("Dimensions", functionName != null ? List.of(List.of("FunctionName")) : List.of(List.of()));
+        directive.put("Metrics", definitions);
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("Timestamp", System.currentTimeMillis());
+        metadata.put("CloudWatchMetrics", List.of(directive));
+
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("_aws", metadata);
+        if (functionName != null) {
+            line.put("FunctionName", functionName);
+        }
+        line.putAll(document);
+
+        try {
+            // EMF lines must be plain JSON, so they bypass the log pattern
+            System.out.println(MAPPER.writeValueAsString(line));
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to publish stream metrics: {}", e.getMessage());
+        }
+    }
+}
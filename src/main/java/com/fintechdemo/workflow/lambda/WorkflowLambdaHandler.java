@@ -4,20 +4,120 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fintechdemo.workflow.controller.CacheController;
 import com.fintechdemo.workflow.controller.CustomerController;
 import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.service.CustomerOverviewService;
 import com.fintechdemo.workflow.service.CustomerService;
 import com.fintechdemo.workflow.service.AccountService;
 import com.fintechdemo.workflow.service.TransactionService;
 import com.fintechdemo.workflow.controller.TransactionController;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import lombok.extern.slf4j.Slf4j;
+import org.crac.Core;
+import org.crac.Resource;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
+@Slf4j
 @SpringBootApplication(scanBasePackages = "com.fintechdemo.workflow")
-public class WorkflowLambdaHandler {
+public class WorkflowLambdaHandler implements Resource {
+
+    // Id used by priming requests; nothing is ever stored under it
+    private static final String PRIMING_ID = new UUID(0L, 0L).toString();
+
+    // Read after a restore to replace the connections that went stale in the snapshot
+    private static final APIGatewayProxyRequestEvent CONNECTION_CHECK_REQUEST =
+        primingRequest("GET", "/api/customers/" + PRIMING_ID, null);
+
+    // The same for the async client's pool, through a route that reads with it
+    private static final APIGatewayProxyRequestEvent ASYNC_CONNECTION_CHECK_REQUEST =
+        primingRequest("GET", "/api/customers/" + PRIMING_ID + "/overview", null);
+
+    // Requests run before the SnapStart snapshot. They cover every route and the JSON and CSV encoders, but
+    // only read items that do not exist: the POSTs and the parked record listing carry parameters that fail
+    // validation after parsing, so nothing is written and no parked records are listed.
+    private static final List<APIGatewayProxyRequestEvent> PRIMING_REQUESTS = List.of(
+        primingRequest("GET", "/health", null),
+        CONNECTION_CHECK_REQUEST,
+        primingRequest("GET", "/api/customers/" + PRIMING_ID + "/accounts", null),
+        primingRequest("GET", "/api/customers/" + PRIMING_ID + "/overview", null),
+        primingRequest("GET", "/api/accounts/" + PRIMING_ID, null),
+        primingRequest("GET", "/api/accounts/" + PRIMING_ID + "/balance", null),
+        primingRequest("GET", "/api/accounts/" + PRIMING_ID + "/transactions", null),
+        primingRequest("GET", "/api/accounts/" + PRIMING_ID + "/transactions.csv", null),
+        primingRequest("GET", "/api/parked-records", null).withQueryStringParameters(Map.of("limit", "priming")),
+        primingRequest("GET", "/api/cache-stats", null),
+        primingRequest("POST", "/api/accounts/" + PRIMING_ID + "/deposit",
+            "{\"userId\":\"priming\",\"currency\":\"EUR\",\"amount\":1.00,\"transactedAt\":\"2025-01-01T00:00:00Z\","
+            + "\"payorIBAN\":\"INVALID\",\"originatingCountry\":\"DE\",\"paymentRef\":\"priming\",\"purposeRef\":\"priming\"}"),
+        primingRequest("POST", "/api/accounts/" + PRIMING_ID + "/transactions:batch", "{\"transactions\":[]}"),
+        primingRequest("POST", "/api/accounts/" + PRIMING_ID + "/transaction",
+            "{\"userId\":\"priming\",\"currency\":\"EUR\",\"amount\":1.00,\"transactedAt\":\"2025-01-01T00:00:00Z\","
+            + "\"beneficiaryIBAN\":\"\",\"originatingCountry\":\"DE\",\"paymentRef\":\"priming\",\"purposeRef\":\"priming\"}")
+    );
+
+    private final ApplicationContext applicationContext;
+
+    public WorkflowLambdaHandler(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+        // The context is refreshed during Lambda init, before a SnapStart snapshot is taken.
+        // On JVMs without CRaC support the registration does nothing.
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Sends the priming requests through the handler function. The services, the DynamoDB client and the
+     * Jackson mappers are then loaded and initialized in the snapshot, not on the first request.
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        long start = System.nanoTime();
+        Function<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler = handlerFunction();
+        for (APIGatewayProxyRequestEvent request : PRIMING_REQUESTS) {
+            APIGatewayProxyResponseEvent response = handler.apply(request);
+            log.debug("Priming {} {} returned {}", request.getHttpMethod(), request.getPath(), response.getStatusCode());
+        }
+        // The snapshot starts with empty read caches, and cache stats that only count real requests
+        applicationContext.getBean(CustomerService.class).clearCache();
+        applicationContext.getBean(AccountService.class).clearCaches();
+        log.info("Primed API handler with {} requests in {} ms", PRIMING_REQUESTS.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Reseeds the UUID generator and reads once, replacing connections that went stale while the snapshot was stored.
+     * The async client is checked too if priming started it; otherwise it is still built on first use.
+     */
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        UuidV7.reseed();
+        APIGatewayProxyResponseEvent response = handlerFunction().apply(CONNECTION_CHECK_REQUEST);
+        log.info("Restored API handler, connection check returned {}", response.getStatusCode());
+        if (applicationContext.getBean(AsyncWorkflowTables.class).isStarted()) {
+            APIGatewayProxyResponseEvent asyncResponse = handlerFunction().apply(ASYNC_CONNECTION_CHECK_REQUEST);
+            log.info("Async connection check returned {}", asyncResponse.getStatusCode());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Function<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handlerFunction() {
+        return applicationContext.getBean("handleRequest", Function.class);
+    }
+
+    private static APIGatewayProxyRequestEvent primingRequest(String method, String path, String body) {
+        return new APIGatewayProxyRequestEvent()
+            .withHttpMethod(method)
+            .withPath(path)
+            .withBody(body);
+    }
 
     @Bean
     public ObjectMapper objectMapper() {
@@ -29,9 +129,12 @@ public class WorkflowLambdaHandler {
     @Bean
     public Function<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handleRequest(
             CustomerService customerService,
+            CustomerOverviewService customerOverviewService,
             AccountService accountService,
             TransactionService transactionService,
             TransactionController transactionController,
+            ParkedRecordRedriver parkedRecordRedriver,
+            CacheController cacheController,
             ObjectMapper objectMapper) {
         return request -> {
             try {
@@ -39,13 +142,24 @@ public class WorkflowLambdaHandler {
                 String method = request.getHttpMethod();
                 
                 // Route to appropriate controller based on path
-                // Check for customer accounts first (more specific path)
-                if (path != null && path.matches("/api/customers/[^/]+/accounts")) {
+                // Check for customer accounts and overview first (more specific paths)
+                if (path != null && path.matches("/api/customers/[^/]+/overview") && "GET".equals(method)) {
+                    return handleCustomerOverviewRequest(request, customerOverviewService, objectMapper);
+                } else if (path != null && path.matches("/api/customers/[^/]+/accounts")) {
                     return handleAccountRequest(request, accountService, transactionService, transactionController, objectMapper);
                 } else if (path != null && path.startsWith("/api/customers")) {
                     return handleCustomerRequest(request, customerService, objectMapper);
+                } else if (path != null && path.equals("/api/transactions:batch") && "POST".equals(method)) {
+                    return handleBatchTransactionsRequest(request, null, transactionController, objectMapper);
                 } else if (path != null && path.startsWith("/api/accounts")) {
                     return handleAccountRequest(request, accountService, transactionService, transactionController, objectMapper);
+                } else if (path != null && path.startsWith("/api/parked-records")) {
+                    return handleParkedRecordRequest(request, parkedRecordRedriver, objectMapper);
+                } else if (path != null && path.equals("/api/cache-stats") && "GET".equals(method)) {
+                    // Counters of the read caches of this container only
+                    return new APIGatewayProxyResponseEvent()
+                        .withStatusCode(200)
+                        .withBody(objectMapper.writeValueAsString(cacheController.getCacheStats().getBody()));
                 } else if (path != null && path.equals("/health")) {
                     // Simple health check endpoint
                     return new APIGatewayProxyResponseEvent()
@@ -102,6 +216,46 @@ public class WorkflowLambdaHandler {
         }
     }
 
+    private APIGatewayProxyResponseEvent handleCustomerOverviewRequest(APIGatewayProxyRequestEvent request,
+                                                                       CustomerOverviewService customerOverviewService,
+                                                                       ObjectMapper objectMapper) {
+        try {
+            String path = request.getPath();
+            String customerId = path.substring("/api/customers/".length(), path.indexOf("/overview"));
+
+            int transactions = 5;
+            if (request.getQueryStringParameters() != null) {
+                String transactionsStr = request.getQueryStringParameters().get("transactions");
+                if (transactionsStr != null) {
+                    transactions = Integer.parseInt(transactionsStr);
+                }
+            }
+
+            // Accounts are batch-read and their transactions fetched concurrently
+            com.fintechdemo.workflow.controller.CustomerOverviewResponse response =
+                customerOverviewService.getOverview(customerId, transactions).join();
+            if (response == null) {
+                return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(404)
+                    .withBody("{\"error\":\"Customer not found\"}");
+            }
+
+            String responseBody = objectMapper.writeValueAsString(response);
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withBody(responseBody);
+        } catch (IllegalArgumentException e) {
+            // Also a transactions parameter that is not a number
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(500)
+                .withBody("{\"error\":\"Internal Server Error: " + e.getMessage() + "\"}");
+        }
+    }
+
     private APIGatewayProxyResponseEvent handleAccountRequest(APIGatewayProxyRequestEvent request,
                                                               AccountService accountService,
                                                               TransactionService transactionService,
@@ -127,12 +281,17 @@ public class WorkflowLambdaHandler {
             // Handle transaction-related endpoints
             else if ("POST".equals(method) && path.matches("/api/accounts/[^/]+/deposit")) {
                 return handleDepositRequest(request, transactionService, objectMapper);
+            } else if ("POST".equals(method) && path.matches("/api/accounts/[^/]+/transactions:batch")) {
+                String accountId = path.substring("/api/accounts/".length(), path.indexOf("/transactions:batch"));
+                return handleBatchTransactionsRequest(request, accountId, transactionController, objectMapper);
             } else if ("POST".equals(method) && path.matches("/api/accounts/[^/]+/transaction")) {
                 return handleWithdrawalRequest(request, transactionService, objectMapper);
             } else if ("GET".equals(method) && path.matches("/api/accounts/[^/]+/transactions\\.csv")) {
                 return handleGetTransactionsCsvRequest(request, transactionController);
             } else if ("GET".equals(method) && path.matches("/api/accounts/[^/]+/transactions")) {
                 return handleGetTransactionsRequest(request, transactionService, objectMapper);
+            } else if ("GET".equals(method) && path.matches("/api/accounts/[^/]+/balance")) {
+                return handleGetBalanceRequest(request, accountService, objectMapper);
             } else if ("GET".equals(method) && path.matches("/api/accounts/[^/]+")) {
                 String id = path.substring("/api/accounts/".length());
                 com.fintechdemo.workflow.model.Account account = accountService.getAccount(id);
@@ -184,7 +343,8 @@ public class WorkflowLambdaHandler {
                 depositRequest.getPayorIBAN(),
                 depositRequest.getOriginatingCountry(),
                 depositRequest.getPaymentRef(),
-                depositRequest.getPurposeRef()
+                depositRequest.getPurposeRef(),
+                idempotencyKey(request)
             );
             
             String responseBody = objectMapper.writeValueAsString(transaction);
@@ -195,6 +355,10 @@ public class WorkflowLambdaHandler {
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(400)
                 .withBody("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (IllegalStateException e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(409)
+                .withBody("{\"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(500)
@@ -221,7 +385,8 @@ public class WorkflowLambdaHandler {
                 withdrawalRequest.getBeneficiaryIBAN(),
                 withdrawalRequest.getOriginatingCountry(),
                 withdrawalRequest.getPaymentRef(),
-                withdrawalRequest.getPurposeRef()
+                withdrawalRequest.getPurposeRef(),
+                idempotencyKey(request)
             );
             
             String responseBody = objectMapper.writeValueAsString(transaction);
@@ -232,6 +397,47 @@ public class WorkflowLambdaHandler {
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(400)
                 .withBody("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (IllegalStateException e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(409)
+                .withBody("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(500)
+                .withBody("{\"error\":\"Internal Server Error: " + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * The {@code Idempotency-Key} header, looked up case-insensitively as API Gateway passes headers on as sent.
+     */
+    private static String idempotencyKey(APIGatewayProxyRequestEvent request) {
+        if (request.getHeaders() == null) {
+            return null;
+        }
+        return request.getHeaders().entrySet().stream()
+            .filter(header -> "Idempotency-Key".equalsIgnoreCase(header.getKey()))
+            .map(java.util.Map.Entry::getValue)
+            .findFirst()
+            .orElse(null);
+    }
+
+    private APIGatewayProxyResponseEvent handleBatchTransactionsRequest(APIGatewayProxyRequestEvent request,
+                                                                        String accountId,
+                                                                        TransactionController transactionController,
+                                                                        ObjectMapper objectMapper) {
+        try {
+            com.fintechdemo.workflow.controller.BatchTransactionRequest batchRequest =
+                objectMapper.readValue(request.getBody(), com.fintechdemo.workflow.controller.BatchTransactionRequest.class);
+
+            org.springframework.http.ResponseEntity<com.fintechdemo.workflow.controller.BatchTransactionResponse> response =
+                accountId == null
+                    ? transactionController.createTransactions(batchRequest)
+                    : transactionController.createAccountTransactions(accountId, batchRequest);
+
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(response.getStatusCode().value())
+                .withBody(response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody()));
         } catch (Exception e) {
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(500)
@@ -257,9 +463,80 @@ public class WorkflowLambdaHandler {
                 }
             }
             
+            // The index partitions of an account are queried concurrently
             com.fintechdemo.workflow.controller.TransactionListResponse response = 
-                transactionService.getAccountTransactions(accountId, nextToken, limit);
+                transactionService.getAccountTransactionsAsync(accountId, nextToken, limit).join();
             
+            String responseBody = objectMapper.writeValueAsString(response);
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withBody(responseBody);
+        } catch (IllegalArgumentException e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(500)
+                .withBody("{\"error\":\"Internal Server Error: " + e.getMessage() + "\"}");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handleGetBalanceRequest(APIGatewayProxyRequestEvent request,
+                                                                 AccountService accountService,
+                                                                 ObjectMapper objectMapper) {
+        try {
+            String path = request.getPath();
+            String accountId = path.substring("/api/accounts/".length(), path.indexOf("/balance"));
+            String asOf = request.getQueryStringParameters() != null
+                ? request.getQueryStringParameters().get("asOf")
+                : null;
+
+            com.fintechdemo.workflow.controller.AccountBalanceResponse response = accountService.getBalanceAsOf(accountId, asOf);
+            if (response == null) {
+                return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(404)
+                    .withBody("{\"error\":\"Account not found\"}");
+            }
+
+            String responseBody = objectMapper.writeValueAsString(response);
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withBody(responseBody);
+        } catch (IllegalArgumentException e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(400)
+                .withBody("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            return new APIGatewayProxyResponseEvent()
+                .withStatusCode(500)
+                .withBody("{\"error\":\"Internal Server Error: " + e.getMessage() + "\"}");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent handleParkedRecordRequest(APIGatewayProxyRequestEvent request,
+                                                                   ParkedRecordRedriver parkedRecordRedriver,
+                                                                   ObjectMapper objectMapper) {
+        String method = request.getHttpMethod();
+        String path = request.getPath();
+
+        try {
+            int limit = 100;
+            if (request.getQueryStringParameters() != null && request.getQueryStringParameters().get("limit") != null) {
+                limit = Integer.parseInt(request.getQueryStringParameters().get("limit"));
+            }
+
+            Object response;
+            if ("GET".equals(method) && "/api/parked-records".equals(path)) {
+                response = parkedRecordRedriver.listParked(limit);
+            } else if ("POST".equals(method) && "/api/parked-records/redrive".equals(path)) {
+                response = parkedRecordRedriver.redrive(limit);
+            } else {
+                return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(404)
+                    .withBody("{\"error\":\"Not Found\"}");
+            }
+
             String responseBody = objectMapper.writeValueAsString(response);
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(200)
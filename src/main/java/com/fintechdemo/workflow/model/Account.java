@@ -26,6 +26,8 @@ public class Account extends BaseEntity {
     private BigDecimal pending;
     private AccountStatus status;
     private String latestTransaction; // Latest transaction sequence (initially null/not present)
+    private Integer ledgerShards; // Number of ledger shards of a hot account (null when not sharded)
+    private String ledgerShardedFrom; // Latest sequence when sharding was enabled, the floor of the shards' counters
 
     @Override
     public String getEntityType() {
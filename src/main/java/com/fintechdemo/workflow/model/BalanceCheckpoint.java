@@ -0,0 +1,87 @@
+package com.fintechdemo.workflow.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Closing state of an account at the end of a UTC day on which it had stamped transactions. The
+ * stream processor writes it together with the account's first stamp of a later day, when the account
+ * item still holds that closing state. Checkpoints sort under the account in
+ * {@code parent-sequence-index} as {@code checkpoint-YYYYMMDD}, so the latest one before a day is a
+ * single descending query.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@DynamoDbBean
+public class BalanceCheckpoint extends BaseEntity {
+    public static final String ENTITY_TYPE = "BALANCE_CHECKPOINT";
+    public static final String SEQUENCE_PREFIX = "checkpoint-";
+
+    private String accountId;
+    private Integer dateKey;
+    private BigDecimal balance;      // Balance at the end of the day
+    private BigDecimal pending;      // Pending at the end of the day
+    private String lastSequence;     // Last transaction stamped on or before the day
+
+    @Override
+    public String getEntityType() {
+        return ENTITY_TYPE;
+    }
+
+    // Override parent getter to add GSI annotation
+    @Override
+    @DynamoDbSecondaryPartitionKey(indexNames = "parent-sequence-index")
+    public String getParent() {
+        return super.getParent();
+    }
+
+    // Override sequence getter to add GSI annotation
+    @Override
+    @DynamoDbSecondarySortKey(indexNames = "parent-sequence-index")
+    public String getSequence() {
+        return super.getSequence();
+    }
+
+    public static String checkpointId(String accountId, int dateKey) {
+        return UUID.nameUUIDFromBytes((accountId + "#" + SEQUENCE_PREFIX + dateKey)
+            .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    public static String sequenceOf(int dateKey) {
+        return SEQUENCE_PREFIX + dateKey;
+    }
+
+    /**
+     * The checkpoint closing the day of the account's latest transaction, from the account as it was
+     * before anything of a later day was stamped.
+     */
+    public static BalanceCheckpoint closing(Account account, UUID version, Instant now) {
+        int dateKey = SequenceCodec.decodeDate(account.getLatestTransaction());
+        return BalanceCheckpoint.builder()
+            .id(UUID.fromString(checkpointId(account.getId(), dateKey)))
+            .type(ENTITY_TYPE)
+            .parent(account.getId())
+            .sequence(sequenceOf(dateKey))
+            .version(version)
+            .createdAt(now)
+            .updatedAt(now)
+            .accountId(account.getId())
+            .dateKey(dateKey)
+            .balance(account.getBalance())
+            .pending(account.getPending())
+            .lastSequence(account.getLatestTransaction())
+            .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.fintechdemo.workflow.model;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Keys and attributes of idempotency key items. A client may send an {@code Idempotency-Key} with a
+ * transaction request; the key item is put, conditionally on not existing yet, in the same transactional
+ * write as the transaction, and holds the transaction as it was created. A repeat of the request finds the
+ * key item and gets that transaction back instead of creating another one.
+ *
+ * <p>Key items carry no {@code parent} or {@code sequence}, so they stay out of
+ * {@code parent-sequence-index}, and expire through the table's TTL a day after they were written.
+ */
+public final class IdempotencyKey {
+
+    public static final String ENTITY_TYPE = "IDEMPOTENCY_KEY";
+
+    public static final String ACCOUNT_ID = "accountId";
+    public static final String KEY = "idempotencyKey";
+    public static final String REQUEST_HASH = "requestHash";
+    public static final String RESPONSE = "response";
+    public static final String EXPIRES_AT = "expiresAt";
+    public static final String CREATED_AT = "createdAt";
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    // Long enough to cover any client's retries of one request
+    public static final Duration RETENTION = Duration.ofHours(24);
+
+    private IdempotencyKey() {
+    }
+
+    /**
+     * The key item ID. Keys are scoped to the account, so clients only need to keep them unique per account.
+     */
+    public static String keyId(String accountId, String key) {
+        return UUID.nameUUIDFromBytes((accountId + "#idempotency-" + key)
+            .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Epoch second after which a key written at {@code now} no longer applies and may be deleted by TTL.
+     */
+    public static long expiresAt(Instant now) {
+        return now.plus(RETENTION).getEpochSecond();
+    }
+
+    /**
+     * Fingerprint of a transaction request, so that a key reused for a different request is detected
+     * rather than answered with the response to the first one.
+     */
+    public static String requestHash(Transaction.TransactionType type, String userId, String currency, BigDecimal amount,
+                                     Instant transactedAt, String beneficiaryIBAN, String payorIBAN,
+                                     String originatingCountry, String paymentRef, String purposeRef) {
+        String canonical = String.join("\u001f",
+            String.valueOf(type),
+            String.valueOf(userId),
+            currency.toUpperCase().trim(),
+            amount.stripTrailingZeros().toPlainString(),
+            String.valueOf(transactedAt),
+            String.valueOf(beneficiaryIBAN),
+            String.valueOf(payorIBAN),
+            String.valueOf(originatingCountry),
+            String.valueOf(paymentRef),
+            String.valueOf(purposeRef));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
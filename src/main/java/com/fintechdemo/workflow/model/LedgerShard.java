@@ -0,0 +1,97 @@
+package com.fintechdemo.workflow.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Sub-ledger of a hot account. Once an account is sharded, stamps no longer write the account item:
+ * each transaction is stamped against one of the account's shards, chosen by hash, which carries the
+ * balance and pending deltas and its own sequence counter. A rollup moves the shard totals back into
+ * the account; until then the account's balance is its own plus the sum of its shards.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@DynamoDbBean
+public class LedgerShard extends BaseEntity {
+    public static final String ENTITY_TYPE = "LEDGER_SHARD";
+    public static final String SEQUENCE_PREFIX = "ledger-shard-";
+
+    // A shard's counters are interleaved with the other shards', so the count cannot change once set.
+    // Enabling sharding writes the account and every shard in one TransactWriteItems call (100 actions).
+    public static final int MAX_SHARDS = 99;
+
+    private String accountId;
+    private Integer shardIndex;
+    private BigDecimal balance;      // Deposits stamped on this shard since the last rollup
+    private BigDecimal pending;      // Withdrawals stamped on this shard since the last rollup
+    private String latestTransaction; // Latest sequence assigned by this shard
+
+    @Override
+    public String getEntityType() {
+        return ENTITY_TYPE;
+    }
+
+    // Override parent getter to add GSI annotation
+    @Override
+    @DynamoDbSecondaryPartitionKey(indexNames = "parent-sequence-index")
+    public String getParent() {
+        return super.getParent();
+    }
+
+    // Override sequence getter to add GSI annotation
+    @Override
+    @DynamoDbSecondarySortKey(indexNames = "parent-sequence-index")
+    public String getSequence() {
+        return super.getSequence();
+    }
+
+    /**
+     * Whether stamps of an account go to its ledger shards instead of the account item.
+     */
+    public static boolean isSharded(Account account) {
+        return account.getLedgerShards() != null && account.getLedgerShards() > 1;
+    }
+
+    /**
+     * The shard item ID, derived from the account so that shards can be read by key.
+     */
+    public static String shardId(String accountId, int shardIndex) {
+        return UUID.nameUUIDFromBytes((accountId + "#" + SEQUENCE_PREFIX + shardIndex)
+            .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * The shard a transaction is stamped on. Transaction IDs are random, so load spreads evenly.
+     */
+    public static int shardFor(String transactionId, int shardCount) {
+        return Math.floorMod(UUID.fromString(transactionId).getLeastSignificantBits(), shardCount);
+    }
+
+    public static LedgerShard create(Account account, int shardIndex, UUID version, Instant now) {
+        return LedgerShard.builder()
+            .id(UUID.fromString(shardId(account.getId(), shardIndex)))
+            .type(ENTITY_TYPE)
+            .parent(account.getId())
+            .sequence(String.format("%s%03d", SEQUENCE_PREFIX, shardIndex))
+            .version(version)
+            .createdAt(now)
+            .updatedAt(now)
+            .accountId(account.getId())
+            .shardIndex(shardIndex)
+            .balance(BigDecimal.ZERO)
+            .pending(BigDecimal.ZERO)
+            .build();
+    }
+}
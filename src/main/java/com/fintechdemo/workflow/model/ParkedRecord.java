@@ -0,0 +1,73 @@
+package com.fintechdemo.workflow.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Failed stamp attempts of one pending transaction. The stream processor counts every failure here; once
+ * the transaction has failed too often it is parked: skipped by the stream, so that the records behind it
+ * are stamped, and kept until it is redriven. Only parked records have a {@code parent}, so they alone
+ * appear in {@code parent-sequence-index}, under {@link #PARENT} in the order they were parked. Records
+ * that never get parked expire through the table's TTL.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@DynamoDbBean
+public class ParkedRecord extends BaseEntity {
+    public static final String ENTITY_TYPE = "PARKED_RECORD";
+    public static final String PARENT = "parked-records";
+    public static final String SEQUENCE_PREFIX = "parked-";
+
+    public static final String TRANSACTION_ID = "transactionId";
+    public static final String ACCOUNT_ID = "accountId";
+    public static final String ATTEMPTS = "attempts";
+    public static final String LAST_ERROR = "lastError";
+    public static final String PARKED_AT = "parkedAt";
+    public static final String EXPIRES_AT = "expiresAt";
+
+    private String transactionId;
+    private String accountId;
+    private Integer attempts;        // Failed stamp attempts, including those after parking
+    private String lastError;
+    private Instant parkedAt;        // Null until parked
+    private Long expiresAt;          // TTL of records that are not parked
+
+    @Override
+    public String getEntityType() {
+        return ENTITY_TYPE;
+    }
+
+    // Override parent getter to add GSI annotation
+    @Override
+    @DynamoDbSecondaryPartitionKey(indexNames = "parent-sequence-index")
+    public String getParent() {
+        return super.getParent();
+    }
+
+    // Override sequence getter to add GSI annotation
+    @Override
+    @DynamoDbSecondarySortKey(indexNames = "parent-sequence-index")
+    public String getSequence() {
+        return super.getSequence();
+    }
+
+    public boolean isParked() {
+        return parkedAt != null;
+    }
+
+    public static String recordId(String transactionId) {
+        return UUID.nameUUIDFromBytes((transactionId + "#parked")
+            .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+}
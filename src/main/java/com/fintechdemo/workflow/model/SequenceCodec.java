@@ -0,0 +1,195 @@
+package com.fintechdemo.workflow.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes and decodes stamped transaction sequences, the sort key of {@code parent-sequence-index}.
+ *
+ * <p>A sequence is {@code transaction-YYYYMMDD-} followed by the day's counter. Counters up to 999,999 are
+ * six zero-padded digits, exactly as before. Larger counters are written as a width marker followed by
+ * their digits: {@code a} for 7 digits, {@code b} for 8 and so on up to {@code m} for 19. The markers sort
+ * after every digit, and a wider counter gets a later marker. String order therefore matches counter order
+ * at any size, and sequences written before the change keep their place.
+ *
+ * <p>Decoding works on the characters in place, without split, substring, regex or format calls.
+ */
+public final class SequenceCodec {
+
+    public static final String PREFIX = "transaction-";
+
+    private static final int DATE_START = PREFIX.length();
+    private static final int DATE_DIGITS = 8;
+    private static final int COUNTER_START = DATE_START + DATE_DIGITS + 1;
+
+    private static final int COMPACT_DIGITS = 6;
+    private static final int MAX_DIGITS = 19;
+    private static final char FIRST_MARKER = 'a';
+
+    private SequenceCodec() {
+    }
+
+    /**
+     * The UTC day of an instant as the {@code YYYYMMDD} number used in sequences.
+     */
+    public static int dateKey(Instant instant) {
+        return dateKey(LocalDate.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    public static int dateKey(LocalDate date) {
+        return date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    public static String encode(int dateKey, long counter) {
+        if (counter < 1) {
+            throw new IllegalArgumentException("Sequence counter must be positive: " + counter);
+        }
+        if (dateKey < 10_000_000 || dateKey > 99_999_999) {
+            throw new IllegalArgumentException("Date key must have eight digits: " + dateKey);
+        }
+
+        int digits = digitCount(counter);
+        boolean compact = digits <= COMPACT_DIGITS;
+        int width = compact ? COMPACT_DIGITS : digits;
+        byte[] bytes = new byte[COUNTER_START + (compact ? 0 : 1) + width];
+
+        for (int i = 0; i < DATE_START; i++) {
+            bytes[i] = (byte) PREFIX.charAt(i);
+        }
+        writeDigits(bytes, DATE_START, DATE_DIGITS, dateKey);
+        bytes[COUNTER_START - 1] = '-';
+
+        int counterStart = COUNTER_START;
+        if (!compact) {
+            bytes[counterStart++] = (byte) (FIRST_MARKER + digits - COMPACT_DIGITS - 1);
+        }
+        writeDigits(bytes, counterStart, width, counter);
+
+        return new String(bytes, 0, bytes.length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Whether a sequence is a stamped transaction of the given day. Never throws, also not for
+     * pending or malformed sequences.
+     */
+    public static boolean isOnDate(String sequence, int dateKey) {
+        if (sequence == null || sequence.length() <= COUNTER_START
+                || !sequence.startsWith(PREFIX) || sequence.charAt(COUNTER_START - 1) != '-') {
+            return false;
+        }
+        int expected = dateKey;
+        for (int i = COUNTER_START - 2; i >= DATE_START; i--) {
+            if (sequence.charAt(i) != (char) ('0' + expected % 10)) {
+                return false;
+            }
+            expected /= 10;
+        }
+        return expected == 0;
+    }
+
+    public static int decodeDate(String sequence) {
+        checkPrefix(sequence);
+        return (int) parseDigits(sequence, DATE_START, DATE_DIGITS);
+    }
+
+    public static long decodeCounter(String sequence) {
+        checkPrefix(sequence);
+        char first = sequence.charAt(COUNTER_START);
+
+        if (first >= '0' && first <= '9') {
+            if (sequence.length() != COUNTER_START + COMPACT_DIGITS) {
+                throw invalid(sequence);
+            }
+            return parseDigits(sequence, COUNTER_START, COMPACT_DIGITS);
+        }
+
+        int digits = first - FIRST_MARKER + COMPACT_DIGITS + 1;
+        if (digits <= COMPACT_DIGITS || digits > MAX_DIGITS || sequence.length() != COUNTER_START + 1 + digits
+                || sequence.charAt(COUNTER_START + 1) == '0') {
+            throw invalid(sequence);
+        }
+        return parseDigits(sequence, COUNTER_START + 1, digits);
+    }
+
+    /**
+     * The sequence following {@code latest} on the given day: counter 1 if {@code latest} is absent or
+     * from another day, otherwise its counter plus one.
+     */
+    public static String next(String latest, int dateKey) {
+        if (!isOnDate(latest, dateKey)) {
+            return encode(dateKey, 1);
+        }
+        long counter = decodeCounter(latest);
+        if (counter == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Sequence counter exhausted: " + latest);
+        }
+        return encode(dateKey, counter + 1);
+    }
+
+    /**
+     * The next sequence of one of {@code lanes} writers sharing a day's counters, as used by ledger shards.
+     * Lane {@code i} only assigns counters {@code floor + i + 1 + k * lanes}, so lanes never collide, where
+     * {@code floor} is the counter of {@code floorSequence} on the given day, or 0. Counters leave gaps
+     * and are ordered by time only within a lane.
+     */
+    public static String nextInterleaved(String latest, int dateKey, String floorSequence, int lane, int lanes) {
+        if (lane < 0 || lane >= lanes) {
+            throw new IllegalArgumentException("Lane " + lane + " out of range for " + lanes + " lanes");
+        }
+        if (isOnDate(latest, dateKey)) {
+            long counter = decodeCounter(latest);
+            if (counter > Long.MAX_VALUE - lanes) {
+                throw new IllegalArgumentException("Sequence counter exhausted: " + latest);
+            }
+            return encode(dateKey, counter + lanes);
+        }
+        long floor = isOnDate(floorSequence, dateKey) ? decodeCounter(floorSequence) : 0;
+        return encode(dateKey, floor + lane + 1);
+    }
+
+    private static void checkPrefix(String sequence) {
+        if (sequence == null || sequence.length() <= COUNTER_START
+                || !sequence.startsWith(PREFIX) || sequence.charAt(COUNTER_START - 1) != '-') {
+            throw invalid(sequence);
+        }
+    }
+
+    private static long parseDigits(String sequence, int start, int count) {
+        long value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = sequence.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalid(sequence);
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value < 0) {
+            // Nineteen digits beyond Long.MAX_VALUE
+            throw invalid(sequence);
+        }
+        return value;
+    }
+
+    private static void writeDigits(byte[] bytes, int start, int width, long value) {
+        for (int i = start + width - 1; i >= start; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        long bound = 10;
+        while (digits < MAX_DIGITS && value >= bound) {
+            digits++;
+            bound *= 10;
+        }
+        return digits;
+    }
+
+    private static IllegalArgumentException invalid(String sequence) {
+        return new IllegalArgumentException("Invalid transaction sequence: " + sequence);
+    }
+}
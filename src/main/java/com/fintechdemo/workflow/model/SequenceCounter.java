@@ -0,0 +1,47 @@
+package com.fintechdemo.workflow.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Keys and attributes of sequence counter items. An account has one counter item per UTC day, holding
+ * the last counter assigned that day; stamps advance it with {@code ADD} in the same TransactWriteItems
+ * call that stamps the transactions, so sequences no longer have to be derived from the account item.
+ *
+ * <p>Counter items are written with update expressions only and carry no {@code parent} or
+ * {@code sequence}, so they stay out of {@code parent-sequence-index}. They expire through the table's
+ * TTL once their day is well past.
+ */
+public final class SequenceCounter {
+
+    public static final String ENTITY_TYPE = "SEQUENCE_COUNTER";
+
+    public static final String COUNTER = "counter";
+    public static final String ACCOUNT_ID = "accountId";
+    public static final String DATE_KEY = "dateKey";
+    public static final String EXPIRES_AT = "expiresAt";
+
+    // A counter is only read on the day it counts; the margin keeps it around for inspection
+    private static final int RETENTION_DAYS = 7;
+
+    private SequenceCounter() {
+    }
+
+    /**
+     * The counter item ID, derived from the account and day so that it can be read and written by key.
+     */
+    public static String counterId(String accountId, int dateKey) {
+        return UUID.nameUUIDFromBytes((accountId + "#" + COUNTER + "-" + dateKey)
+            .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Epoch second after which the counter item of the given day may be deleted by TTL.
+     */
+    public static long expiresAt(int dateKey) {
+        LocalDate date = LocalDate.of(dateKey / 10_000, dateKey / 100 % 100, dateKey % 100);
+        return date.plusDays(1 + RETENTION_DAYS).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+}
@@ -10,6 +10,9 @@ import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecon
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -50,6 +53,31 @@ public class Transaction extends BaseEntity {
         return super.getSequence();
     }
     
+    /**
+     * The {@code parent-sequence-index} partition of a transaction. With more than one bucket, an
+     * account's transactions are spread over {@code accountId#0} to {@code accountId#<buckets-1>} by
+     * transaction ID, so that a busy account writes to several index partitions.
+     */
+    public static String indexPartition(String accountId, String transactionId, int buckets) {
+        if (buckets <= 1) {
+            return accountId;
+        }
+        return accountId + "#" + Math.floorMod(UUID.fromString(transactionId).getMostSignificantBits(), buckets);
+    }
+
+    /**
+     * Every index partition that can hold an account's transactions. Transactions written before bucketing
+     * was enabled are under the plain account ID, which is therefore always included.
+     */
+    public static List<String> indexPartitions(String accountId, int buckets) {
+        List<String> partitions = new ArrayList<>(Math.max(1, buckets + 1));
+        partitions.add(accountId);
+        for (int bucket = 0; buckets > 1 && bucket < buckets; bucket++) {
+            partitions.add(accountId + "#" + bucket);
+        }
+        return partitions;
+    }
+
     public enum TransactionType {
         DEPOSIT,
         WITHDRAWAL
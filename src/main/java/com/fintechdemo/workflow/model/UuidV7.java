@@ -0,0 +1,42 @@
+package com.fintechdemo.workflow.model;
+
+import com.fasterxml.uuid.EthernetAddress;
+import com.fasterxml.uuid.Generators;
+import com.fasterxml.uuid.UUIDTimer;
+import com.fasterxml.uuid.impl.TimeBasedReorderedGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Time-ordered UUIDs for entity versions and ids. The generator's node and clock sequence are chosen
+ * randomly at startup. With SnapStart, every execution environment restored from one snapshot would
+ * resume with the same values, so the restore hooks call {@link #reseed()}.
+ */
+public final class UuidV7 {
+
+    private static volatile TimeBasedReorderedGenerator generator = newGenerator();
+
+    private UuidV7() {
+    }
+
+    public static UUID generate() {
+        return generator.generate();
+    }
+
+    public static void reseed() {
+        generator = newGenerator();
+    }
+
+    private static TimeBasedReorderedGenerator newGenerator() {
+        SecureRandom random = new SecureRandom();
+        try {
+            return Generators.timeBasedReorderedGenerator(
+                EthernetAddress.constructMulticastAddress(random), new UUIDTimer(random, null));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create UUID timer", e);
+        }
+    }
+}
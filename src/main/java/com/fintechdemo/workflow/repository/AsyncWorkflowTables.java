@@ -0,0 +1,127 @@
+package com.fintechdemo.workflow.repository;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking handles of the entities read by the services' {@code CompletableFuture} methods, on the same
+ * schemas as {@link WorkflowTables}. Only reads go through here: writes stay on the synchronous client, whose
+ * conditional and transactional paths do their own retries.
+ *
+ * <p>The async client, and Netty under it unless the transport is {@code crt}, is only built on the first
+ * read, so a container that never serves one does not load it during init.
+ */
+public final class AsyncWorkflowTables {
+
+    /**
+     * The handles on one table, built together with the client on first use.
+     */
+    private record Handles(DynamoDbEnhancedAsyncClient enhancedClient,
+                           DynamoDbAsyncTable<Account> accounts,
+                           DynamoDbAsyncTable<Customer> customers,
+                           DynamoDbAsyncTable<Transaction> transactions,
+                           DynamoDbAsyncIndex<Account> accountsByParent,
+                           DynamoDbAsyncIndex<Transaction> transactionsByParent) {
+    }
+
+    private final Supplier<DynamoDbAsyncClient> dynamoDbAsyncClient;
+    private final String tableName;
+
+    private volatile Handles handles;
+    private volatile long startupNanos = -1;
+
+    /**
+     * @param dynamoDbAsyncClient supplies the client on first use, the same one for every call
+     */
+    public AsyncWorkflowTables(Supplier<DynamoDbAsyncClient> dynamoDbAsyncClient, String tableName) {
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * The same handles on another table, sharing the client.
+     */
+    public AsyncWorkflowTables withTableName(String tableName) {
+        return new AsyncWorkflowTables(dynamoDbAsyncClient, tableName);
+    }
+
+    private Handles handles() {
+        Handles current = handles;
+        if (current == null) {
+            synchronized (this) {
+                current = handles;
+                if (current == null) {
+                    long start = System.nanoTime();
+                    DynamoDbEnhancedAsyncClient enhancedClient = DynamoDbEnhancedAsyncClient.builder()
+                        .dynamoDbClient(dynamoDbAsyncClient.get())
+                        .build();
+                    DynamoDbAsyncTable<Account> accounts = enhancedClient.table(tableName, WorkflowTables.ACCOUNT_SCHEMA);
+                    DynamoDbAsyncTable<Transaction> transactions = enhancedClient.table(tableName, WorkflowTables.TRANSACTION_SCHEMA);
+                    current = new Handles(enhancedClient,
+                        accounts,
+                        enhancedClient.table(tableName, WorkflowTables.CUSTOMER_SCHEMA),
+                        transactions,
+                        accounts.index(WorkflowTables.PARENT_SEQUENCE_INDEX),
+                        transactions.index(WorkflowTables.PARENT_SEQUENCE_INDEX));
+                    handles = current;
+                    startupNanos = System.nanoTime() - start;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Whether the handles, and with them the client, were built yet.
+     */
+    public boolean isStarted() {
+        return handles != null;
+    }
+
+    /**
+     * How long building the handles and the client took, or -1 if they were not built yet.
+     */
+    public long startupMillis() {
+        long nanos = startupNanos;
+        return nanos < 0 ? -1 : nanos / 1_000_000;
+    }
+
+    public DynamoDbAsyncClient dynamoDbAsyncClient() {
+        return dynamoDbAsyncClient.get();
+    }
+
+    public String tableName() {
+        return tableName;
+    }
+
+    public DynamoDbEnhancedAsyncClient enhancedClient() {
+        return handles().enhancedClient();
+    }
+
+    public DynamoDbAsyncTable<Account> accounts() {
+        return handles().accounts();
+    }
+
+    public DynamoDbAsyncTable<Customer> customers() {
+        return handles().customers();
+    }
+
+    public DynamoDbAsyncTable<Transaction> transactions() {
+        return handles().transactions();
+    }
+
+    public DynamoDbAsyncIndex<Account> accountsByParent() {
+        return handles().accountsByParent();
+    }
+
+    public DynamoDbAsyncIndex<Transaction> transactionsByParent() {
+        return handles().transactionsByParent();
+    }
+}
@@ -0,0 +1,151 @@
+package com.fintechdemo.workflow.repository;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.BaseEntity;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondarySortKey;
+
+/**
+ * Handwritten schemas of the accounts, customers and transactions, mapping the same attributes as their bean
+ * schemas, so that items written by either read the same. Nothing is introspected: the attributes are
+ * plain getter and setter references. {@code id} and {@code version} are mapped from the UUID fields
+ * directly rather than through the String accessors of {@link BaseEntity}.
+ */
+public final class EntitySchemas {
+
+    private static final StaticTableSchema<BaseEntity> ENTITY = StaticTableSchema.builder(BaseEntity.class)
+        .addAttribute(UUID.class, a -> a.name("id")
+            .getter(BaseEntity::getUuid)
+            .setter(BaseEntity::setId)
+            .tags(primaryPartitionKey()))
+        .addAttribute(String.class, a -> a.name("type")
+            .getter(BaseEntity::getType)
+            .setter(BaseEntity::setType))
+        .addAttribute(UUID.class, a -> a.name("version")
+            .getter(BaseEntity::getVersionUuid)
+            .setter(BaseEntity::setVersion))
+        // Written alongside version by the bean schema, and still set by the stamp's updates
+        .addAttribute(UUID.class, a -> a.name("versionString")
+            .getter(BaseEntity::getVersionUuid)
+            .setter(BaseEntity::setVersion))
+        .addAttribute(Instant.class, a -> a.name("createdAt")
+            .getter(BaseEntity::getCreatedAt)
+            .setter(BaseEntity::setCreatedAt))
+        .addAttribute(Instant.class, a -> a.name("updatedAt")
+            .getter(BaseEntity::getUpdatedAt)
+            .setter(BaseEntity::setUpdatedAt))
+        .build();
+
+    // Entities listed under a parent in parent-sequence-index
+    private static final StaticTableSchema<BaseEntity> CHILD_ENTITY = StaticTableSchema.builder(BaseEntity.class)
+        .extend(ENTITY)
+        .addAttribute(String.class, a -> a.name("parent")
+            .getter(BaseEntity::getParent)
+            .setter(BaseEntity::setParent)
+            .tags(secondaryPartitionKey(WorkflowTables.PARENT_SEQUENCE_INDEX)))
+        .addAttribute(String.class, a -> a.name("sequence")
+            .getter(BaseEntity::getSequence)
+            .setter(BaseEntity::setSequence)
+            .tags(secondarySortKey(WorkflowTables.PARENT_SEQUENCE_INDEX)))
+        .build();
+
+    public static final StaticTableSchema<Account> ACCOUNT = StaticTableSchema.builder(Account.class)
+        .newItemSupplier(Account::new)
+        .extend(CHILD_ENTITY)
+        .addAttribute(String.class, a -> a.name("customerId")
+            .getter(Account::getCustomerId)
+            .setter(Account::setCustomerId))
+        .addAttribute(String.class, a -> a.name("name")
+            .getter(Account::getName)
+            .setter(Account::setName))
+        .addAttribute(String.class, a -> a.name("accountNumber")
+            .getter(Account::getAccountNumber)
+            .setter(Account::setAccountNumber))
+        .addAttribute(String.class, a -> a.name("currency")
+            .getter(Account::getCurrency)
+            .setter(Account::setCurrency))
+        .addAttribute(BigDecimal.class, a -> a.name("balance")
+            .getter(Account::getBalance)
+            .setter(Account::setBalance))
+        .addAttribute(BigDecimal.class, a -> a.name("pending")
+            .getter(Account::getPending)
+            .setter(Account::setPending))
+        .addAttribute(Account.AccountStatus.class, a -> a.name("status")
+            .getter(Account::getStatus)
+            .setter(Account::setStatus))
+        .addAttribute(String.class, a -> a.name("latestTransaction")
+            .getter(Account::getLatestTransaction)
+            .setter(Account::setLatestTransaction))
+        .addAttribute(Integer.class, a -> a.name("ledgerShards")
+            .getter(Account::getLedgerShards)
+            .setter(Account::setLedgerShards))
+        .addAttribute(String.class, a -> a.name("ledgerShardedFrom")
+            .getter(Account::getLedgerShardedFrom)
+            .setter(Account::setLedgerShardedFrom))
+        .build();
+
+    public static final StaticTableSchema<Customer> CUSTOMER = StaticTableSchema.builder(Customer.class)
+        .newItemSupplier(Customer::new)
+        .extend(ENTITY)
+        // Customers are not listed under a parent, so these are not index keys
+        .addAttribute(String.class, a -> a.name("parent")
+            .getter(Customer::getParent)
+            .setter(Customer::setParent))
+        .addAttribute(String.class, a -> a.name("sequence")
+            .getter(Customer::getSequence)
+            .setter(Customer::setSequence))
+        .addAttribute(String.class, a -> a.name("name")
+            .getter(Customer::getName)
+            .setter(Customer::setName))
+        .build();
+
+    public static final StaticTableSchema<Transaction> TRANSACTION = StaticTableSchema.builder(Transaction.class)
+        .newItemSupplier(Transaction::new)
+        .extend(CHILD_ENTITY)
+        .addAttribute(String.class, a -> a.name("accountId")
+            .getter(Transaction::getAccountId)
+            .setter(Transaction::setAccountId))
+        .addAttribute(String.class, a -> a.name("userId")
+            .getter(Transaction::getUserId)
+            .setter(Transaction::setUserId))
+        .addAttribute(String.class, a -> a.name("currency")
+            .getter(Transaction::getCurrency)
+            .setter(Transaction::setCurrency))
+        .addAttribute(BigDecimal.class, a -> a.name("amount")
+            .getter(Transaction::getAmount)
+            .setter(Transaction::setAmount))
+        .addAttribute(Instant.class, a -> a.name("transactedAt")
+            .getter(Transaction::getTransactedAt)
+            .setter(Transaction::setTransactedAt))
+        .addAttribute(String.class, a -> a.name("beneficiaryIBAN")
+            .getter(Transaction::getBeneficiaryIBAN)
+            .setter(Transaction::setBeneficiaryIBAN))
+        .addAttribute(String.class, a -> a.name("payorIBAN")
+            .getter(Transaction::getPayorIBAN)
+            .setter(Transaction::setPayorIBAN))
+        .addAttribute(String.class, a -> a.name("originatingCountry")
+            .getter(Transaction::getOriginatingCountry)
+            .setter(Transaction::setOriginatingCountry))
+        .addAttribute(String.class, a -> a.name("paymentRef")
+            .getter(Transaction::getPaymentRef)
+            .setter(Transaction::setPaymentRef))
+        .addAttribute(String.class, a -> a.name("purposeRef")
+            .getter(Transaction::getPurposeRef)
+            .setter(Transaction::setPurposeRef))
+        .addAttribute(Transaction.TransactionType.class, a -> a.name("transactionType")
+            .getter(Transaction::getTransactionType)
+            .setter(Transaction::setTransactionType))
+        .build();
+
+    private EntitySchemas() {
+    }
+}
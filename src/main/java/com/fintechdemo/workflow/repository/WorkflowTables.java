@@ -0,0 +1,127 @@
+package com.fintechdemo.workflow.repository;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.BalanceCheckpoint;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.LedgerShard;
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.model.Transaction;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+/**
+ * The enhanced client and the typed handles of every entity in the workflow table, built once and shared by
+ * the services and both Lambda handlers. {@link TableSchema#fromBean} introspects the bean and generates its
+ * accessors on every call, so the schemas are built once per class loader; the handles themselves are
+ * immutable and safe to share between threads. The entities read and written on every request use the
+ * handwritten {@link EntitySchemas}, which skip the introspection altogether.
+ */
+public final class WorkflowTables {
+
+    public static final String PARENT_SEQUENCE_INDEX = "parent-sequence-index";
+
+    public static final TableSchema<Account> ACCOUNT_SCHEMA = EntitySchemas.ACCOUNT;
+    public static final TableSchema<Customer> CUSTOMER_SCHEMA = EntitySchemas.CUSTOMER;
+    public static final TableSchema<Transaction> TRANSACTION_SCHEMA = EntitySchemas.TRANSACTION;
+    public static final TableSchema<LedgerShard> SHARD_SCHEMA = TableSchema.fromBean(LedgerShard.class);
+    public static final TableSchema<BalanceCheckpoint> CHECKPOINT_SCHEMA = TableSchema.fromBean(BalanceCheckpoint.class);
+    public static final TableSchema<ParkedRecord> PARKED_RECORD_SCHEMA = TableSchema.fromBean(ParkedRecord.class);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final DynamoDbEnhancedClient enhancedClient;
+
+    private final DynamoDbTable<Account> accounts;
+    private final DynamoDbTable<Customer> customers;
+    private final DynamoDbTable<Transaction> transactions;
+    private final DynamoDbTable<LedgerShard> ledgerShards;
+    private final DynamoDbTable<BalanceCheckpoint> checkpoints;
+    private final DynamoDbTable<ParkedRecord> parkedRecords;
+
+    private final DynamoDbIndex<Account> accountsByParent;
+    private final DynamoDbIndex<Transaction> transactionsByParent;
+    private final DynamoDbIndex<BalanceCheckpoint> checkpointsByParent;
+    private final DynamoDbIndex<ParkedRecord> parkedRecordsByParent;
+
+    public WorkflowTables(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+
+        this.accounts = enhancedClient.table(tableName, ACCOUNT_SCHEMA);
+        this.customers = enhancedClient.table(tableName, CUSTOMER_SCHEMA);
+        this.transactions = enhancedClient.table(tableName, TRANSACTION_SCHEMA);
+        this.ledgerShards = enhancedClient.table(tableName, SHARD_SCHEMA);
+        this.checkpoints = enhancedClient.table(tableName, CHECKPOINT_SCHEMA);
+        this.parkedRecords = enhancedClient.table(tableName, PARKED_RECORD_SCHEMA);
+
+        this.accountsByParent = accounts.index(PARENT_SEQUENCE_INDEX);
+        this.transactionsByParent = transactions.index(PARENT_SEQUENCE_INDEX);
+        this.checkpointsByParent = checkpoints.index(PARENT_SEQUENCE_INDEX);
+        this.parkedRecordsByParent = parkedRecords.index(PARENT_SEQUENCE_INDEX);
+    }
+
+    /**
+     * The same handles on another table, sharing the client.
+     */
+    public WorkflowTables withTableName(String tableName) {
+        return new WorkflowTables(dynamoDbClient, tableName);
+    }
+
+    public DynamoDbClient dynamoDbClient() {
+        return dynamoDbClient;
+    }
+
+    public String tableName() {
+        return tableName;
+    }
+
+    public DynamoDbEnhancedClient enhancedClient() {
+        return enhancedClient;
+    }
+
+    public DynamoDbTable<Account> accounts() {
+        return accounts;
+    }
+
+    public DynamoDbTable<Customer> customers() {
+        return customers;
+    }
+
+    public DynamoDbTable<Transaction> transactions() {
+        return transactions;
+    }
+
+    public DynamoDbTable<LedgerShard> ledgerShards() {
+        return ledgerShards;
+    }
+
+    public DynamoDbTable<BalanceCheckpoint> checkpoints() {
+        return checkpoints;
+    }
+
+    public DynamoDbTable<ParkedRecord> parkedRecords() {
+        return parkedRecords;
+    }
+
+    public DynamoDbIndex<Account> accountsByParent() {
+        return accountsByParent;
+    }
+
+    public DynamoDbIndex<Transaction> transactionsByParent() {
+        return transactionsByParent;
+    }
+
+    public DynamoDbIndex<BalanceCheckpoint> checkpointsByParent() {
+        return checkpointsByParent;
+    }
+
+    public DynamoDbIndex<ParkedRecord> parkedRecordsByParent() {
+        return parkedRecordsByParent;
+    }
+}
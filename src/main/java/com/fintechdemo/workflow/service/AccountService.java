@@ -1,40 +1,80 @@
 package com.fintechdemo.workflow.service;
 
+import com.fintechdemo.workflow.controller.AccountBalanceResponse;
 import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.BalanceCheckpoint;
+import com.fintechdemo.workflow.model.LedgerShard;
+import com.fintechdemo.workflow.model.SequenceCodec;
+import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import com.fintechdemo.workflow.repository.WorkflowTables;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.Document;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import com.fasterxml.uuid.Generators;
-import com.fasterxml.uuid.impl.TimeBasedReorderedGenerator;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactGetItemsEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactPutItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Lazy  // Lazy initialization to prevent issues with SnapStart
-public class AccountService {
+public class AccountService implements AccountUpdateListener {
     
-    private final DynamoDbClient dynamoDbClient;
-    
-    @Value("${app.dynamodb.table-name:fintechdemo-workflow-dev}")
-    private String tableName;
-    
-    // UUIDv7 generator for time-ordered sequence values
-    private static final TimeBasedReorderedGenerator UUID_V7_GENERATOR = Generators.timeBasedReorderedGenerator();
+    private final WorkflowTables tables;
+    private final AsyncWorkflowTables asyncTables;
+    private final TransactionService transactionService;
+
+    // DynamoDB limits BatchGetItem to 100 keys
+    private static final int MAX_BATCH_GET_KEYS = 100;
+
+    private static final Executor SHARD_READS = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Accounts and customer account listings read by this container, see EntityCache
+    @Value("${app.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${app.cache.ttl-ms:2000}")
+    private long cacheTtlMs;
+
+    private EntityCache<Account> accountCache;
+    private EntityCache<List<Account>> customerAccountsCache;
+
+    @PostConstruct
+    void initCaches() {
+        accountCache = new EntityCache<>("accounts", cacheMaxEntries, cacheTtlMs, Account::getVersionUuid);
+        // A listing has no version of its own; it is evicted whenever one of its accounts changes
+        customerAccountsCache = new EntityCache<>("customerAccounts", cacheMaxEntries, cacheTtlMs, accounts -> null);
+    }
     
     public Account createAccount(String customerId, String name, String currency) {
         log.info("Creating account for customer: {}, name: {}, currency: {}", customerId, name, currency);
@@ -53,9 +93,9 @@ public class AccountService {
         // Generate UUIDv4 for new account
         UUID accountId = UUID.randomUUID();
         // Generate UUIDv7 for time-ordered sequence
-        UUID sequenceUuid = UUID_V7_GENERATOR.generate();
+        UUID sequenceUuid = UuidV7.generate();
         // Generate UUIDv7 for version (optimistic concurrency control)
-        UUID versionId = UUID_V7_GENERATOR.generate();
+        UUID versionId = UuidV7.generate();
         Instant now = Instant.now();
         
         Account account = Account.builder()
@@ -76,14 +116,11 @@ public class AccountService {
             .build();
 
         // Save to DynamoDB
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Account> table = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Account> table = tables.accounts();
         
         try {
             table.putItem(account);
+            customerAccountsCache.evict(customerId);
             log.info("Successfully created account with ID: {}", accountId);
             return account;
         } catch (Exception e) {
@@ -100,12 +137,14 @@ public class AccountService {
             return null;
         }
         
+        Account cached = accountCache.get(id);
+        if (cached != null) {
+            log.debug("Found cached account: {}", id);
+            return cached;
+        }
+        
         // Retrieve from DynamoDB
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Account> table = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Account> table = tables.accounts();
         
         try {
             Key key = Key.builder()
@@ -118,13 +157,217 @@ public class AccountService {
                 log.info("Account not found with ID: {}", id);
                 return null;
             }
+
+            if (LedgerShard.isSharded(account)) {
+                account = readShardedAccount(id, account.getLedgerShards());
+                if (account == null) {
+                    log.info("Account not found with ID: {}", id);
+                    return null;
+                }
+            }
+            accountCache.put(id, account);
             
             log.info("Successfully found account: {}", account.getName());
             return account;
         } catch (Exception e) {
+            // A failed read is not a missing account, so it is not answered as one
             log.error("Failed to find account with ID {}: {}", id, e.getMessage(), e);
+            throw new RuntimeException("Failed to find account " + id, e);
+        }
+    }
+
+    /**
+     * Designates a hot account: from now on its transactions are stamped on {@code shardCount} ledger
+     * shards instead of the account item. The account and all shards are written in one transaction,
+     * conditioned on the account's version, so a concurrent stamp either lands before or retries after.
+     */
+    public Account enableLedgerSharding(String accountId, int shardCount) {
+        log.info("Enabling {} ledger shards for account: {}", shardCount, accountId);
+
+        if (shardCount < 2 || shardCount > LedgerShard.MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 2 and " + LedgerShard.MAX_SHARDS);
+        }
+
+        DynamoDbTable<Account> table = tables.accounts();
+        DynamoDbTable<LedgerShard> shardTable = tables.ledgerShards();
+
+        Account account = table.getItem(GetItemEnhancedRequest.builder()
+            .key(Key.builder().partitionValue(accountId).build())
+            .consistentRead(true)
+            .build());
+        if (account == null) {
+            throw new IllegalArgumentException("Account not found: " + accountId);
+        }
+        if (LedgerShard.isSharded(account)) {
+            throw new IllegalStateException("Account " + accountId + " already has " + account.getLedgerShards() + " ledger shards");
+        }
+
+        String expectedVersion = account.getVersionString();
+        Instant now = Instant.now();
+        account.setLedgerShards(shardCount);
+        account.setLedgerShardedFrom(account.getLatestTransaction());
+        account.setVersion(UuidV7.generate());
+        account.setUpdatedAt(now);
+
+        TransactWriteItemsEnhancedRequest.Builder request = TransactWriteItemsEnhancedRequest.builder()
+            .addPutItem(table, TransactPutItemEnhancedRequest.builder(Account.class)
+                .item(account)
+                .conditionExpression(Expression.builder()
+                    .expression("#version = :expectedVersion AND attribute_not_exists(#ledgerShards)")
+                    .expressionNames(Map.of("#version", "version", "#ledgerShards", "ledgerShards"))
+                    .expressionValues(Map.of(":expectedVersion", AttributeValue.builder().s(expectedVersion).build()))
+                    .build())
+                .build());
+        for (int i = 0; i < shardCount; i++) {
+            request.addPutItem(shardTable, TransactPutItemEnhancedRequest.builder(LedgerShard.class)
+                .item(LedgerShard.create(account, i, UuidV7.generate(), now))
+                .conditionExpression(Expression.builder()
+                    .expression("attribute_not_exists(id)")
+                    .build())
+                .build());
+        }
+
+        try {
+            tables.enhancedClient().transactWriteItems(request.build());
+            accountChanged(accountId);
+            log.info("✅ Account {} now stamps on {} ledger shards, from sequence {}", 
+                     accountId, shardCount, account.getLedgerShardedFrom());
+            return account;
+        } catch (TransactionCanceledException e) {
+            log.warn("Account {} changed while enabling ledger sharding: {}", accountId, e.getMessage());
+            throw new IllegalStateException("Account " + accountId + " changed concurrently, retry enabling ledger sharding", e);
+        }
+    }
+
+    /**
+     * Reads a sharded account together with its shards in one transactional read, so that a rollup
+     * moving totals from the shards into the account is either fully seen or not at all. The account's
+     * balance, pending and latest transaction then include everything stamped on the shards.
+     *
+     * @return the account, or null if it was deleted since it was first read
+     */
+    private Account readShardedAccount(String id, int shardCount) {
+        DynamoDbTable<Account> table = tables.accounts();
+        DynamoDbTable<LedgerShard> shardTable = tables.ledgerShards();
+
+        TransactGetItemsEnhancedRequest.Builder request = TransactGetItemsEnhancedRequest.builder()
+            .addGetItem(table, Key.builder().partitionValue(id).build());
+        for (int i = 0; i < shardCount; i++) {
+            request.addGetItem(shardTable, Key.builder().partitionValue(LedgerShard.shardId(id, i)).build());
+        }
+
+        List<Document> documents = tables.enhancedClient().transactGetItems(request.build());
+        Account account = documents.get(0).getItem(table);
+        if (account == null) {
+            return null;
+        }
+
+        BigDecimal balance = account.getBalance();
+        BigDecimal pending = account.getPending();
+        String latestTransaction = account.getLatestTransaction();
+        for (Document document : documents.subList(1, documents.size())) {
+            LedgerShard shard = document.getItem(shardTable);
+            if (shard == null) {
+                continue;
+            }
+            balance = balance.add(shard.getBalance());
+            pending = pending.add(shard.getPending());
+            if (shard.getLatestTransaction() != null
+                    && (latestTransaction == null || shard.getLatestTransaction().compareTo(latestTransaction) > 0)) {
+                latestTransaction = shard.getLatestTransaction();
+            }
+        }
+
+        log.info("Account {} balance {} includes {} ledger shards", id, balance, shardCount);
+        account.setBalance(balance);
+        account.setPending(pending);
+        account.setLatestTransaction(latestTransaction);
+        return account;
+    }
+
+    /**
+     * Balance and pending of an account as of an instant (ISO-8601, or a date for the end of that UTC
+     * day; now when null). Starts from the latest checkpoint before the instant's day and replays the
+     * transactions stamped after it up to the instant, so only the days since the account's last closed
+     * day are read rather than its whole history.
+     */
+    public AccountBalanceResponse getBalanceAsOf(String accountId, String asOf) {
+        log.info("Finding balance of account {} as of {}", accountId, asOf);
+
+        if (accountId == null || accountId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Account ID cannot be null or empty");
+        }
+        Instant asOfInstant = parseAsOf(asOf);
+
+        // Consistent, like enabling sharding, so that an account created just before is found
+        Account account = tables.accounts().getItem(GetItemEnhancedRequest.builder()
+            .key(Key.builder().partitionValue(accountId).build())
+            .consistentRead(true)
+            .build());
+        if (account == null) {
+            log.info("Account not found with ID: {}", accountId);
             return null;
         }
+
+        // The latest checkpoint closing a day before the instant's day
+        LocalDate day = asOfInstant.atZone(ZoneOffset.UTC).toLocalDate();
+        DynamoDbIndex<BalanceCheckpoint> checkpointIndex = tables.checkpointsByParent();
+        QueryConditional beforeDay = QueryConditional.sortBetween(
+            Key.builder().partitionValue(accountId).sortValue(BalanceCheckpoint.SEQUENCE_PREFIX).build(),
+            Key.builder().partitionValue(accountId)
+                .sortValue(BalanceCheckpoint.sequenceOf(SequenceCodec.dateKey(day.minusDays(1)))).build());
+        BalanceCheckpoint checkpoint = checkpointIndex.query(QueryEnhancedRequest.builder()
+                .queryConditional(beforeDay)
+                .scanIndexForward(false)
+                .limit(1)
+                .build())
+            .stream()
+            .flatMap(page -> page.items().stream())
+            .findFirst()
+            .orElse(null);
+
+        BigDecimal balance = checkpoint != null ? checkpoint.getBalance() : BigDecimal.ZERO;
+        BigDecimal pending = checkpoint != null ? checkpoint.getPending() : BigDecimal.ZERO;
+        String lastSequence = checkpoint != null ? checkpoint.getLastSequence() : null;
+
+        // Sequences of the instant's day sort before the bare prefix of the next day
+        String beforeNextDay = SequenceCodec.PREFIX + SequenceCodec.dateKey(day.plusDays(1));
+        List<Transaction> transactions = transactionService.getStampedTransactionsBetween(accountId, lastSequence, beforeNextDay);
+
+        int replayed = 0;
+        for (Transaction transaction : transactions) {
+            // A transaction counts from the moment it was stamped
+            if (transaction.getUpdatedAt() != null && transaction.getUpdatedAt().isAfter(asOfInstant)) {
+                continue;
+            }
+            if (transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT) {
+                balance = balance.add(transaction.getAmount());
+            } else if (transaction.getTransactionType() == Transaction.TransactionType.WITHDRAWAL) {
+                pending = pending.add(transaction.getAmount().abs());
+            }
+            lastSequence = transaction.getSequence();
+            replayed++;
+        }
+
+        log.info("📊 Account {} balance {} as of {} from checkpoint {} and {} replayed transactions",
+                 accountId, balance, asOfInstant, checkpoint != null ? checkpoint.getDateKey() : null, replayed);
+        return new AccountBalanceResponse(accountId, account.getCurrency(), asOfInstant, balance, pending,
+            checkpoint != null ? checkpoint.getDateKey() : null, lastSequence, replayed);
+    }
+
+    static Instant parseAsOf(String asOf) {
+        if (asOf == null || asOf.isBlank()) {
+            return Instant.now();
+        }
+        try {
+            if (asOf.length() == 10) {
+                // A date stands for the end of that UTC day
+                return LocalDate.parse(asOf).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().minusNanos(1);
+            }
+            return Instant.parse(asOf);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid asOf, expected an ISO-8601 instant or date: " + asOf, e);
+        }
     }
 
     public Account getAccount(String id) {
@@ -139,14 +382,15 @@ public class AccountService {
             log.warn("Invalid customer ID provided: {}", customerId);
             return List.of();
         }
+
+        List<Account> cached = customerAccountsCache.get(customerId);
+        if (cached != null) {
+            log.debug("Found cached accounts for customer: {}", customerId);
+            return cached;
+        }
         
         // Query using GSI to find accounts by parent (customer ID)
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Account> table = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
-        DynamoDbIndex<Account> parentIndex = table.index("parent-sequence-index");
+        DynamoDbIndex<Account> parentIndex = tables.accountsByParent();
         
         try {
             // Query with sequence prefix filter to only get accounts (not other child entities)
@@ -160,7 +404,8 @@ public class AccountService {
             List<Account> accounts = parentIndex.query(queryConditional)
                 .stream()
                 .flatMap(page -> page.items().stream())
-                .collect(Collectors.toList());
+                .toList();
+            customerAccountsCache.put(customerId, accounts);
                 
             log.info("Found {} accounts for customer: {}", accounts.size(), customerId);
             return accounts;
@@ -169,4 +414,161 @@ public class AccountService {
             return List.of();
         }
     }
-} 
+
+    /**
+     * {@link #getCustomerAccounts} without blocking.
+     */
+    public CompletableFuture<List<Account>> getCustomerAccountsAsync(String customerId) {
+        log.info("Finding accounts for customer: {}", customerId);
+        
+        if (customerId == null || customerId.trim().isEmpty()) {
+            log.warn("Invalid customer ID provided: {}", customerId);
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        List<Account> cached = customerAccountsCache.get(customerId);
+        if (cached != null) {
+            log.debug("Found cached accounts for customer: {}", customerId);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        QueryConditional queryConditional = QueryConditional.sortBeginsWith(
+            Key.builder()
+                .partitionValue(customerId)
+                .sortValue("account-")
+                .build()
+        );
+
+        List<Account> accounts = new ArrayList<>();
+        return asyncTables.accountsByParent().query(queryConditional)
+            .flatMapIterable(Page::items)
+            .subscribe(accounts::add)
+            .thenApply(done -> {
+                List<Account> found = List.copyOf(accounts);
+                customerAccountsCache.put(customerId, found);
+                log.info("Found {} accounts for customer: {}", found.size(), customerId);
+                return found;
+            })
+            .exceptionally(e -> {
+                log.error("Failed to find accounts for customer {}: {}", customerId, e.getMessage(), e);
+                return List.of();
+            });
+    }
+
+    /**
+     * The accounts of a customer, for pages that show them all at once: the index is only asked for the
+     * account keys, and the accounts are then read from the table with {@code BatchGetItem}, except those
+     * that are cached already. Sharded accounts are read with their shards, as {@link #findById} does.
+     */
+    public CompletableFuture<List<Account>> getCustomerAccountsBatchedAsync(String customerId) {
+        if (customerId == null || customerId.trim().isEmpty()) {
+            log.warn("Invalid customer ID provided: {}", customerId);
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        List<Account> cached = customerAccountsCache.get(customerId);
+        if (cached != null) {
+            log.debug("Found cached accounts for customer: {}", customerId);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        List<String> accountIds = new ArrayList<>();
+        return asyncTables.accountsByParent().query(QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.sortBeginsWith(Key.builder()
+                    .partitionValue(customerId)
+                    .sortValue("account-")
+                    .build()))
+                .attributesToProject("id")
+                .build())
+            .flatMapIterable(Page::items)
+            .subscribe(account -> accountIds.add(account.getId()))
+            .thenCompose(done -> findByIdsAsync(accountIds))
+            .thenApply(accounts -> {
+                customerAccountsCache.put(customerId, accounts);
+                log.info("Found {} accounts for customer: {}", accounts.size(), customerId);
+                return accounts;
+            });
+    }
+
+    /**
+     * Accounts by ID, in the order given, without those that do not exist.
+     */
+    public CompletableFuture<List<Account>> findByIdsAsync(List<String> ids) {
+        Map<String, Account> found = new ConcurrentHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Account cached = accountCache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += MAX_BATCH_GET_KEYS) {
+            List<String> chunk = missing.subList(start, Math.min(start + MAX_BATCH_GET_KEYS, missing.size()));
+            ReadBatch.Builder<Account> batch = ReadBatch.builder(Account.class)
+                .mappedTableResource(asyncTables.accounts());
+            chunk.forEach(id -> batch.addGetItem(Key.builder().partitionValue(id).build()));
+
+            // Pages after the first carry the keys DynamoDB left unprocessed
+            reads.add(asyncTables.enhancedClient().batchGetItem(BatchGetItemEnhancedRequest.builder()
+                    .readBatches(batch.build())
+                    .build())
+                .resultsForTable(asyncTables.accounts())
+                .subscribe(account -> found.put(account.getId(), account)));
+        }
+
+        return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new))
+            .thenCompose(done -> {
+                // The shards of hot accounts are read in one transaction, which the async client is not used for
+                List<CompletableFuture<Void>> sharded = found.values().stream()
+                    .filter(LedgerShard::isSharded)
+                    .filter(account -> missing.contains(account.getId()))
+                    .map(account -> CompletableFuture.runAsync(() -> {
+                        Account read = readShardedAccount(account.getId(), account.getLedgerShards());
+                        if (read != null) {
+                            found.put(account.getId(), read);
+                        } else {
+                            found.remove(account.getId());
+                        }
+                    }, SHARD_READS))
+                    .toList();
+                return CompletableFuture.allOf(sharded.toArray(CompletableFuture[]::new));
+            })
+            .thenApply(done -> {
+                missing.stream()
+                    .filter(found::containsKey)
+                    .forEach(id -> accountCache.put(id, found.get(id)));
+                return ids.stream()
+                    .filter(found::containsKey)
+                    .map(found::get)
+                    .toList();
+            });
+    }
+
+    @Override
+    public void accountWritten(Account account) {
+        accountCache.refresh(account.getId(), account);
+        customerAccountsCache.evict(account.getCustomerId());
+    }
+
+    @Override
+    public void accountChanged(String accountId) {
+        accountCache.evict(accountId);
+        customerAccountsCache.evictIf(accounts -> accounts.stream().anyMatch(account -> accountId.equals(account.getId())));
+    }
+
+    public List<CacheStats> cacheStats() {
+        return List.of(accountCache.stats(), customerAccountsCache.stats());
+    }
+
+    /**
+     * Empties the read caches, such as after priming requests filled them with reads nobody asked for.
+     */
+    public void clearCaches() {
+        accountCache.clear();
+        customerAccountsCache.clear();
+    }
+}
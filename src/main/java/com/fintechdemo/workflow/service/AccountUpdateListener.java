@@ -0,0 +1,30 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.model.Account;
+
+/**
+ * Told by the stream processor about the balance updates it makes, so that reads in the same container
+ * do not serve the account as it was before. Other containers rely on their caches' TTL.
+ */
+public interface AccountUpdateListener {
+
+    AccountUpdateListener NONE = new AccountUpdateListener() {
+        @Override
+        public void accountWritten(Account account) {
+        }
+
+        @Override
+        public void accountChanged(String accountId) {
+        }
+    };
+
+    /**
+     * An account item was written as given.
+     */
+    void accountWritten(Account account);
+
+    /**
+     * An account, or one of its ledger shards, was updated in place, so its new state is not at hand.
+     */
+    void accountChanged(String accountId);
+}
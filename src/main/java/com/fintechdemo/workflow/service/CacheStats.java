@@ -0,0 +1,8 @@
+package com.fintechdemo.workflow.service;
+
+/**
+ * Counters of one read-through cache of this container since it started. Evictions count entries dropped
+ * for any reason: size, TTL, or a write.
+ */
+public record CacheStats(String name, long hits, long misses, long evictions, int size) {
+}
@@ -0,0 +1,105 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.controller.CustomerOverviewResponse;
+import com.fintechdemo.workflow.controller.CustomerOverviewResponse.AccountOverview;
+import com.fintechdemo.workflow.model.Account;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A customer with all of their accounts and each account's latest transactions, in one response. The
+ * customer and the accounts are read at the same time; the transactions of at most
+ * {@code app.overview.max-concurrency} accounts are read at once, so that a customer with many accounts
+ * does not take all connections of the client.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerOverviewService {
+
+    // Latest transactions listed per account; more would defeat the bounded fan-out
+    public static final int MAX_TRANSACTIONS_PER_ACCOUNT = 100;
+
+    private final CustomerService customerService;
+    private final AccountService accountService;
+    private final TransactionService transactionService;
+
+    @Value("${app.overview.max-concurrency:8}")
+    private int maxConcurrency;
+
+    /**
+     * @return the overview, or null if there is no such customer
+     * @throws IllegalArgumentException if {@code transactionsPerAccount} is outside 0 to {@value #MAX_TRANSACTIONS_PER_ACCOUNT}
+     */
+    public CompletableFuture<CustomerOverviewResponse> getOverview(String customerId, int transactionsPerAccount) {
+        if (transactionsPerAccount < 0 || transactionsPerAccount > MAX_TRANSACTIONS_PER_ACCOUNT) {
+            throw new IllegalArgumentException("Transactions per account must be between 0 and " + MAX_TRANSACTIONS_PER_ACCOUNT);
+        }
+        log.info("🔎 Building overview of customer {} with {} transactions per account", customerId, transactionsPerAccount);
+
+        CompletableFuture<List<Account>> accounts = accountService.getCustomerAccountsBatchedAsync(customerId);
+        return customerService.findByIdAsync(customerId)
+            .thenCombine(accounts, (customer, customerAccounts) -> {
+                if (customer == null) {
+                    return CompletableFuture.<CustomerOverviewResponse>completedFuture(null);
+                }
+                return boundedFanOut(customerAccounts, maxConcurrency, account -> transactionService
+                        .getLatestTransactionsAsync(account.getId(), transactionsPerAccount)
+                        .thenApply(transactions -> new AccountOverview(account, transactions)))
+                    .thenApply(overviews -> {
+                        log.info("✅ Built overview of customer {} with {} accounts", customerId, overviews.size());
+                        return new CustomerOverviewResponse(customer, overviews);
+                    });
+            })
+            .thenCompose(Function.identity());
+    }
+
+    /**
+     * Applies {@code call} to every item with at most {@code maxInFlight} calls running; each completed call
+     * starts the next. The results are in the order of the items.
+     */
+    static <T, R> CompletableFuture<List<R>> boundedFanOut(List<T> items, int maxInFlight,
+                                                          Function<T, CompletableFuture<R>> call) {
+        List<CompletableFuture<R>> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        Runnable[] launchNext = new Runnable[1];
+        launchNext[0] = () -> {
+            int index = next.getAndIncrement();
+            if (index >= items.size()) {
+                return;
+            }
+            CompletableFuture<R> result = results.get(index);
+            try {
+                call.apply(items.get(index)).whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                    launchNext[0].run();
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                launchNext[0].run();
+            }
+        };
+        for (int i = 0; i < Math.max(1, maxInFlight); i++) {
+            launchNext[0].run();
+        }
+
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+            .thenApply(done -> results.stream().map(CompletableFuture::join).toList());
+    }
+}
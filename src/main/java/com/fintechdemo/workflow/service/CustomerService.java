@@ -1,36 +1,42 @@
 package com.fintechdemo.workflow.service;
 
 import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import com.fintechdemo.workflow.repository.WorkflowTables;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-
-import com.fasterxml.uuid.Generators;
-import com.fasterxml.uuid.impl.TimeBasedReorderedGenerator;
 
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Lazy  // Lazy initialization to prevent issues with SnapStart
 public class CustomerService {
     
-    private final DynamoDbClient dynamoDbClient;
-    
-    @Value("${app.dynamodb.table-name:fintechdemo-workflow-dev}")
-    private String tableName;
-    
-    // UUIDv7 generator for version fields
-    private static final TimeBasedReorderedGenerator UUID_V7_GENERATOR = Generators.timeBasedReorderedGenerator();
+    private final WorkflowTables tables;
+    private final AsyncWorkflowTables asyncTables;
+
+    // Customers read by this container, see EntityCache
+    @Value("${app.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${app.cache.ttl-ms:2000}")
+    private long cacheTtlMs;
+
+    private EntityCache<Customer> customerCache;
+
+    @PostConstruct
+    void initCache() {
+        customerCache = new EntityCache<>("customers", cacheMaxEntries, cacheTtlMs, Customer::getVersionUuid);
+    }
     
     public Customer createCustomer(String name) {
         log.info("Creating customer with name: {}", name);
@@ -43,7 +49,7 @@ public class CustomerService {
         // Generate UUIDv4 for new customer
         UUID customerId = UUID.randomUUID();
         // Generate UUIDv7 for version (optimistic concurrency control)
-        UUID versionId = UUID_V7_GENERATOR.generate();
+        UUID versionId = UuidV7.generate();
         Instant now = Instant.now();
         
         Customer customer = Customer.builder()
@@ -56,14 +62,11 @@ public class CustomerService {
             .build();
         
         // Save to DynamoDB
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Customer> table = enhancedClient.table(tableName, TableSchema.fromBean(Customer.class));
+        DynamoDbTable<Customer> table = tables.customers();
         
         try {
             table.putItem(customer);
+            customerCache.put(customer.getId(), customer);
             log.info("Successfully created customer with ID: {}", customerId);
             return customer;
         } catch (Exception e) {
@@ -74,13 +77,15 @@ public class CustomerService {
 
     public Customer getCustomer(String id) {
         log.info("Retrieving customer with ID: {}", id);
+
+        Customer cached = customerCache.get(id);
+        if (cached != null) {
+            log.debug("Found cached customer: {}", id);
+            return cached;
+        }
         
         // Retrieve from DynamoDB
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Customer> table = enhancedClient.table(tableName, TableSchema.fromBean(Customer.class));
+        DynamoDbTable<Customer> table = tables.customers();
         
         try {
             Key key = Key.builder()
@@ -93,6 +98,7 @@ public class CustomerService {
                 log.warn("Customer not found with ID: {}", id);
                 throw new RuntimeException("Customer not found with ID: " + id);
             }
+            customerCache.put(id, customer);
             
             log.info("Successfully retrieved customer: {}", customer.getName());
             return customer;
@@ -109,13 +115,15 @@ public class CustomerService {
             log.warn("Invalid customer ID provided: {}", id);
             return null;
         }
+
+        Customer cached = customerCache.get(id);
+        if (cached != null) {
+            log.debug("Found cached customer: {}", id);
+            return cached;
+        }
         
         // Retrieve from DynamoDB
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Customer> table = enhancedClient.table(tableName, TableSchema.fromBean(Customer.class));
+        DynamoDbTable<Customer> table = tables.customers();
         
         try {
             Key key = Key.builder()
@@ -128,6 +136,7 @@ public class CustomerService {
                 log.info("Customer not found with ID: {}", id);
                 return null;
             }
+            customerCache.put(id, customer);
             
             log.info("Successfully found customer: {}", customer.getName());
             return customer;
@@ -136,4 +145,50 @@ public class CustomerService {
             return null;
         }
     }
-} 
+
+    /**
+     * {@link #findById} without blocking.
+     */
+    public CompletableFuture<Customer> findByIdAsync(String id) {
+        log.info("Finding customer with ID: {}", id);
+        
+        if (id == null || id.trim().isEmpty()) {
+            log.warn("Invalid customer ID provided: {}", id);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Customer cached = customerCache.get(id);
+        if (cached != null) {
+            log.debug("Found cached customer: {}", id);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        return asyncTables.customers().getItem(Key.builder()
+                .partitionValue(id)
+                .build())
+            .thenApply(customer -> {
+                if (customer == null) {
+                    log.info("Customer not found with ID: {}", id);
+                } else {
+                    customerCache.put(id, customer);
+                    log.info("Successfully found customer: {}", customer.getName());
+                }
+                return customer;
+            })
+            .exceptionally(e -> {
+                log.error("Failed to find customer with ID {}: {}", id, e.getMessage(), e);
+                return null;
+            });
+    }
+
+    public CacheStats cacheStats() {
+        return customerCache.stats();
+    }
+
+    /**
+     * Empties the read cache, such as after priming requests filled it with reads nobody asked for.
+     */
+    public void clearCache() {
+        customerCache.clear();
+    }
+}
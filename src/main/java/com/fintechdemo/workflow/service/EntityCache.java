@@ -0,0 +1,137 @@
+package com.fintechdemo.workflow.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU read-through cache of entities read by this container, keyed by entity ID, whose entries also
+ * expire after a TTL. The TTL bounds how stale a read can be when another container writes the entity; the
+ * writes this container knows of replace or evict entries directly. Entries are replaced only by versions at
+ * least as new as theirs, compared as UUIDv7, so an eventually consistent read cannot undo a newer write.
+ * Expiry follows the wall clock, which unlike {@link System#nanoTime} stays meaningful across a SnapStart
+ * restore. Cached values are shared; callers must not modify them.
+ */
+final class EntityCache<V> {
+
+    private record Entry<V>(V value, UUID version, long expiresAtMillis) {
+    }
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Function<V, UUID> version;
+    private final Map<String, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    EntityCache(String name, int maxEntries, long ttlMillis, Function<V, UUID> version) {
+        this.name = name;
+        this.maxEntries = ttlMillis > 0 ? Math.max(0, maxEntries) : 0;
+        this.ttlMillis = ttlMillis;
+        this.version = version;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The cached value of an ID, unless it is missing or has expired.
+     */
+    synchronized V get(String id) {
+        if (maxEntries == 0) {
+            return null;
+        }
+        Entry<V> entry = entries.get(id);
+        if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(id);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    /**
+     * Caches a value read from the table, unless a newer version is cached already.
+     */
+    synchronized void put(String id, V value) {
+        if (maxEntries == 0 || value == null) {
+            return;
+        }
+        UUID newVersion = version.apply(value);
+        Entry<V> current = entries.get(id);
+        if (current != null && isNewer(current.version(), newVersion)) {
+            return;
+        }
+        entries.put(id, new Entry<>(value, newVersion, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Replaces a cached value with one this container has written, if it is newer. IDs that are not cached
+     * stay uncached, so that writes do not fill the cache with entities nobody reads.
+     */
+    synchronized void refresh(String id, V value) {
+        Entry<V> current = entries.get(id);
+        if (current != null && !isNewer(current.version(), version.apply(value))) {
+            entries.put(id, new Entry<>(value, version.apply(value), System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    synchronized void evict(String id) {
+        if (entries.remove(id) != null) {
+            evictions++;
+        }
+    }
+
+    synchronized void evictIf(Predicate<V> predicate) {
+        for (Iterator<Entry<V>> it = entries.values().iterator(); it.hasNext(); ) {
+            if (predicate.test(it.next().value())) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Drops every entry and resets the counters.
+     */
+    synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(name, hits, misses, evictions, entries.size());
+    }
+
+    // UUIDv7 versions order by their timestamp first; unsigned so that the order holds for all of them
+    private static boolean isNewer(UUID version, UUID than) {
+        if (version == null || than == null) {
+            return false;
+        }
+        int order = Long.compareUnsigned(version.getMostSignificantBits(), than.getMostSignificantBits());
+        if (order == 0) {
+            order = Long.compareUnsigned(version.getLeastSignificantBits(), than.getLeastSignificantBits());
+        }
+        return order > 0;
+    }
+}
@@ -0,0 +1,53 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.model.Transaction;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of idempotency keys this container has written or replayed, so that a client retrying
+ * against the same container is answered without a DynamoDB call. The key item in DynamoDB stays the
+ * authority: a miss here only costs the conditional write that finds it.
+ */
+final class IdempotencyCache {
+
+    record Entry(String requestHash, Transaction response, long expiresAt) {
+    }
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    IdempotencyCache(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdempotencyCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The entry of a key item ID, unless it is missing or has expired at {@code now}.
+     */
+    synchronized Entry get(String keyId, Instant now) {
+        Entry entry = entries.get(keyId);
+        if (entry != null && entry.expiresAt() <= now.getEpochSecond()) {
+            entries.remove(keyId);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void put(String keyId, Entry entry) {
+        if (maxEntries > 0) {
+            entries.put(keyId, entry);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
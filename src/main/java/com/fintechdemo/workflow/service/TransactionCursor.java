@@ -0,0 +1,143 @@
+package com.fintechdemo.workflow.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintechdemo.workflow.model.Transaction;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Position in the transaction listing of an account: all pending transactions in the order they were
+ * created, then all stamped ones in sequence order. Each phase is read from every index partition and
+ * merged, so the cursor holds, per partition, the key of the last transaction listed from it; that key is
+ * the {@code ExclusiveStartKey} the partition is queried from next. Clients get it as an opaque token,
+ * which names the account it was issued for, since a cursor at the start of a phase has no keys to tell.
+ */
+record TransactionCursor(String accountId, Phase phase, Map<String, Position> after) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    enum Phase {
+        PENDING("pending-", "pending."),
+        STAMPED("transaction-", "transaction.");
+
+        // Sort key bounds of the phase: '.' follows '-', so BETWEEN takes every sequence with the prefix
+        private final String from;
+        private final String to;
+
+        Phase(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        String from() {
+            return from;
+        }
+
+        String to() {
+            return to;
+        }
+
+        /**
+         * Whether a sequence lies strictly between the bounds, as every sequence read in the phase does.
+         */
+        boolean contains(String sequence) {
+            return sequence.compareTo(from) > 0 && sequence.compareTo(to) < 0;
+        }
+    }
+
+    record Position(String sequence, String id) {
+    }
+
+    // The encoded form, kept short since it travels in query strings
+    private record Encoded(String o, String p, Map<String, List<String>> a) {
+    }
+
+    static TransactionCursor start(String accountId, Phase phase) {
+        return new TransactionCursor(accountId, phase, Map.of());
+    }
+
+    /**
+     * The cursor of a token, or the start of the listing when there is none.
+     *
+     * @param partitions the index partitions of the account
+     * @throws IllegalArgumentException if the token is malformed or was not issued for this account
+     */
+    static TransactionCursor decode(String token, String accountId, List<String> partitions) {
+        if (token == null || token.isBlank()) {
+            return start(accountId, Phase.PENDING);
+        }
+        Encoded encoded;
+        Phase phase;
+        try {
+            encoded = MAPPER.readValue(Base64.getUrlDecoder().decode(token), Encoded.class);
+            phase = Phase.valueOf(encoded.p());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid next token", e);
+        }
+        if (encoded.a() == null) {
+            throw new IllegalArgumentException("Invalid next token: no partition keys");
+        }
+        if (!accountId.equals(encoded.o())) {
+            throw new IllegalArgumentException("Next token belongs to another account");
+        }
+
+        Map<String, Position> after = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : encoded.a().entrySet()) {
+            String partition = entry.getKey();
+            List<String> key = entry.getValue();
+            if (!partitions.contains(partition)) {
+                throw new IllegalArgumentException("Next token belongs to another account");
+            }
+            if (key == null || key.size() != 2 || key.get(0) == null || key.get(1) == null || key.get(1).isBlank()) {
+                throw new IllegalArgumentException("Invalid next token: malformed key of partition " + partition);
+            }
+            // Keys outside the phase would be sent to DynamoDB as the start of a query they cannot belong to
+            if (!phase.contains(key.get(0))) {
+                throw new IllegalArgumentException("Invalid next token: sequence " + key.get(0) + " outside the " + phase + " phase");
+            }
+            after.put(partition, new Position(key.get(0), key.get(1)));
+        }
+        return new TransactionCursor(accountId, phase, after);
+    }
+
+    String encode() {
+        Map<String, List<String>> a = new HashMap<>();
+        after.forEach((partition, position) -> a.put(partition, List.of(position.sequence(), position.id())));
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(MAPPER.writeValueAsString(new Encoded(accountId, phase.name(), a)).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode transaction cursor", e);
+        }
+    }
+
+    /**
+     * This cursor moved past transactions just listed, each from the partition it is stored under.
+     */
+    TransactionCursor advancedPast(List<Transaction> listed) {
+        Map<String, Position> moved = new HashMap<>(after);
+        for (Transaction transaction : listed) {
+            moved.put(transaction.getParent(), new Position(transaction.getSequence(), transaction.getId()));
+        }
+        return new TransactionCursor(accountId, phase, moved);
+    }
+
+    /**
+     * The {@code ExclusiveStartKey} of a partition, or null to read it from the start of the phase.
+     */
+    Map<String, AttributeValue> exclusiveStartKey(String partition) {
+        Position position = after.get(partition);
+        if (position == null) {
+            return null;
+        }
+        return Map.of(
+            "id", AttributeValue.builder().s(position.id()).build(),
+            "parent", AttributeValue.builder().s(partition).build(),
+            "sequence", AttributeValue.builder().s(position.sequence()).build());
+    }
+}
@@ -1,53 +1,121 @@
 package com.fintechdemo.workflow.service;
 
+import com.fintechdemo.workflow.controller.BatchTransactionItem;
+import com.fintechdemo.workflow.controller.BatchTransactionResponse;
 import com.fintechdemo.workflow.controller.TransactionListResponse;
+import com.fintechdemo.workflow.model.IdempotencyKey;
 import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import com.fintechdemo.workflow.repository.WorkflowTables;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import java.util.regex.Pattern;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
-import com.fasterxml.uuid.Generators;
-import com.fasterxml.uuid.impl.TimeBasedReorderedGenerator;
 import java.time.LocalDate;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Lazy  // Lazy initialization to prevent issues with SnapStart
 public class TransactionService {
     
-    private final DynamoDbClient dynamoDbClient;
-    
-    @Value("${app.dynamodb.table-name:fintechdemo-workflow-dev}")
-    private String tableName;
+    private final WorkflowTables tables;
+    private final AsyncWorkflowTables asyncTables;
+
+    // Index partitions per account for transactions, see Transaction.indexPartition
+    @Value("${app.dynamodb.transaction-index-buckets:1}")
+    private int indexBuckets;
+
+    // Idempotency keys remembered by this container, see IdempotencyCache
+    @Value("${app.idempotency.cache-size:1000}")
+    private int idempotencyCacheSize;
+
+    private IdempotencyCache idempotencyCache;
+
+    // A concurrent request with the same idempotency key makes the transactional write conflict
+    private static final int IDEMPOTENT_WRITE_ATTEMPTS = 5;
+    private static final long IDEMPOTENT_WRITE_BACKOFF_MS = 5;
     
-    // UUIDv7 generator for sequence and version fields
-    private static final TimeBasedReorderedGenerator UUID_V7_GENERATOR = Generators.timeBasedReorderedGenerator();
+    // DynamoDB limits BatchWriteItem to 25 items; unprocessed items are sent again after a backoff
+    private static final int BATCH_WRITE_CHUNK = 25;
+    private static final int BATCH_WRITE_ATTEMPTS = 8;
+    private static final long BATCH_WRITE_BACKOFF_MS = 25;
+
+    // Bulk submissions, see createTransactions
+    @Value("${app.batch.max-items:10000}")
+    private int batchMaxItems;
+
+    @Value("${app.batch.write-concurrency:8}")
+    private int batchWriteConcurrency;
     
     // Simple IBAN validation pattern (basic format check)
     private static final Pattern IBAN_PATTERN = Pattern.compile("^[A-Z]{2}[0-9]{2}[A-Z0-9]{4}[0-9]{7}([A-Z0-9]?){0,16}$");
     
+    @PostConstruct
+    void initIdempotencyCache() {
+        idempotencyCache = new IdempotencyCache(idempotencyCacheSize);
+    }
+
     public Transaction createDeposit(String accountId, String userId, String currency, 
                                    BigDecimal amount, Instant transactedAt, String payorIBAN,
                                    String originatingCountry, String paymentRef, String purposeRef) {
+        return createDeposit(accountId, userId, currency, amount, transactedAt, payorIBAN,
+                             originatingCountry, paymentRef, purposeRef, null);
+    }
+
+    /**
+     * Creates a deposit at most once per idempotency key (null for none): repeating the request with the
+     * same key returns the deposit created the first time.
+     */
+    public Transaction createDeposit(String accountId, String userId, String currency, 
+                                   BigDecimal amount, Instant transactedAt, String payorIBAN,
+                                   String originatingCountry, String paymentRef, String purposeRef,
+                                   String idempotencyKey) {
         log.info("Creating deposit for account: {}, amount: {} {}", accountId, amount, currency);
         
         validateCommonFields(accountId, userId, currency, amount, transactedAt, Transaction.TransactionType.DEPOSIT);
@@ -59,12 +127,24 @@ public class TransactionService {
         
         return createTransaction(accountId, userId, currency, amount, transactedAt, 
                                null, payorIBAN, originatingCountry, paymentRef, purposeRef, 
-                               Transaction.TransactionType.DEPOSIT);
+                               Transaction.TransactionType.DEPOSIT, idempotencyKey);
     }
     
     public Transaction createWithdrawal(String accountId, String userId, String currency, 
                                       BigDecimal amount, Instant transactedAt, String beneficiaryIBAN,
                                       String originatingCountry, String paymentRef, String purposeRef) {
+        return createWithdrawal(accountId, userId, currency, amount, transactedAt, beneficiaryIBAN,
+                                originatingCountry, paymentRef, purposeRef, null);
+    }
+
+    /**
+     * Creates a withdrawal at most once per idempotency key (null for none): repeating the request with
+     * the same key returns the withdrawal created the first time.
+     */
+    public Transaction createWithdrawal(String accountId, String userId, String currency, 
+                                      BigDecimal amount, Instant transactedAt, String beneficiaryIBAN,
+                                      String originatingCountry, String paymentRef, String purposeRef,
+                                      String idempotencyKey) {
         log.info("Creating withdrawal for account: {}, amount: {} {}", accountId, amount, currency);
         
         // Validate that withdrawal amounts are negative
@@ -81,9 +161,180 @@ public class TransactionService {
         
         return createTransaction(accountId, userId, currency, amount, transactedAt, 
                                beneficiaryIBAN, null, originatingCountry, paymentRef, purposeRef, 
-                               Transaction.TransactionType.WITHDRAWAL);
+                               Transaction.TransactionType.WITHDRAWAL, idempotencyKey);
     }
     
+    /**
+     * Creates many deposits and withdrawals at once, for payment files. Every item is validated first,
+     * then the valid ones are written as pending transactions with {@code BatchWriteItem}, 25 at a time
+     * and {@code app.batch.write-concurrency} requests in parallel. Chunks land on the stream in whatever
+     * order their writes complete, and the stream stamps in arrival order, so an account's items are not
+     * necessarily stamped in the order submitted. Batches take no idempotency keys, as {@code BatchWriteItem}
+     * has no conditions: items that failed can be submitted again, while items whose write went unanswered
+     * are reported as unknown, and have to be looked up by their ID before submitting them again.
+     *
+     * @param accountId the account of every item, or null for items naming their own accounts
+     * @return the outcome of every item, in the order submitted
+     */
+    public BatchTransactionResponse createTransactions(String accountId, List<BatchTransactionItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one transaction");
+        }
+        if (items.size() > batchMaxItems) {
+            throw new IllegalArgumentException("Batch cannot contain more than " + batchMaxItems + " transactions");
+        }
+        log.info("📦 Creating batch of {} transactions{}", items.size(), accountId == null ? "" : " for account: " + accountId);
+
+        BatchTransactionResponse.ItemResult[] results = new BatchTransactionResponse.ItemResult[items.size()];
+        List<Transaction> valid = new ArrayList<>();
+        Map<String, Integer> indexById = new HashMap<>();
+        Instant now = Instant.now();
+        for (int i = 0; i < items.size(); i++) {
+            BatchTransactionItem item = items.get(i);
+            try {
+                Transaction transaction = newBatchTransaction(accountId, item, now);
+                valid.add(transaction);
+                indexById.put(transaction.getId(), i);
+            } catch (IllegalArgumentException e) {
+                results[i] = new BatchTransactionResponse.ItemResult(i, BatchTransactionResponse.ItemStatus.INVALID, null, e.getMessage());
+            }
+        }
+
+        Map<String, WriteFailure> failures = new ConcurrentHashMap<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, batchWriteConcurrency),
+                                                                     Thread.ofVirtual().factory())) {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int start = 0; start < valid.size(); start += BATCH_WRITE_CHUNK) {
+                List<Transaction> chunk = valid.subList(start, Math.min(start + BATCH_WRITE_CHUNK, valid.size()));
+                writes.add(executor.submit(() -> writeChunk(chunk, failures)));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing batch", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to write batch", e.getCause());
+        }
+
+        for (Transaction transaction : valid) {
+            int index = indexById.get(transaction.getId());
+            WriteFailure failure = failures.get(transaction.getId());
+            if (failure == null) {
+                results[index] = new BatchTransactionResponse.ItemResult(index, BatchTransactionResponse.ItemStatus.CREATED, transaction, null);
+            } else if (failure.ambiguous()) {
+                results[index] = new BatchTransactionResponse.ItemResult(index, BatchTransactionResponse.ItemStatus.UNKNOWN, transaction, failure.error());
+            } else {
+                results[index] = new BatchTransactionResponse.ItemResult(index, BatchTransactionResponse.ItemStatus.FAILED, null, failure.error());
+            }
+        }
+
+        BatchTransactionResponse response = new BatchTransactionResponse(List.of(results));
+        log.info("✅ Batch of {} transactions: {} created, {} invalid, {} failed, {} unknown",
+                 items.size(), response.getCreated(), response.getInvalid(), response.getFailed(), response.getUnknown());
+        return response;
+    }
+
+    private Transaction newBatchTransaction(String accountId, BatchTransactionItem item, Instant now) {
+        if (item == null) {
+            throw new IllegalArgumentException("Transaction cannot be null");
+        }
+        String itemAccountId = item.getAccountId();
+        if (accountId != null) {
+            if (itemAccountId != null && !itemAccountId.equals(accountId)) {
+                throw new IllegalArgumentException("Account ID " + itemAccountId + " does not match account " + accountId);
+            }
+            itemAccountId = accountId;
+        }
+        if (item.getTransactionType() == null) {
+            throw new IllegalArgumentException("Transaction type cannot be null");
+        }
+
+        validateCommonFields(itemAccountId, item.getUserId(), item.getCurrency(), item.getAmount(),
+                             item.getTransactedAt(), item.getTransactionType());
+        String payorIBAN = null;
+        String beneficiaryIBAN = null;
+        if (item.getTransactionType() == Transaction.TransactionType.DEPOSIT) {
+            payorIBAN = item.getPayorIBAN();
+            if (payorIBAN != null && !payorIBAN.trim().isEmpty() && !isValidIBAN(payorIBAN)) {
+                throw new IllegalArgumentException("Invalid payor IBAN: " + payorIBAN);
+            }
+        } else {
+            beneficiaryIBAN = item.getBeneficiaryIBAN();
+            if (beneficiaryIBAN != null && !beneficiaryIBAN.trim().isEmpty() && !isValidIBAN(beneficiaryIBAN)) {
+                throw new IllegalArgumentException("Invalid beneficiary IBAN: " + beneficiaryIBAN);
+            }
+        }
+
+        return newTransaction(itemAccountId, item.getUserId(), item.getCurrency(), item.getAmount(), item.getTransactedAt(),
+                              beneficiaryIBAN, payorIBAN, item.getOriginatingCountry(), item.getPaymentRef(),
+                              item.getPurposeRef(), item.getTransactionType(), now);
+    }
+
+    /**
+     * Why a batch item was not reported as created. An ambiguous failure is one without an answer from
+     * DynamoDB, such as a timeout or a server error, after which the item may have been written or not.
+     */
+    private record WriteFailure(String error, boolean ambiguous) {
+    }
+
+    /**
+     * Writes up to 25 transactions, sending unprocessed ones again until they are taken or the attempts run
+     * out. Transactions that were not written, or may not have been, are added to {@code failures}.
+     */
+    private void writeChunk(List<Transaction> chunk, Map<String, WriteFailure> failures) {
+        Map<String, WriteRequest> remaining = new LinkedHashMap<>();
+        for (Transaction transaction : chunk) {
+            remaining.put(transaction.getId(), WriteRequest.builder()
+                .putRequest(PutRequest.builder()
+                    .item(WorkflowTables.TRANSACTION_SCHEMA.itemToMap(transaction, true))
+                    .build())
+                .build());
+        }
+
+        String tableName = tables.tableName();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                BatchWriteItemResponse response = tables.dynamoDbClient().batchWriteItem(BatchWriteItemRequest.builder()
+                    .requestItems(Map.of(tableName, List.copyOf(remaining.values())))
+                    .build());
+                List<WriteRequest> unprocessed = response.unprocessedItems().getOrDefault(tableName, List.of());
+                if (unprocessed.isEmpty()) {
+                    return;
+                }
+
+                remaining.clear();
+                for (WriteRequest write : unprocessed) {
+                    remaining.put(write.putRequest().item().get("id").s(), write);
+                }
+                if (attempt == BATCH_WRITE_ATTEMPTS) {
+                    log.warn("{} transactions still unprocessed after {} attempts", remaining.size(), attempt);
+                    remaining.keySet().forEach(id -> failures.put(id, new WriteFailure("Not processed by DynamoDB, throughput exceeded", false)));
+                    return;
+                }
+                log.info("{} transactions unprocessed, retrying", remaining.size());
+                backoff(BATCH_WRITE_BACKOFF_MS, attempt);
+            }
+        } catch (RuntimeException e) {
+            // A rejected request wrote nothing; without an answer, DynamoDB may have applied it all the same
+            boolean ambiguous = e instanceof SdkClientException
+                || e instanceof AwsServiceException service && service.statusCode() >= 500;
+            log.error("Failed to write {} transactions{}: {}", remaining.size(), ambiguous ? ", outcome unknown" : "", e.getMessage(), e);
+            remaining.keySet().forEach(id -> failures.put(id, new WriteFailure("Failed to write transaction: " + e.getMessage(), ambiguous)));
+        }
+    }
+    
+    /**
+     * A page of at most {@code limit} transactions of an account: pending ones first, in the order they were
+     * created, then stamped ones in sequence order. {@code nextToken} is the opaque cursor of the previous
+     * page, null for the first; the returned one is null once the listing is exhausted. Each phase reads
+     * every index partition from the cursor's key with a bounded {@code BETWEEN} condition, for one more
+     * transaction than the page has room for, which tells whether there are more; stamped transactions are
+     * only read when the pending ones leave room.
+     *
+     * @throws IllegalArgumentException if {@code nextToken} was not issued for this account
+     */
     public TransactionListResponse getAccountTransactions(String accountId, String nextToken, Integer limit) {
         log.info("Finding transactions for account: {}", accountId);
         
@@ -92,56 +343,183 @@ public class TransactionService {
             return new TransactionListResponse(List.of(), null);
         }
         
-        if (limit == null || limit <= 0) {
-            limit = 20; // Default page size
-        }
-        
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
-            
-        DynamoDbTable<Transaction> table = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
-        DynamoDbIndex<Transaction> parentIndex = table.index("parent-sequence-index");
+        int pageSize = limit == null || limit <= 0 ? 20 : limit; // Default page size
+        List<String> partitions = Transaction.indexPartitions(accountId, indexBuckets);
+        TransactionCursor cursor = TransactionCursor.decode(nextToken, accountId, partitions);
+        DynamoDbIndex<Transaction> parentIndex = tables.transactionsByParent();
         
         try {
-            List<Transaction> allTransactions = new ArrayList<>();
-            String newNextToken = null;
-            
-            // First, get all pending transactions (assume they fit in one page)
-            List<Transaction> pendingTransactions = getPendingTransactions(parentIndex, accountId);
-            allTransactions.addAll(pendingTransactions);
-            
-            // Then get other transactions with pagination
-            if (nextToken == null) {
-                // If no next token, start from the beginning of non-pending transactions
-                List<Transaction> otherTransactions = getOtherTransactions(parentIndex, accountId, limit - pendingTransactions.size());
-                allTransactions.addAll(otherTransactions);
-                
-                // Set next token if we got a full page of other transactions
-                if (otherTransactions.size() == (limit - pendingTransactions.size()) && !otherTransactions.isEmpty()) {
-                    Transaction lastTransaction = otherTransactions.get(otherTransactions.size() - 1);
-                    newNextToken = lastTransaction.getSequence();
-                }
-            } else {
-                // Continue from where we left off
-                List<Transaction> otherTransactions = getOtherTransactionsFromToken(parentIndex, accountId, nextToken, limit);
-                allTransactions.addAll(otherTransactions);
-                
-                // Set next token if we got a full page
-                if (otherTransactions.size() == limit && !otherTransactions.isEmpty()) {
-                    Transaction lastTransaction = otherTransactions.get(otherTransactions.size() - 1);
-                    newNextToken = lastTransaction.getSequence();
-                }
+            List<Transaction> page = new ArrayList<>();
+            TransactionCursor next = null;
+            if (cursor.phase() == TransactionCursor.Phase.PENDING) {
+                next = takePage(cursor, queryPhase(parentIndex, partitions, cursor, pageSize + 1), pageSize, page);
+                cursor = TransactionCursor.start(accountId, TransactionCursor.Phase.STAMPED);
+            }
+            if (next == null) {
+                int room = pageSize - page.size();
+                next = takePage(cursor, queryPhase(parentIndex, partitions, cursor, room + 1), room, page);
             }
             
-            log.info("Found {} transactions for account: {}", allTransactions.size(), accountId);
-            return new TransactionListResponse(allTransactions, newNextToken);
+            log.info("Found {} transactions for account: {}", page.size(), accountId);
+            return new TransactionListResponse(page, next == null ? null : next.encode());
         } catch (Exception e) {
             log.error("Failed to find transactions for account {}: {}", accountId, e.getMessage(), e);
             return new TransactionListResponse(List.of(), null);
         }
     }
     
+    /**
+     * {@link #getAccountTransactions} without blocking: the index partitions of each phase are queried at
+     * once rather than one after the other, and the pages are the same as those of the blocking method.
+     *
+     * @throws IllegalArgumentException if {@code nextToken} was not issued for this account
+     */
+    public CompletableFuture<TransactionListResponse> getAccountTransactionsAsync(String accountId, String nextToken, Integer limit) {
+        log.info("Finding transactions for account: {}", accountId);
+        
+        if (accountId == null || accountId.trim().isEmpty()) {
+            log.warn("Invalid account ID provided: {}", accountId);
+            return CompletableFuture.completedFuture(new TransactionListResponse(List.of(), null));
+        }
+        
+        int pageSize = limit == null || limit <= 0 ? 20 : limit;
+        List<String> partitions = Transaction.indexPartitions(accountId, indexBuckets);
+        TransactionCursor cursor = TransactionCursor.decode(nextToken, accountId, partitions);
+        DynamoDbAsyncIndex<Transaction> parentIndex = asyncTables.transactionsByParent();
+
+        List<Transaction> page = new ArrayList<>();
+        CompletableFuture<TransactionCursor> pending = cursor.phase() == TransactionCursor.Phase.PENDING
+            ? queryPhaseAsync(parentIndex, partitions, cursor, pageSize + 1)
+                .thenApply(found -> takePage(cursor, found, pageSize, page))
+            : CompletableFuture.completedFuture(null);
+
+        return pending
+            .thenCompose(next -> {
+                if (next != null) {
+                    return CompletableFuture.completedFuture(next);
+                }
+                TransactionCursor stamped = cursor.phase() == TransactionCursor.Phase.STAMPED
+                    ? cursor
+                    : TransactionCursor.start(accountId, TransactionCursor.Phase.STAMPED);
+                int room = pageSize - page.size();
+                return queryPhaseAsync(parentIndex, partitions, stamped, room + 1)
+                    .thenApply(found -> takePage(stamped, found, room, page));
+            })
+            .thenApply(next -> {
+                log.info("Found {} transactions for account: {}", page.size(), accountId);
+                return new TransactionListResponse(page, next == null ? null : next.encode());
+            })
+            .exceptionally(e -> {
+                log.error("Failed to find transactions for account {}: {}", accountId, e.getMessage(), e);
+                return new TransactionListResponse(List.of(), null);
+            });
+    }
+
+    /**
+     * Adds up to {@code room} of the transactions found for a phase to the page. They were read for one
+     * more than that, so one left over means the phase goes on.
+     *
+     * @return the cursor past the page, or null when the phase is exhausted
+     */
+    private static TransactionCursor takePage(TransactionCursor cursor, List<Transaction> found, int room, List<Transaction> page) {
+        List<Transaction> taken = found.subList(0, Math.min(room, found.size()));
+        page.addAll(taken);
+        return found.size() > room ? cursor.advancedPast(taken) : null;
+    }
+
+    private List<Transaction> queryPhase(DynamoDbIndex<Transaction> parentIndex, List<String> partitions,
+                                         TransactionCursor cursor, int limit) {
+        // Pages are fetched lazily, so no partition is read past the transactions the page can take
+        return scatterGather(partitions, limit, partition -> parentIndex.query(phaseQuery(partition, cursor, limit))
+            .stream()
+            .flatMap(page -> page.items().stream())
+            .limit(limit)
+            .collect(Collectors.toList()));
+    }
+
+    private static CompletableFuture<List<Transaction>> queryPhaseAsync(DynamoDbAsyncIndex<Transaction> parentIndex,
+                                                                        List<String> partitions, TransactionCursor cursor, int limit) {
+        return scatterGatherAsync(partitions, limit, partition ->
+            collect(parentIndex.query(phaseQuery(partition, cursor, limit)).flatMapIterable(Page::items), limit));
+    }
+
+    private static QueryEnhancedRequest phaseQuery(String partition, TransactionCursor cursor, int limit) {
+        return QueryEnhancedRequest.builder()
+            .queryConditional(QueryConditional.sortBetween(
+                Key.builder().partitionValue(partition).sortValue(cursor.phase().from()).build(),
+                Key.builder().partitionValue(partition).sortValue(cursor.phase().to()).build()))
+            .exclusiveStartKey(cursor.exclusiveStartKey(partition))
+            .limit(limit)
+            .build();
+    }
+
+    /**
+     * The latest {@code limit} transactions of an account, newest first: pending ones, which are not yet
+     * stamped and so the newest, then stamped ones. Every index partition is read backwards for at most
+     * {@code limit} of each, all at once.
+     */
+    public CompletableFuture<List<Transaction>> getLatestTransactionsAsync(String accountId, int limit) {
+        if (accountId == null || accountId.trim().isEmpty() || limit <= 0) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        DynamoDbAsyncIndex<Transaction> parentIndex = asyncTables.transactionsByParent();
+        List<CompletableFuture<List<Transaction>>> queries = new ArrayList<>();
+        for (String partition : Transaction.indexPartitions(accountId, indexBuckets)) {
+            for (String prefix : List.of("pending-", "transaction-")) {
+                queries.add(collect(parentIndex.query(QueryEnhancedRequest.builder()
+                        .queryConditional(QueryConditional.sortBeginsWith(Key.builder()
+                            .partitionValue(partition)
+                            .sortValue(prefix)
+                            .build()))
+                        .scanIndexForward(false)
+                        .limit(limit)
+                        .build())
+                    .flatMapIterable(Page::items), limit));
+            }
+        }
+
+        // "pending-" sorts before "transaction-", so sequence order alone would put stamped ones first
+        Comparator<Transaction> newestFirst = Comparator
+            .comparing((Transaction tx) -> tx.getSequence().startsWith("pending-"))
+            .thenComparing(Transaction::getSequence)
+            .reversed();
+        return CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new))
+            .thenApply(done -> queries.stream()
+                .flatMap(query -> query.join().stream())
+                .sorted(newestFirst)
+                .limit(limit)
+                .toList());
+    }
+
+    /**
+     * The first {@code limit} items of a query, fetching no page past them.
+     */
+    private static <T> CompletableFuture<List<T>> collect(SdkPublisher<T> publisher, int limit) {
+        List<T> items = new ArrayList<>();
+        return publisher
+            .limit(limit)
+            .subscribe(items::add)
+            .thenApply(done -> items);
+    }
+
+    /**
+     * {@link #scatterGather} on the async client: every partition's query is in flight at once, and the
+     * sorted results are merged when the last one completes.
+     */
+    private static CompletableFuture<List<Transaction>> scatterGatherAsync(List<String> partitions, int limit,
+            Function<String, CompletableFuture<List<Transaction>>> query) {
+        if (partitions.size() == 1) {
+            return query.apply(partitions.get(0));
+        }
+
+        List<CompletableFuture<List<Transaction>>> futures = partitions.stream()
+            .map(query)
+            .toList();
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+            .thenApply(done -> mergeBySequence(futures.stream().map(CompletableFuture::join).toList(), limit));
+    }
+    
     private void validateCommonFields(String accountId, String userId, String currency, BigDecimal amount, Instant transactedAt, Transaction.TransactionType type) {
         if (accountId == null || accountId.trim().isEmpty()) {
             throw new IllegalArgumentException("Account ID cannot be null or empty");
@@ -168,24 +546,72 @@ public class TransactionService {
             throw new IllegalArgumentException("Transaction date cannot be null");
         }
     }
+
+    private void validateIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency key cannot be empty");
+        }
+        if (idempotencyKey.length() > IdempotencyKey.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key cannot be longer than " + IdempotencyKey.MAX_KEY_LENGTH + " characters");
+        }
+    }
     
     private Transaction createTransaction(String accountId, String userId, String currency, 
                                         BigDecimal amount, Instant transactedAt, String beneficiaryIBAN,
                                         String payorIBAN, String originatingCountry, String paymentRef, 
-                                        String purposeRef, Transaction.TransactionType type) {
+                                        String purposeRef, Transaction.TransactionType type, String idempotencyKey) {
         
+        // A retry of a request this container already served is answered without a DynamoDB call
+        String keyId = null;
+        String requestHash = null;
+        if (idempotencyKey != null) {
+            validateIdempotencyKey(idempotencyKey);
+            keyId = IdempotencyKey.keyId(accountId, idempotencyKey);
+            requestHash = IdempotencyKey.requestHash(type, userId, currency, amount, transactedAt,
+                beneficiaryIBAN, payorIBAN, originatingCountry, paymentRef, purposeRef);
+            IdempotencyCache.Entry cached = idempotencyCache.get(keyId, Instant.now());
+            if (cached != null) {
+                log.info("Idempotency key {} of account {} found in cache", idempotencyKey, accountId);
+                return replay(cached, requestHash, idempotencyKey, accountId);
+            }
+        }
+        
+        Instant now = Instant.now();
+        Transaction transaction = newTransaction(accountId, userId, currency, amount, transactedAt, beneficiaryIBAN,
+                                                 payorIBAN, originatingCountry, paymentRef, purposeRef, type, now);
+
+        if (keyId != null) {
+            return putWithIdempotencyKey(transaction, keyId, idempotencyKey, requestHash, now);
+        }
+
+        // Save to DynamoDB
+        DynamoDbTable<Transaction> table = tables.transactions();
+        
+        try {
+            table.putItem(transaction);
+            log.info("Successfully created {} transaction with ID: {}", type, transaction.getId());
+            return transaction;
+        } catch (Exception e) {
+            log.error("Failed to create {} transaction: {}", type, e.getMessage(), e);
+            throw new RuntimeException("Failed to create " + type + " transaction", e);
+        }
+    }
+
+    private Transaction newTransaction(String accountId, String userId, String currency,
+                                       BigDecimal amount, Instant transactedAt, String beneficiaryIBAN,
+                                       String payorIBAN, String originatingCountry, String paymentRef,
+                                       String purposeRef, Transaction.TransactionType type, Instant now) {
         // Generate UUIDv4 for new transaction
         UUID transactionId = UUID.randomUUID();
         // Generate UUIDv7 for pending sequence
-        UUID sequenceUuid = UUID_V7_GENERATOR.generate();
+        UUID sequenceUuid = UuidV7.generate();
         // Generate UUIDv7 for version
-        UUID versionId = UUID_V7_GENERATOR.generate();
-        Instant now = Instant.now();
+        UUID versionId = UuidV7.generate();
         
-        Transaction transaction = Transaction.builder()
+        return Transaction.builder()
             .id(transactionId)
             .type(Transaction.ENTITY_TYPE)
-            .parent(accountId) // Set account as parent for GSI
+            .parent(Transaction.indexPartition(accountId, transactionId.toString(), indexBuckets)) // Set account (bucket) as parent for GSI
             .sequence("pending-" + sequenceUuid.toString()) // Use UUIDv7 for time-ordered pending sequence
             .accountId(accountId)
             .userId(userId)
@@ -202,75 +628,154 @@ public class TransactionService {
             .createdAt(now)
             .updatedAt(now)
             .build();
+    }
 
-        // Save to DynamoDB
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
+    /**
+     * Puts a transaction together with its idempotency key item in one transactional write. The key item
+     * is only put if the key is new or expired; otherwise the write is cancelled, nothing is created, and
+     * the transaction stored with the key is returned instead.
+     */
+    private Transaction putWithIdempotencyKey(Transaction transaction, String keyId, String idempotencyKey,
+                                              String requestHash, Instant now) {
+        Map<String, AttributeValue> transactionItem = WorkflowTables.TRANSACTION_SCHEMA.itemToMap(transaction, true);
+        long expiresAt = IdempotencyKey.expiresAt(now);
+
+        TransactWriteItemsRequest request = TransactWriteItemsRequest.builder()
+            .transactItems(
+                TransactWriteItem.builder()
+                    .put(Put.builder()
+                        .tableName(tables.tableName())
+                        .item(Map.of(
+                            "id", AttributeValue.builder().s(keyId).build(),
+                            "type", AttributeValue.builder().s(IdempotencyKey.ENTITY_TYPE).build(),
+                            IdempotencyKey.ACCOUNT_ID, AttributeValue.builder().s(transaction.getAccountId()).build(),
+                            IdempotencyKey.KEY, AttributeValue.builder().s(idempotencyKey).build(),
+                            IdempotencyKey.REQUEST_HASH, AttributeValue.builder().s(requestHash).build(),
+                            IdempotencyKey.RESPONSE, AttributeValue.builder().m(transactionItem).build(),
+                            IdempotencyKey.CREATED_AT, AttributeValue.builder().s(now.toString()).build(),
+                            IdempotencyKey.EXPIRES_AT, AttributeValue.builder().n(Long.toString(expiresAt)).build()))
+                        .conditionExpression("attribute_not_exists(#id) OR #expiresAt <= :now")
+                        .expressionAttributeNames(Map.of("#id", "id", "#expiresAt", IdempotencyKey.EXPIRES_AT))
+                        .expressionAttributeValues(Map.of(":now", AttributeValue.builder().n(Long.toString(now.getEpochSecond())).build()))
+                        .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                        .build())
+                    .build(),
+                TransactWriteItem.builder()
+                    .put(Put.builder()
+                        .tableName(tables.tableName())
+                        .item(transactionItem)
+                        .build())
+                    .build())
             .build();
-            
-        DynamoDbTable<Transaction> table = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
-        
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                tables.dynamoDbClient().transactWriteItems(request);
+                idempotencyCache.put(keyId, new IdempotencyCache.Entry(requestHash, transaction, expiresAt));
+                log.info("Successfully created {} transaction with ID: {} for idempotency key {}",
+                         transaction.getTransactionType(), transaction.getId(), idempotencyKey);
+                return transaction;
+            } catch (TransactionCanceledException e) {
+                CancellationReason reason = e.cancellationReasons().get(0);
+                if ("TransactionConflict".equals(reason.code()) && attempt < IDEMPOTENT_WRITE_ATTEMPTS) {
+                    // Once the concurrent write lands, the retry finds its key item
+                    log.info("Idempotency key {} of account {} is being written concurrently, retrying", 
+                             idempotencyKey, transaction.getAccountId());
+                    backoff(IDEMPOTENT_WRITE_BACKOFF_MS, attempt);
+                    continue;
+                }
+                if (!"ConditionalCheckFailed".equals(reason.code())) {
+                    log.error("Failed to create {} transaction: {}", transaction.getTransactionType(), e.getMessage(), e);
+                    throw new RuntimeException("Failed to create " + transaction.getTransactionType() + " transaction", e);
+                }
+
+                Map<String, AttributeValue> stored = reason.hasItem() && !reason.item().isEmpty()
+                    ? reason.item()
+                    : tables.dynamoDbClient().getItem(GetItemRequest.builder()
+                        .tableName(tables.tableName())
+                        .key(Map.of("id", AttributeValue.builder().s(keyId).build()))
+                        .consistentRead(true)
+                        .build()).item();
+                IdempotencyCache.Entry entry = new IdempotencyCache.Entry(
+                    stored.get(IdempotencyKey.REQUEST_HASH).s(),
+                    WorkflowTables.TRANSACTION_SCHEMA.mapToItem(stored.get(IdempotencyKey.RESPONSE).m()),
+                    Long.parseLong(stored.get(IdempotencyKey.EXPIRES_AT).n()));
+                idempotencyCache.put(keyId, entry);
+                return replay(entry, requestHash, idempotencyKey, transaction.getAccountId());
+            }
+        }
+    }
+
+    private static void backoff(long baseMs, int attempt) {
         try {
-            table.putItem(transaction);
-            log.info("Successfully created {} transaction with ID: {}", type, transactionId);
-            return transaction;
-        } catch (Exception e) {
-            log.error("Failed to create {} transaction: {}", type, e.getMessage(), e);
-            throw new RuntimeException("Failed to create " + type + " transaction", e);
+            Thread.sleep(ThreadLocalRandom.current().nextLong(baseMs << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying write", e);
         }
     }
-    
-    private List<Transaction> getPendingTransactions(DynamoDbIndex<Transaction> parentIndex, String accountId) {
-        QueryConditional queryConditional = QueryConditional.sortBeginsWith(
-            Key.builder()
-                .partitionValue(accountId)
-                .sortValue("pending-")
-                .build()
-        );
-        
-        return parentIndex.query(queryConditional)
-            .stream()
-            .flatMap(page -> page.items().stream())
-            .collect(Collectors.toList());
+
+    private Transaction replay(IdempotencyCache.Entry entry, String requestHash, String idempotencyKey, String accountId) {
+        if (!entry.requestHash().equals(requestHash)) {
+            log.warn("Idempotency key {} of account {} was already used for a different request", idempotencyKey, accountId);
+            throw new IllegalStateException("Idempotency key " + idempotencyKey + " was already used for a different request");
+        }
+        log.info("♻️ Returning transaction {} created earlier for idempotency key {} of account {}",
+                 entry.response().getId(), idempotencyKey, accountId);
+        return entry.response();
     }
     
-    private List<Transaction> getOtherTransactions(DynamoDbIndex<Transaction> parentIndex, String accountId, int limit) {
-        QueryConditional queryConditional = QueryConditional.sortBeginsWith(
-            Key.builder()
-                .partitionValue(accountId)
-                .sortValue("transaction-")
-                .build()
-        );
-        
-        QueryEnhancedRequest queryRequest = QueryEnhancedRequest.builder()
-            .queryConditional(queryConditional)
-            .limit(limit)
-            .build();
-        
-        return parentIndex.query(queryRequest)
-            .stream()
-            .flatMap(page -> page.items().stream())
-            .collect(Collectors.toList());
+    /**
+     * Runs a query on every index partition of an account, concurrently on virtual threads when there is
+     * more than one, and merges the results, each already sorted by sequence, into one sorted list of at
+     * most {@code limit} transactions. Every partition returns its first {@code limit} matches, so the
+     * merged page is exactly the first {@code limit} matches of the account.
+     */
+    private List<Transaction> scatterGather(List<String> partitions, int limit, Function<String, List<Transaction>> query) {
+        if (partitions.size() == 1) {
+            return query.apply(partitions.get(0));
+        }
+
+        List<List<Transaction>> results = new ArrayList<>(partitions.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<Transaction>>> futures = partitions.stream()
+                .map(partition -> executor.submit(() -> query.apply(partition)))
+                .toList();
+            for (Future<List<Transaction>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to query transaction index partitions: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while querying transaction index partitions", e);
+        }
+
+        return mergeBySequence(results, limit);
     }
-    
-    private List<Transaction> getOtherTransactionsFromToken(DynamoDbIndex<Transaction> parentIndex, String accountId, String nextToken, int limit) {
-        QueryConditional queryConditional = QueryConditional.sortGreaterThan(
-            Key.builder()
-                .partitionValue(accountId)
-                .sortValue(nextToken)
-                .build()
-        );
-        
-        QueryEnhancedRequest queryRequest = QueryEnhancedRequest.builder()
-            .queryConditional(queryConditional)
-            .limit(limit)
-            .build();
-        
-        return parentIndex.query(queryRequest)
-            .stream()
-            .flatMap(page -> page.items().stream())
-            .filter(tx -> tx.getSequence().startsWith("transaction-")) // Only get transaction- sequences
-            .collect(Collectors.toList());
+
+    /**
+     * K-way merge of lists sorted by sequence, keeping the first {@code limit} transactions.
+     */
+    static List<Transaction> mergeBySequence(List<List<Transaction>> sortedLists, int limit) {
+        int[] positions = new int[sortedLists.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(
+            Comparator.<Integer, String>comparing(list -> sortedLists.get(list).get(positions[list]).getSequence()));
+        for (int list = 0; list < sortedLists.size(); list++) {
+            if (!sortedLists.get(list).isEmpty()) {
+                heads.add(list);
+            }
+        }
+
+        List<Transaction> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int list = heads.poll();
+            merged.add(sortedLists.get(list).get(positions[list]++));
+            if (positions[list] < sortedLists.get(list).size()) {
+                heads.add(list);
+            }
+        }
+        return merged;
     }
     
     /**
@@ -287,31 +792,52 @@ public class TransactionService {
         String currentYear = String.valueOf(LocalDate.now().getYear());
         String transactionPrefix = "transaction-" + currentYear;
         
-        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
-            .dynamoDbClient(dynamoDbClient)
-            .build();
+        DynamoDbIndex<Transaction> gsi = tables.transactionsByParent();
 
-        DynamoDbTable<Transaction> table = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
-        DynamoDbIndex<Transaction> gsi = table.index("parent-sequence-index");
+        // Query the GSI to find all transactions for this account with current year sequences; each
+        // partition returns them sorted by sequence, and the merge keeps chronological order
+        List<Transaction> transactions = scatterGather(Transaction.indexPartitions(accountId, indexBuckets), Integer.MAX_VALUE, partition -> {
+            QueryConditional queryConditional = QueryConditional
+                .sortBeginsWith(Key.builder()
+                    .partitionValue(partition)
+                    .sortValue(transactionPrefix)
+                    .build());
 
-        // Query the GSI to find all transactions for this account with current year sequences
-        QueryConditional queryConditional = QueryConditional
-            .sortBeginsWith(Key.builder()
-                .partitionValue(accountId)
-                .sortValue(transactionPrefix)
-                .build());
-
-        List<Transaction> transactions = gsi.query(queryConditional)
-            .stream()
-            .flatMap(page -> page.items().stream())
-            .filter(tx -> tx.getSequence().startsWith(transactionPrefix)) // Additional safety filter
-            .sorted((a, b) -> a.getSequence().compareTo(b.getSequence())) // Sort by sequence for chronological order
-            .collect(Collectors.toList());
+            return gsi.query(queryConditional)
+                .stream()
+                .flatMap(page -> page.items().stream())
+                .filter(tx -> tx.getSequence().startsWith(transactionPrefix)) // Additional safety filter
+                .sorted((a, b) -> a.getSequence().compareTo(b.getSequence())) // Sort by sequence for chronological order
+                .collect(Collectors.toList());
+        });
 
         log.info("Found {} stamped transactions for current year for account: {}", transactions.size(), accountId);
         return transactions;
     }
 
+    /**
+     * Stamped transactions of an account with sequences after {@code afterSequence} (all stamped ones
+     * when null) and before {@code beforeSequence}, in sequence order.
+     */
+    public List<Transaction> getStampedTransactionsBetween(String accountId, String afterSequence, String beforeSequence) {
+        log.info("Finding stamped transactions for account {} after {} and before {}", accountId, afterSequence, beforeSequence);
+
+        DynamoDbIndex<Transaction> gsi = tables.transactionsByParent();
+
+        return scatterGather(Transaction.indexPartitions(accountId, indexBuckets), Integer.MAX_VALUE, partition -> {
+            QueryConditional queryConditional = afterSequence != null
+                ? QueryConditional.sortGreaterThan(Key.builder().partitionValue(partition).sortValue(afterSequence).build())
+                : QueryConditional.sortGreaterThanOrEqualTo(Key.builder().partitionValue(partition).sortValue("transaction-").build());
+
+            // Pages are fetched lazily, so the query stops at the first page past beforeSequence
+            return gsi.query(queryConditional)
+                .stream()
+                .flatMap(page -> page.items().stream())
+                .takeWhile(tx -> tx.getSequence().compareTo(beforeSequence) < 0)
+                .collect(Collectors.toList());
+        });
+    }
+
     private boolean isValidIBAN(String iban) {
         if (iban == null || iban.trim().isEmpty()) {
             return false;
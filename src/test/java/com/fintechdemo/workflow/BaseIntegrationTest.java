@@ -1,5 +1,7 @@
 package com.fintechdemo.workflow;
 
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import com.fintechdemo.workflow.repository.WorkflowTables;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -58,36 +60,43 @@ public abstract class BaseIntegrationTest {
     // Update services with the dynamically generated table name
     private void updateServicesWithTableName() {
         try {
+            // The services share the table handles, which are bound to a table name
+            WorkflowTables tables = applicationContext.getBean(WorkflowTables.class).withTableName(tableName);
+            AsyncWorkflowTables asyncTables = applicationContext.getBean(AsyncWorkflowTables.class).withTableName(tableName);
+
             // Update CustomerService if it exists
             if (applicationContext.containsBean("customerService")) {
                 Object customerService = applicationContext.getBean("customerService");
-                setTableNameViaReflection(customerService, tableName);
+                setTablesViaReflection(customerService, "tables", tables);
+                setTablesViaReflection(customerService, "asyncTables", asyncTables);
             }
             
             // Update AccountService if it exists  
             if (applicationContext.containsBean("accountService")) {
                 Object accountService = applicationContext.getBean("accountService");
-                setTableNameViaReflection(accountService, tableName);
+                setTablesViaReflection(accountService, "tables", tables);
+                setTablesViaReflection(accountService, "asyncTables", asyncTables);
             }
             
             // Update TransactionService if it exists
             if (applicationContext.containsBean("transactionService")) {
                 Object transactionService = applicationContext.getBean("transactionService");
-                setTableNameViaReflection(transactionService, tableName);
+                setTablesViaReflection(transactionService, "tables", tables);
+                setTablesViaReflection(transactionService, "asyncTables", asyncTables);
             }
         } catch (Exception e) {
             log.warn("Failed to update service table names: {}", e.getMessage());
         }
     }
     
-    private void setTableNameViaReflection(Object service, String newTableName) {
+    private void setTablesViaReflection(Object service, String fieldName, Object tables) {
         try {
-            Field tableNameField = service.getClass().getDeclaredField("tableName");
-            tableNameField.setAccessible(true);
-            tableNameField.set(service, newTableName);
-            log.debug("Updated table name to {} for service {}", newTableName, service.getClass().getSimpleName());
+            Field tablesField = service.getClass().getDeclaredField(fieldName);
+            tablesField.setAccessible(true);
+            tablesField.set(service, tables);
+            log.debug("Updated {} to table {} for service {}", fieldName, tableName, service.getClass().getSimpleName());
         } catch (Exception e) {
-            log.warn("Could not update tableName field for {}: {}", service.getClass().getSimpleName(), e.getMessage());
+            log.warn("Could not update {} field for {}: {}", fieldName, service.getClass().getSimpleName(), e.getMessage());
         }
     }
 
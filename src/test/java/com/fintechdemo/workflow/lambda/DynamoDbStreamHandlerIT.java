@@ -1,8 +1,18 @@
 package com.fintechdemo.workflow.lambda;
 
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
 import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.controller.AccountBalanceResponse;
 import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.BalanceCheckpoint;
+import com.fintechdemo.workflow.model.LedgerShard;
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.model.SequenceCodec;
+import com.fintechdemo.workflow.model.SequenceCounter;
 import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.service.AccountService;
 import com.fintechdemo.workflow.service.TransactionService;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
@@ -11,7 +21,10 @@ import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -27,6 +40,9 @@ class DynamoDbStreamHandlerIT extends BaseIntegrationTest {
     @Inject
     private TransactionService transactionService;
     
+    @Inject
+    private AccountService accountService;
+    
     @Inject
     private DynamoDbClient dynamoDbClient;
 
@@ -367,6 +383,853 @@ class DynamoDbStreamHandlerIT extends BaseIntegrationTest {
                  updatedAccount.getBalance(), updatedAccount.getPending());
     }
 
+    @Test
+    void shouldStampBatchForSameAccountWithSingleAccountUpdate() {
+        // Given: Create account with initial balance
+        String customerId = java.util.UUID.randomUUID().toString();
+        String accountId = java.util.UUID.randomUUID().toString();
+        
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        
+        java.util.UUID originalVersion = java.util.UUID.randomUUID();
+        Account account = Account.builder()
+            .id(java.util.UUID.fromString(accountId))
+            .type("ACCOUNT")
+            .customerId(customerId)
+            .name("Test Account")
+            .currency("EUR")
+            .balance(BigDecimal.valueOf(100))
+            .pending(BigDecimal.ZERO)
+            .status(Account.AccountStatus.ACTIVE)
+            .version(originalVersion)
+            .createdAt(Instant.now())
+            .updatedAt(Instant.now())
+            .build();
+            
+        accountTable.putItem(account);
+        
+        // Create a burst of pending transactions for the same account
+        java.util.List<String> transactionIds = new java.util.ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            Transaction deposit = transactionService.createDeposit(accountId, "user" + i, "EUR", new BigDecimal("10"), 
+                                                                   Instant.now(), "DE89370400440532013000", "DE", "ref" + i, "purpose" + i);
+            transactionIds.add(deposit.getId());
+        }
+        Transaction withdrawal = transactionService.createWithdrawal(accountId, "user11", "EUR", new BigDecimal("-25"), 
+                                                                     Instant.now(), "GB82WEST12345698765432", "GB", "ref11", "purpose11");
+        transactionIds.add(withdrawal.getId());
+        
+        // When: Process the whole batch at once, including a duplicate delivery
+        java.util.List<String> batch = new java.util.ArrayList<>(transactionIds);
+        batch.add(transactionIds.get(0));
+        
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        streamHandler.processAccountBatch(accountId, batch);
+        
+        // Then: Sequences are consecutive in arrival order
+        for (int i = 0; i < transactionIds.size(); i++) {
+            Transaction stamped = transactionTable.getItem(Key.builder().partitionValue(transactionIds.get(i)).build());
+            assertThat(stamped.getSequence()).isEqualTo(
+                String.format("transaction-%s-%06d", getCurrentDateString(), i + 1));
+        }
+        
+        // And the account reflects the whole batch
+        Account updatedAccount = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+        assertThat(updatedAccount.getBalance().compareTo(new BigDecimal("200"))).isEqualTo(0);
+        assertThat(updatedAccount.getPending().compareTo(new BigDecimal("25"))).isEqualTo(0);
+        assertThat(updatedAccount.getLatestTransaction()).endsWith("000011");
+        assertThat(updatedAccount.getVersion()).isNotEqualTo(originalVersion);
+        
+        log.info("Batch stamping test successful. Latest: {}, balance: {}, pending: {}", 
+                 updatedAccount.getLatestTransaction(), updatedAccount.getBalance(), updatedAccount.getPending());
+    }
+
+    @Test
+    void shouldProcessAccountPartitionsConcurrently() {
+        // Given: Several accounts, each with a few pending deposits
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        
+        java.util.Map<String, java.util.List<Transaction>> pendingByAccount = new java.util.LinkedHashMap<>();
+        for (int a = 0; a < 5; a++) {
+            String accountId = java.util.UUID.randomUUID().toString();
+            accountTable.putItem(Account.builder()
+                .id(java.util.UUID.fromString(accountId))
+                .type("ACCOUNT")
+                .customerId(java.util.UUID.randomUUID().toString())
+                .name("Test Account " + a)
+                .currency("EUR")
+                .balance(BigDecimal.ZERO)
+                .pending(BigDecimal.ZERO)
+                .status(Account.AccountStatus.ACTIVE)
+                .version(java.util.UUID.randomUUID())
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build());
+            
+            java.util.List<Transaction> transactions = new java.util.ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                transactions.add(transactionService.createDeposit(accountId, "user" + i, "EUR", new BigDecimal("5"), 
+                    Instant.now(), "DE89370400440532013000", "DE", "ref" + i, "purpose" + i));
+            }
+            pendingByAccount.put(accountId, transactions);
+        }
+        
+        // When: Process all partitions with limited concurrency, holding each one long enough to overlap
+        int accountConcurrency = 3;
+        java.util.concurrent.atomic.AtomicInteger inFlight = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.atomic.AtomicInteger maxInFlight = new java.util.concurrent.atomic.AtomicInteger();
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler() {
+            @Override
+            void processAccountImages(String accountId, java.util.List<Transaction> images) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(200);
+                    super.processAccountImages(accountId, images);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        streamHandler.setAccountConcurrency(accountConcurrency);
+        streamHandler.processAccountPartitions(pendingByAccount);
+        
+        // Then: Partitions ran side by side, but never more of them than the limit
+        assertThat(maxInFlight.get()).isGreaterThan(1).isLessThanOrEqualTo(accountConcurrency);
+        
+        // And: Every account is stamped in its own arrival order
+        pendingByAccount.forEach((accountId, transactions) -> {
+            for (int i = 0; i < transactions.size(); i++) {
+                Transaction stamped = transactionTable.getItem(Key.builder().partitionValue(transactions.get(i).getId()).build());
+                assertThat(stamped.getSequence()).endsWith(String.format("%06d", i + 1));
+            }
+            Account updatedAccount = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+            assertThat(updatedAccount.getBalance().compareTo(new BigDecimal("15"))).isEqualTo(0);
+        });
+    }
+
+    @Test
+    void shouldReportOnlyFailedTailOfBatch() {
+        // Given: Two accounts with interleaved pending deposits
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        
+        String healthyAccountId = java.util.UUID.randomUUID().toString();
+        String conflictingAccountId = java.util.UUID.randomUUID().toString();
+        for (String accountId : java.util.List.of(healthyAccountId, conflictingAccountId)) {
+            accountTable.putItem(Account.builder()
+                .id(java.util.UUID.fromString(accountId))
+                .type("ACCOUNT")
+                .customerId(java.util.UUID.randomUUID().toString())
+                .name("Test Account")
+                .currency("EUR")
+                .balance(BigDecimal.ZERO)
+                .pending(BigDecimal.ZERO)
+                .status(Account.AccountStatus.ACTIVE)
+                .version(java.util.UUID.randomUUID())
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build());
+        }
+        
+        Transaction healthy1 = transactionService.createDeposit(healthyAccountId, "user1", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        Transaction conflicting1 = transactionService.createDeposit(conflictingAccountId, "user2", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2");
+        Transaction healthy2 = transactionService.createDeposit(healthyAccountId, "user3", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref3", "purpose3");
+        Transaction conflicting2 = transactionService.createDeposit(conflictingAccountId, "user4", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref4", "purpose4");
+        
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(java.util.List.of(
+            insertRecord(healthy1, "100"),
+            insertRecord(conflicting1, "200"),
+            insertRecord(healthy2, "300"),
+            insertRecord(conflicting2, "400")));
+        
+        // When: The conflicting account always reads a stale version
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler() {
+            @Override
+            Account loadAccount(DynamoDbTable<Account> table, String accountId) {
+                Account account = super.loadAccount(table, accountId);
+                if (conflictingAccountId.equals(accountId)) {
+                    account.setVersion(java.util.UUID.randomUUID());
+                }
+                return account;
+            }
+        };
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        // Stale account versions only matter when sequences are taken from the account item
+        streamHandler.setSequenceCounters(false);
+        StreamsEventResponse response = streamHandler.handleRequest(event, null);
+        
+        // Then: Only the tail starting at the first conflicting record is reported
+        assertThat(response.getBatchItemFailures()).hasSize(1);
+        assertThat(response.getBatchItemFailures().get(0).getItemIdentifier()).isEqualTo("200");
+        
+        // And the healthy account was stamped regardless
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(healthy1.getId()).build()).getSequence())
+            .startsWith("transaction-");
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(healthy2.getId()).build()).getSequence())
+            .startsWith("transaction-");
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(conflicting1.getId()).build()).getSequence())
+            .startsWith("pending-");
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(conflicting2.getId()).build()).getSequence())
+            .startsWith("pending-");
+    }
+
+    @Test
+    void shouldStampFromStreamImagesAndFallBackWhenImageIsStale() {
+        // Given: An account with two pending deposits
+        String accountId = java.util.UUID.randomUUID().toString();
+        
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        
+        accountTable.putItem(Account.builder()
+            .id(java.util.UUID.fromString(accountId))
+            .type("ACCOUNT")
+            .customerId(java.util.UUID.randomUUID().toString())
+            .name("Test Account")
+            .currency("EUR")
+            .balance(BigDecimal.ZERO)
+            .pending(BigDecimal.ZERO)
+            .status(Account.AccountStatus.ACTIVE)
+            .version(java.util.UUID.randomUUID())
+            .createdAt(Instant.now())
+            .updatedAt(Instant.now())
+            .build());
+        
+        Transaction first = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        Transaction second = transactionService.createDeposit(accountId, "user2", "EUR", new BigDecimal("20"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2");
+        
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        
+        // When: The first image is current, the second carries a version that no longer matches
+        Transaction staleSecond = transactionTable.getItem(Key.builder().partitionValue(second.getId()).build());
+        staleSecond.setVersion(java.util.UUID.randomUUID());
+        streamHandler.processAccountImages(accountId, java.util.List.of(first, staleSecond));
+        
+        // Then: Both are stamped in order
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(first.getId()).build()).getSequence())
+            .endsWith("000001");
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(second.getId()).build()).getSequence())
+            .endsWith("000002");
+        
+        // And redelivering the original images does not stamp them twice
+        streamHandler.processAccountImages(accountId, java.util.List.of(first, second));
+        
+        Account updatedAccount = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+        assertThat(updatedAccount.getBalance().compareTo(new BigDecimal("30"))).isEqualTo(0);
+        assertThat(updatedAccount.getLatestTransaction()).endsWith("000002");
+    }
+
+    @Test
+    void shouldCompareConsumedCapacityOfPutAndUpdateStamping() {
+        // Given: Two identical accounts, each with deposits carrying long free-text references
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        String longReference = "x".repeat(900);
+        
+        java.util.Map<DynamoDbStreamHandler.StampMode, Double> writeUnits = new java.util.EnumMap<>(DynamoDbStreamHandler.StampMode.class);
+        java.util.Map<DynamoDbStreamHandler.StampMode, Account> accounts = new java.util.EnumMap<>(DynamoDbStreamHandler.StampMode.class);
+        
+        for (DynamoDbStreamHandler.StampMode mode : DynamoDbStreamHandler.StampMode.values()) {
+            String accountId = java.util.UUID.randomUUID().toString();
+            accountTable.putItem(Account.builder()
+                .id(java.util.UUID.fromString(accountId))
+                .type("ACCOUNT")
+                .customerId(java.util.UUID.randomUUID().toString())
+                .name("Test Account")
+                .currency("EUR")
+                .balance(BigDecimal.ZERO)
+                .pending(BigDecimal.ZERO)
+                .status(Account.AccountStatus.ACTIVE)
+                .version(java.util.UUID.randomUUID())
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build());
+            
+            java.util.List<Transaction> transactions = new java.util.ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                transactions.add(transactionService.createDeposit(accountId, "user" + i, "EUR", new BigDecimal("10"), 
+                    Instant.now(), "DE89370400440532013000", "DE", longReference, longReference));
+            }
+            transactions.add(transactionService.createWithdrawal(accountId, "user5", "EUR", new BigDecimal("-5"), 
+                Instant.now(), "GB82WEST12345698765432", "GB", longReference, longReference));
+            
+            // When: Stamping in each mode
+            DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+            streamHandler.setDynamoDbClient(dynamoDbClient);
+            streamHandler.setTableName(tableName);
+            streamHandler.setStampMode(mode);
+            // Compares the write encodings alone; counter items are compared separately
+            streamHandler.setSequenceCounters(false);
+            streamHandler.processAccountImages(accountId, transactions);
+            
+            writeUnits.put(mode, streamHandler.getConsumedWriteCapacity());
+            accounts.put(mode, accountTable.getItem(Key.builder().partitionValue(accountId).build()));
+        }
+        
+        log.info("Consumed write capacity for 6 stamps: put={} WCU, update={} WCU", 
+                 writeUnits.get(DynamoDbStreamHandler.StampMode.PUT), writeUnits.get(DynamoDbStreamHandler.StampMode.UPDATE));
+        
+        // Then: Both modes produce the same account state, and updates never cost more than puts
+        for (Account account : accounts.values()) {
+            assertThat(account.getBalance().compareTo(new BigDecimal("50"))).isEqualTo(0);
+            assertThat(account.getPending().compareTo(new BigDecimal("5"))).isEqualTo(0);
+            assertThat(account.getLatestTransaction()).endsWith("000006");
+        }
+        assertThat(writeUnits.get(DynamoDbStreamHandler.StampMode.UPDATE))
+            .isLessThanOrEqualTo(writeUnits.get(DynamoDbStreamHandler.StampMode.PUT));
+    }
+
+    @Test
+    void shouldRetryLockConflictInProcess() {
+        // Given: An account whose first read is stale, as if another writer got there first
+        String accountId = java.util.UUID.randomUUID().toString();
+        
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        
+        accountTable.putItem(Account.builder()
+            .id(java.util.UUID.fromString(accountId))
+            .type("ACCOUNT")
+            .customerId(java.util.UUID.randomUUID().toString())
+            .name("Test Account")
+            .currency("EUR")
+            .balance(BigDecimal.ZERO)
+            .pending(BigDecimal.ZERO)
+            .status(Account.AccountStatus.ACTIVE)
+            .version(java.util.UUID.randomUUID())
+            .createdAt(Instant.now())
+            .updatedAt(Instant.now())
+            .build());
+        
+        Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        
+        java.util.concurrent.atomic.AtomicInteger reads = new java.util.concurrent.atomic.AtomicInteger();
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler() {
+            @Override
+            Account loadAccount(DynamoDbTable<Account> table, String id) {
+                Account account = super.loadAccount(table, id);
+                if (reads.incrementAndGet() == 1) {
+                    account.setVersion(java.util.UUID.randomUUID());
+                }
+                return account;
+            }
+        };
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        streamHandler.setRetryPolicy(new ConflictRetryPolicy(3, 5, 20));
+        // Stale account versions only matter when sequences are taken from the account item
+        streamHandler.setSequenceCounters(false);
+        
+        // When
+        streamHandler.processAccountImages(accountId, java.util.List.of(deposit));
+        
+        // Then: The conflict was absorbed by one in-process retry
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(deposit.getId()).build()).getSequence())
+            .endsWith("000001");
+        assertThat(reads.get()).isEqualTo(2);
+        assertThat(streamHandler.getMetrics().count(StreamMetrics.STAMP_ATTEMPTS)).isEqualTo(2);
+        assertThat(streamHandler.getMetrics().count(StreamMetrics.LOCK_CONFLICTS)).isEqualTo(1);
+        assertThat(streamHandler.getMetrics().count(StreamMetrics.LOCK_RETRIES_EXHAUSTED)).isZero();
+    }
+
+    @Test
+    void shouldReuseCachedAccountStateAndRecoverFromForeignWrites() {
+        // Given: An account and a handler that already stamped one deposit
+        String accountId = java.util.UUID.randomUUID().toString();
+        
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        
+        accountTable.putItem(Account.builder()
+            .id(java.util.UUID.fromString(accountId))
+            .type("ACCOUNT")
+            .customerId(java.util.UUID.randomUUID().toString())
+            .name("Test Account")
+            .currency("EUR")
+            .balance(BigDecimal.ZERO)
+            .pending(BigDecimal.ZERO)
+            .status(Account.AccountStatus.ACTIVE)
+            .version(java.util.UUID.randomUUID())
+            .createdAt(Instant.now())
+            .updatedAt(Instant.now())
+            .build());
+        
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        
+        streamHandler.processAccountImages(accountId, java.util.List.of(transactionService.createDeposit(accountId, "user1", "EUR", 
+            new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1")));
+        
+        // When: The next deposit arrives in the same container
+        streamHandler.processAccountImages(accountId, java.util.List.of(transactionService.createDeposit(accountId, "user2", "EUR", 
+            new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2")));
+        
+        // Then: The account was served from the cache
+        assertThat(streamHandler.getMetrics().count(StreamMetrics.ACCOUNT_CACHE_MISSES)).isEqualTo(1);
+        assertThat(streamHandler.getMetrics().count(StreamMetrics.ACCOUNT_CACHE_HITS)).isEqualTo(1);
+        
+        // When: Another container stamps the account behind this handler's back
+        DynamoDbStreamHandler otherContainer = new DynamoDbStreamHandler();
+        otherContainer.setDynamoDbClient(dynamoDbClient);
+        otherContainer.setTableName(tableName);
+        otherContainer.processAccountImages(accountId, java.util.List.of(transactionService.createDeposit(accountId, "user3", "EUR", 
+            new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref3", "purpose3")));
+        
+        streamHandler.processAccountImages(accountId, java.util.List.of(transactionService.createDeposit(accountId, "user4", "EUR", 
+            new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref4", "purpose4")));
+        
+        // Then: The stale entry caused one conflict, was evicted, and the stamp still lands correctly
+        assertThat(streamHandler.getMetrics().count(StreamMetrics.LOCK_CONFLICTS)).isEqualTo(1);
+        Account updatedAccount = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+        assertThat(updatedAccount.getBalance().compareTo(new BigDecimal("40"))).isEqualTo(0);
+        assertThat(updatedAccount.getLatestTransaction()).endsWith("000004");
+    }
+
+    @Test
+    void shouldReportCapacityPerStampWithAndWithoutCounterItems() {
+        // Given: Per mode, an account stamped alternately by two containers, so every stamp starts from stale state
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        int stamps = 10;
+        
+        java.util.Map<Boolean, double[]> capacity = new java.util.LinkedHashMap<>();
+        java.util.Map<Boolean, Integer> accountReads = new java.util.LinkedHashMap<>();
+        java.util.Map<Boolean, Long> counterLookups = new java.util.LinkedHashMap<>();
+        java.util.Map<Boolean, String> accountIds = new java.util.LinkedHashMap<>();
+        
+        for (boolean counters : new boolean[] {false, true}) {
+            String accountId = putAccount(accountTable, null);
+            accountIds.put(counters, accountId);
+            java.util.concurrent.atomic.AtomicInteger reads = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.List<DynamoDbStreamHandler> containers = new java.util.ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                DynamoDbStreamHandler container = new DynamoDbStreamHandler() {
+                    @Override
+                    Account loadAccount(DynamoDbTable<Account> table, String id) {
+                        reads.incrementAndGet();
+                        return super.loadAccount(table, id);
+                    }
+                };
+                container.setDynamoDbClient(dynamoDbClient);
+                container.setTableName(tableName);
+                container.setSequenceCounters(counters);
+                containers.add(container);
+            }
+            
+            // When: Each deposit is stamped on its own, alternating between the containers
+            for (int i = 0; i < stamps; i++) {
+                containers.get(i % 2).processAccountImages(accountId, java.util.List.of(transactionService.createDeposit(accountId, 
+                    "user" + i, "EUR", new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref" + i, "purpose" + i)));
+            }
+            
+            // Then: Both modes number the deposits without gaps and keep the balance
+            Account account = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+            assertThat(account.getBalance().compareTo(new BigDecimal("100"))).isEqualTo(0);
+            assertThat(account.getLatestTransaction()).endsWith("000010");
+            
+            capacity.put(counters, new double[] {
+                containers.stream().mapToDouble(DynamoDbStreamHandler::getConsumedReadCapacity).sum() / stamps,
+                containers.stream().mapToDouble(DynamoDbStreamHandler::getConsumedWriteCapacity).sum() / stamps});
+            accountReads.put(counters, reads.get());
+            counterLookups.put(counters, containers.stream()
+                .mapToLong(container -> container.getMetrics().count(StreamMetrics.COUNTER_CACHE_LOOKUPS)).sum());
+        }
+        
+        log.info("Capacity per stamp from the account item: {} RCU, {} WCU, {} account reads", 
+                 capacity.get(false)[0], capacity.get(false)[1], accountReads.get(false));
+        log.info("Capacity per stamp from counter items: {} RCU, {} WCU, {} account reads", 
+                 capacity.get(true)[0], capacity.get(true)[1], accountReads.get(true));
+        
+        // And: With counter items each container reads the account once, to rule out sharding and checkpoint the day before
+        assertThat(accountReads.get(false)).isEqualTo(stamps);
+        assertThat(accountReads.get(true)).isEqualTo(2);
+        
+        // And: Counter lookups are counted apart from account lookups
+        assertThat(counterLookups.get(false)).isZero();
+        assertThat(counterLookups.get(true)).isEqualTo(stamps);
+        
+        // And: Today's counter item holds the last counter assigned
+        java.util.Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> counterItem = dynamoDbClient.getItem(
+            software.amazon.awssdk.services.dynamodb.model.GetItemRequest.builder()
+                .tableName(tableName)
+                .key(java.util.Map.of("id", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder()
+                    .s(SequenceCounter.counterId(accountIds.get(true), SequenceCodec.dateKey(Instant.now())))
+                    .build()))
+                .consistentRead(true)
+                .build())
+            .item();
+        assertThat(counterItem.get(SequenceCounter.COUNTER).n()).isEqualTo(String.valueOf(stamps));
+    }
+
+    @Test
+    void shouldContinueCounterPastStampsThatBypassedIt() {
+        // Given: An account already stamped today from the account item, before counter items existed
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        int today = SequenceCodec.dateKey(Instant.now());
+        String accountId = putAccount(accountTable, SequenceCodec.encode(today, 5));
+        
+        DynamoDbStreamHandler counterHandler = new DynamoDbStreamHandler();
+        counterHandler.setDynamoDbClient(dynamoDbClient);
+        counterHandler.setTableName(tableName);
+        counterHandler.setSequenceCounters(true);
+        
+        DynamoDbStreamHandler accountHandler = new DynamoDbStreamHandler();
+        accountHandler.setDynamoDbClient(dynamoDbClient);
+        accountHandler.setTableName(tableName);
+        accountHandler.setSequenceCounters(false);
+        
+        // When: The counter takes over, then the account item is stamped once more behind its back
+        Transaction first = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        counterHandler.processAccountImages(accountId, java.util.List.of(first));
+        
+        Transaction bypassing = transactionService.createDeposit(accountId, "user2", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2");
+        accountHandler.processAccountImages(accountId, java.util.List.of(bypassing));
+        
+        Transaction last = transactionService.createDeposit(accountId, "user3", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref3", "purpose3");
+        counterHandler.processAccountImages(accountId, java.util.List.of(last));
+        
+        // Then: Numbering continues from the account's latest sequence each time, without reuse
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(first.getId()).build()).getSequence())
+            .isEqualTo(SequenceCodec.encode(today, 6));
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(bypassing.getId()).build()).getSequence())
+            .isEqualTo(SequenceCodec.encode(today, 7));
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(last.getId()).build()).getSequence())
+            .isEqualTo(SequenceCodec.encode(today, 8));
+        
+        Account account = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+        assertThat(account.getBalance().compareTo(new BigDecimal("30"))).isEqualTo(0);
+        assertThat(account.getLatestTransaction()).isEqualTo(SequenceCodec.encode(today, 8));
+    }
+
+    @Test
+    void shouldCheckpointPreviousDayAndAnswerBalanceAsOf() {
+        // Given: Accounts closed yesterday with a balance, one stamped through counter items, one without
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<BalanceCheckpoint> checkpointTable = enhancedClient.table(tableName, TableSchema.fromBean(BalanceCheckpoint.class));
+        int yesterday = SequenceCodec.dateKey(LocalDate.now(ZoneOffset.UTC).minusDays(1));
+        String closingSequence = SequenceCodec.encode(yesterday, 5);
+        
+        for (boolean sequenceCounters : new boolean[] {true, false}) {
+            String accountId = putAccount(accountTable, closingSequence);
+            Account closed = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+            closed.setBalance(new BigDecimal("500"));
+            closed.setPending(new BigDecimal("20"));
+            accountTable.putItem(closed);
+            
+            DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+            streamHandler.setDynamoDbClient(dynamoDbClient);
+            streamHandler.setTableName(tableName);
+            streamHandler.setSequenceCounters(sequenceCounters);
+            
+            // When: The first deposit of today is stamped
+            Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("100"), 
+                Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+            Instant beforeStamp = Instant.now();
+            streamHandler.processAccountImages(accountId, java.util.List.of(deposit));
+            
+            // Then: Yesterday's closing state is checkpointed under the account
+            BalanceCheckpoint checkpoint = checkpointTable.getItem(
+                Key.builder().partitionValue(BalanceCheckpoint.checkpointId(accountId, yesterday)).build());
+            assertThat(checkpoint).as("counters=%s", sequenceCounters).isNotNull();
+            assertThat(checkpoint.getParent()).isEqualTo(accountId);
+            assertThat(checkpoint.getSequence()).isEqualTo(BalanceCheckpoint.sequenceOf(yesterday));
+            assertThat(checkpoint.getBalance().compareTo(new BigDecimal("500"))).isEqualTo(0);
+            assertThat(checkpoint.getPending().compareTo(new BigDecimal("20"))).isEqualTo(0);
+            assertThat(checkpoint.getLastSequence()).isEqualTo(closingSequence);
+            
+            // And: The balance now starts from the checkpoint and replays only today's deposit
+            AccountBalanceResponse current = accountService.getBalanceAsOf(accountId, null);
+            assertThat(current.getBalance().compareTo(new BigDecimal("600"))).isEqualTo(0);
+            assertThat(current.getPending().compareTo(new BigDecimal("20"))).isEqualTo(0);
+            assertThat(current.getCheckpointDate()).isEqualTo(yesterday);
+            assertThat(current.getReplayedTransactions()).isEqualTo(1);
+            
+            // And: Before the stamp, the balance is the checkpoint's
+            AccountBalanceResponse earlier = accountService.getBalanceAsOf(accountId, beforeStamp.toString());
+            assertThat(earlier.getBalance().compareTo(new BigDecimal("500"))).isEqualTo(0);
+            assertThat(earlier.getLastSequence()).isEqualTo(closingSequence);
+            assertThat(earlier.getReplayedTransactions()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    void shouldCheckpointPreviousDayOfShardedAccountFromItsShards() {
+        // Given: An account closed yesterday and sharded, with one more deposit of yesterday on a shard
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<LedgerShard> shardTable = enhancedClient.table(tableName, TableSchema.fromBean(LedgerShard.class));
+        DynamoDbTable<BalanceCheckpoint> checkpointTable = enhancedClient.table(tableName, TableSchema.fromBean(BalanceCheckpoint.class));
+        int yesterday = SequenceCodec.dateKey(LocalDate.now(ZoneOffset.UTC).minusDays(1));
+        String closingSequence = SequenceCodec.encode(yesterday, 5);
+        
+        String accountId = putAccount(accountTable, closingSequence);
+        Account closed = accountTable.getItem(Key.builder().partitionValue(accountId).build());
+        closed.setBalance(new BigDecimal("500"));
+        closed.setPending(new BigDecimal("20"));
+        accountTable.putItem(closed);
+        accountService.enableLedgerSharding(accountId, 4);
+        
+        LedgerShard shard = shardTable.getItem(Key.builder().partitionValue(LedgerShard.shardId(accountId, 2)).build());
+        String shardSequence = SequenceCodec.nextInterleaved(null, yesterday, closingSequence, 2, 4);
+        shard.setBalance(new BigDecimal("50"));
+        shard.setLatestTransaction(shardSequence);
+        shardTable.putItem(shard);
+        
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        
+        // When: The first deposit of today is stamped on a shard
+        Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("100"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        streamHandler.processAccountImages(accountId, java.util.List.of(deposit));
+        
+        // Then: Yesterday is checkpointed from the account and its shards together
+        BalanceCheckpoint checkpoint = checkpointTable.getItem(
+            Key.builder().partitionValue(BalanceCheckpoint.checkpointId(accountId, yesterday)).build());
+        assertThat(checkpoint).isNotNull();
+        assertThat(checkpoint.getBalance().compareTo(new BigDecimal("550"))).isEqualTo(0);
+        assertThat(checkpoint.getPending().compareTo(new BigDecimal("20"))).isEqualTo(0);
+        assertThat(checkpoint.getLastSequence()).isEqualTo(shardSequence);
+        
+        // And: The balance starts from the checkpoint and replays only today's deposit
+        AccountBalanceResponse current = accountService.getBalanceAsOf(accountId, null);
+        assertThat(current.getBalance().compareTo(new BigDecimal("650"))).isEqualTo(0);
+        assertThat(current.getCheckpointDate()).isEqualTo(yesterday);
+        assertThat(current.getReplayedTransactions()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStampRecordsOfKeysOnlyStreamFromTheTable() {
+        // Given: Two pending deposits whose stream records carry only their keys
+        Account account = accountService.createAccount(java.util.UUID.randomUUID().toString(), "checking", "EUR");
+        Transaction first = transactionService.createDeposit(account.getId(), "user1", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        Transaction second = transactionService.createDeposit(account.getId(), "user2", "EUR", new BigDecimal("5"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2");
+        
+        DynamodbEvent.DynamodbStreamRecord firstRecord = insertRecord(first, "100");
+        DynamodbEvent.DynamodbStreamRecord secondRecord = insertRecord(second, "200");
+        firstRecord.getDynamodb().setNewImage(null);
+        secondRecord.getDynamodb().setNewImage(null);
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(java.util.List.of(firstRecord, secondRecord));
+        
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        
+        // When: The batch is delivered
+        StreamsEventResponse response = streamHandler.handleRequest(event, null);
+        
+        // Then: Both deposits were read from the table and stamped in arrival order
+        assertThat(response.getBatchItemFailures()).isEmpty();
+        DynamoDbTable<Transaction> transactionTable = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build()
+            .table(tableName, TableSchema.fromBean(Transaction.class));
+        String firstSequence = transactionTable.getItem(Key.builder().partitionValue(first.getId()).build()).getSequence();
+        String secondSequence = transactionTable.getItem(Key.builder().partitionValue(second.getId()).build()).getSequence();
+        assertThat(firstSequence).startsWith("transaction-");
+        assertThat(secondSequence).isGreaterThan(firstSequence);
+        assertThat(accountService.getAccount(account.getId()).getBalance().compareTo(new BigDecimal("15"))).isEqualTo(0);
+    }
+
+    @Test
+    void shouldParkPoisonTransactionsAndRedriveThem() {
+        // Given: A healthy account and an account deleted after its deposits were created
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+            
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(tableName, TableSchema.fromBean(Transaction.class));
+        
+        String healthyAccountId = putAccount(accountTable, null);
+        String deletedAccountId = putAccount(accountTable, null);
+        
+        Transaction poison1 = transactionService.createDeposit(deletedAccountId, "user1", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        Transaction healthy1 = transactionService.createDeposit(healthyAccountId, "user2", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2");
+        Transaction poison2 = transactionService.createDeposit(deletedAccountId, "user3", "EUR", new BigDecimal("10"), 
+            Instant.now(), "DE89370400440532013000", "DE", "ref3", "purpose3");
+        Account deletedAccount = accountTable.deleteItem(Key.builder().partitionValue(deletedAccountId).build());
+        
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(java.util.List.of(
+            insertRecord(poison1, "100"),
+            insertRecord(healthy1, "200"),
+            insertRecord(poison2, "300")));
+        
+        DynamoDbStreamHandler streamHandler = new DynamoDbStreamHandler();
+        streamHandler.setDynamoDbClient(dynamoDbClient);
+        streamHandler.setTableName(tableName);
+        streamHandler.setParkAfterAttempts(2);
+        
+        // When: The batch is delivered once
+        StreamsEventResponse first = streamHandler.handleRequest(event, null);
+        
+        // Then: The batch is redelivered from the first poison record, the healthy account is stamped
+        assertThat(first.getBatchItemFailures()).hasSize(1);
+        assertThat(first.getBatchItemFailures().get(0).getItemIdentifier()).isEqualTo("100");
+        assertThat(transactionTable.getItem(Key.builder().partitionValue(healthy1.getId()).build()).getSequence())
+            .startsWith("transaction-");
+        
+        // When: The batch is delivered again
+        StreamsEventResponse second = streamHandler.handleRequest(event, null);
+        
+        // Then: Both poison transactions are parked, the second right away as it fails alike, and the shard moves on
+        assertThat(second.getBatchItemFailures()).isEmpty();
+        java.util.List<String> parkedIds = streamHandler.parkedRecords().listParked(100).stream()
+            .map(ParkedRecord::getTransactionId)
+            .filter(id -> id.equals(poison1.getId()) || id.equals(poison2.getId()))
+            .toList();
+        assertThat(parkedIds).containsExactly(poison1.getId(), poison2.getId());
+        
+        // When: The account is restored and the parked transactions are redriven
+        accountTable.putItem(deletedAccount);
+        ParkedRecordRedriver.RedriveResult result = streamHandler.redriveParkedRecords(100);
+        
+        // Then: Both are stamped in the order they were parked and released
+        assertThat(result.stillFailing()).doesNotContain(poison1.getId(), poison2.getId());
+        String sequence1 = transactionTable.getItem(Key.builder().partitionValue(poison1.getId()).build()).getSequence();
+        String sequence2 = transactionTable.getItem(Key.builder().partitionValue(poison2.getId()).build()).getSequence();
+        assertThat(sequence1).startsWith("transaction-");
+        assertThat(sequence2).startsWith("transaction-");
+        assertThat(sequence1).isLessThan(sequence2);
+        assertThat(streamHandler.parkedRecords().listParked(100))
+            .extracting(ParkedRecord::getTransactionId)
+            .doesNotContain(poison1.getId(), poison2.getId());
+    }
+
+    @Test
+    void shouldLeaveRetryableFailuresToRedelivery() {
+        // Given: Failures that may pass on redelivery, and one that fails every delivery alike
+        RuntimeException unreachable = new RuntimeException(SdkClientException.create("Unable to execute HTTP request"));
+        RuntimeException throttled = new RuntimeException(TransactionCanceledException.builder()
+            .message("Transaction cancelled")
+            .cancellationReasons(CancellationReason.builder().code("None").build(),
+                                 CancellationReason.builder().code("ThrottlingError").build())
+            .build());
+        RuntimeException missingAccount = new RuntimeException("Account not found: " + java.util.UUID.randomUUID());
+        
+        // Then: Only the last counts toward parking
+        assertThat(DynamoDbStreamHandler.isRetryable(unreachable)).isTrue();
+        assertThat(DynamoDbStreamHandler.isRetryable(throttled)).isTrue();
+        assertThat(DynamoDbStreamHandler.isRetryable(missingAccount)).isFalse();
+    }
+
+    private String putAccount(DynamoDbTable<Account> accountTable, String latestTransaction) {
+        String accountId = java.util.UUID.randomUUID().toString();
+        accountTable.putItem(Account.builder()
+            .id(java.util.UUID.fromString(accountId))
+            .type("ACCOUNT")
+            .customerId(java.util.UUID.randomUUID().toString())
+            .name("Test Account")
+            .currency("EUR")
+            .balance(BigDecimal.ZERO)
+            .pending(BigDecimal.ZERO)
+            .status(Account.AccountStatus.ACTIVE)
+            .latestTransaction(latestTransaction)
+            .version(java.util.UUID.randomUUID())
+            .createdAt(Instant.now())
+            .updatedAt(Instant.now())
+            .build());
+        return accountId;
+    }
+
+    private DynamodbEvent.DynamodbStreamRecord insertRecord(Transaction transaction, String sequenceNumber) {
+        java.util.Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> image = new java.util.HashMap<>();
+        TableSchema.fromBean(Transaction.class).itemToMap(transaction, true).forEach((name, value) -> {
+            com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue converted =
+                new com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue();
+            if (value.s() != null) {
+                converted.setS(value.s());
+            } else if (value.n() != null) {
+                converted.setN(value.n());
+            }
+            image.put(name, converted);
+        });
+        
+        StreamRecord streamRecord = new StreamRecord();
+        streamRecord.setKeys(java.util.Map.of("id", image.get("id")));
+        streamRecord.setNewImage(image);
+        streamRecord.setSequenceNumber(sequenceNumber);
+        streamRecord.setApproximateCreationDateTime(new java.util.Date());
+        
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setEventName("INSERT");
+        record.setEventSource("aws:dynamodb");
+        record.setDynamodb(streamRecord);
+        return record;
+    }
+
     private String getCurrentDateString() {
         return LocalDate.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMMdd"));
     }
@@ -0,0 +1,206 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.ParkedRecord;
+import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.service.AccountService;
+import com.fintechdemo.workflow.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import javax.inject.Inject;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Slf4j
+class DynamoDbStreamRawHandlerIT extends BaseIntegrationTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Inject
+    private AccountService accountService;
+
+    @Inject
+    private TransactionService transactionService;
+
+    @Inject
+    private DynamoDbClient dynamoDbClient;
+
+    @Test
+    void shouldStampFromRawEventWithMixedStreamViewTypes() throws Exception {
+        // Given: An account with two pending deposits
+        Account account = accountService.createAccount(java.util.UUID.randomUUID().toString(), "checking", "EUR");
+        Transaction first = transactionService.createDeposit(account.getId(), "user1", "EUR",
+            new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        Transaction second = transactionService.createDeposit(account.getId(), "user1", "EUR",
+            new BigDecimal("5"), Instant.now(), "DE89370400440532013000", "DE", "ref2", "purpose2");
+
+        // And: A raw event with the account INSERT, a NEW_IMAGE record, a MODIFY and a KEYS_ONLY record
+        List<Map<String, Object>> records = List.of(
+            record("INSERT", "100", account.getId(), image(TableSchema.fromBean(Account.class).itemToMap(account, true)), null),
+            record("INSERT", "200", first.getId(), image(TableSchema.fromBean(Transaction.class).itemToMap(first, true)), null),
+            record("MODIFY", "300", account.getId(), image(TableSchema.fromBean(Account.class).itemToMap(account, true)),
+                image(TableSchema.fromBean(Account.class).itemToMap(account, true))),
+            record("INSERT", "400", second.getId(), null, null));
+        byte[] event = MAPPER.writeValueAsBytes(Map.of("Records", records));
+
+        DynamoDbStreamHandler sequencer = new DynamoDbStreamHandler();
+        sequencer.setDynamoDbClient(dynamoDbClient);
+        sequencer.setTableName(tableName);
+        DynamoDbStreamRawHandler handler = new DynamoDbStreamRawHandler(sequencer);
+
+        // When: The raw handler processes the event
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(event), output, null);
+
+        // Then: No record failed, and both deposits were stamped in arrival order
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("{\"batchItemFailures\":[]}");
+
+        DynamoDbTable<Transaction> transactionTable = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build()
+            .table(tableName, TableSchema.fromBean(Transaction.class));
+        String today = LocalDate.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+        Transaction stampedFirst = transactionTable.getItem(Key.builder().partitionValue(first.getId()).build());
+        Transaction stampedSecond = transactionTable.getItem(Key.builder().partitionValue(second.getId()).build());
+        assertThat(stampedFirst.getSequence()).isEqualTo("transaction-" + today + "-000001");
+        assertThat(stampedSecond.getSequence()).isEqualTo("transaction-" + today + "-000002");
+
+        // And: The partial image did not drop any attribute of the stamped transaction
+        assertThat(stampedFirst.getPayorIBAN()).isEqualTo("DE89370400440532013000");
+        assertThat(stampedFirst.getPaymentRef()).isEqualTo("ref1");
+
+        Account updatedAccount = accountService.getAccount(account.getId());
+        assertThat(updatedAccount.getBalance().compareTo(new BigDecimal("15"))).isEqualTo(0);
+    }
+
+    @Test
+    void shouldReportAndThenParkRecordWithUndecodableImage() throws Exception {
+        // Given: A pending transaction image without a version, followed by another record
+        String brokenId = java.util.UUID.randomUUID().toString();
+        Map<String, Object> brokenImage = new LinkedHashMap<>();
+        brokenImage.put("id", Map.of("S", brokenId));
+        brokenImage.put("type", Map.of("S", "TRANSACTION"));
+        brokenImage.put("sequence", Map.of("S", "pending-" + java.util.UUID.randomUUID()));
+        brokenImage.put("accountId", Map.of("S", java.util.UUID.randomUUID().toString()));
+
+        byte[] event = MAPPER.writeValueAsBytes(Map.of("Records", List.of(
+            record("MODIFY", "100", java.util.UUID.randomUUID().toString(), null, null),
+            record("INSERT", "200", brokenId, brokenImage, null),
+            record("MODIFY", "300", java.util.UUID.randomUUID().toString(), null, null))));
+
+        DynamoDbStreamHandler sequencer = new DynamoDbStreamHandler();
+        sequencer.setDynamoDbClient(dynamoDbClient);
+        sequencer.setTableName(tableName);
+        sequencer.setParkAfterAttempts(2);
+        DynamoDbStreamRawHandler handler = new DynamoDbStreamRawHandler(sequencer);
+
+        // When: The raw handler processes the event
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(event), output, null);
+
+        // Then: Redelivery starts at the undecodable record
+        assertThat(output.toString(StandardCharsets.UTF_8))
+            .isEqualTo("{\"batchItemFailures\":[{\"itemIdentifier\":\"200\"}]}");
+
+        // When: The event is delivered again
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(event), second, null);
+
+        // Then: The record is parked under its key and the shard moves on
+        assertThat(second.toString(StandardCharsets.UTF_8)).isEqualTo("{\"batchItemFailures\":[]}");
+        assertThat(sequencer.parkedRecords().listParked(100))
+            .filteredOn(parked -> parked.getTransactionId().equals(brokenId))
+            .extracting(ParkedRecord::getAccountId)
+            .containsExactly(DynamoDbStreamHandler.UNKNOWN_ACCOUNT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRecordStreamLagAndStampLatency() throws Exception {
+        // Given: A deposit created five seconds ago, whose stream record was written two seconds ago
+        Account account = accountService.createAccount(java.util.UUID.randomUUID().toString(), "checking", "EUR");
+        Transaction deposit = transactionService.createDeposit(account.getId(), "user1", "EUR",
+            new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref1", "purpose1");
+        Instant createdAt = deposit.getCreatedAt().minusSeconds(5);
+        deposit.setCreatedAt(createdAt);
+
+        Map<String, Object> record = record("INSERT", "100", deposit.getId(),
+            image(TableSchema.fromBean(Transaction.class).itemToMap(deposit, true)), null);
+        long writtenAt = System.currentTimeMillis() - 2_000;
+        ((Map<String, Object>) record.get("dynamodb")).put("ApproximateCreationDateTime", writtenAt / 1000.0);
+
+        // When: The record is decoded and its transaction stamped
+        List<StreamEventDecoder.DecodedRecord> decoded = StreamEventDecoder.decode(
+            new ByteArrayInputStream(MAPPER.writeValueAsBytes(Map.of("Records", List.of(record)))));
+
+        DynamoDbStreamHandler sequencer = new DynamoDbStreamHandler();
+        sequencer.setDynamoDbClient(dynamoDbClient);
+        sequencer.setTableName(tableName);
+        sequencer.recordStreamLag(decoded.get(0).approximateCreationMillis());
+        sequencer.processAccountImages(account.getId(), List.of(decoded.get(0).image()));
+
+        // Then: The creation times survive decoding
+        assertThat(decoded.get(0).approximateCreationMillis()).isEqualTo(writtenAt);
+        assertThat(decoded.get(0).image().getCreatedAt()).isEqualTo(createdAt);
+
+        // And: The lag and the pending-to-stamped latency are in the histograms
+        StreamMetrics metrics = sequencer.getMetrics();
+        assertThat(metrics.samples(StreamMetrics.STREAM_LAG)).isEqualTo(1);
+        assertThat(metrics.percentile(StreamMetrics.STREAM_LAG, 100.0)).isGreaterThanOrEqualTo(2_000);
+        assertThat(metrics.samples(StreamMetrics.STAMP_LATENCY)).isEqualTo(1);
+        assertThat(metrics.percentile(StreamMetrics.STAMP_LATENCY, 100.0)).isGreaterThanOrEqualTo(5_000);
+    }
+
+    private static Map<String, Object> record(String eventName, String sequenceNumber, String id,
+                                              Map<String, Object> newImage, Map<String, Object> oldImage) {
+        Map<String, Object> streamRecord = new LinkedHashMap<>();
+        streamRecord.put("Keys", Map.of("id", Map.of("S", id)));
+        if (newImage != null) {
+            streamRecord.put("NewImage", newImage);
+        }
+        if (oldImage != null) {
+            streamRecord.put("OldImage", oldImage);
+        }
+        streamRecord.put("SequenceNumber", sequenceNumber);
+        streamRecord.put("StreamViewType", newImage == null && oldImage == null ? "KEYS_ONLY" : "NEW_AND_OLD_IMAGES");
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("eventID", sequenceNumber);
+        record.put("eventName", eventName);
+        record.put("eventSource", "aws:dynamodb");
+        record.put("dynamodb", streamRecord);
+        return record;
+    }
+
+    private static Map<String, Object> image(Map<String, software.amazon.awssdk.services.dynamodb.model.AttributeValue> item) {
+        Map<String, Object> image = new LinkedHashMap<>();
+        item.forEach((name, value) -> {
+            if (value.s() != null) {
+                image.put(name, Map.of("S", value.s()));
+            } else if (value.n() != null) {
+                image.put(name, Map.of("N", value.n()));
+            }
+        });
+        return image;
+    }
+}
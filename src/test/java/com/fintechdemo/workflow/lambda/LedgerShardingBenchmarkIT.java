@@ -0,0 +1,193 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.LedgerShard;
+import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.service.AccountService;
+import com.fintechdemo.workflow.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import javax.inject.Inject;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Local contention benchmark for ledger sharding: concurrent stamping workers, standing in for Lambda
+ * invocations on different stream shards, stamp deposits of one account with and without ledger shards.
+ * Reports stamps per second and optimistic lock conflicts for each shard count.
+ */
+@Slf4j
+class LedgerShardingBenchmarkIT extends BaseIntegrationTest {
+
+    private static final int TRANSACTIONS = 200;
+    private static final int WORKERS = 8;
+    private static final int BATCH_SIZE = 5;
+
+    @Inject
+    private AccountService accountService;
+
+    @Inject
+    private TransactionService transactionService;
+
+    @Inject
+    private DynamoDbClient dynamoDbClient;
+
+    @Test
+    void shouldMeasureStampThroughputByShardCount() throws Exception {
+        List<String> results = new ArrayList<>();
+
+        for (int shards : new int[] {1, 2, 4, 8}) {
+            // Given: An account, sharded unless a single shard is asked for, with pending deposits
+            Account account = accountService.createAccount(UUID.randomUUID().toString(), "hot", "EUR");
+            if (shards > 1) {
+                accountService.enableLedgerSharding(account.getId(), shards);
+            }
+            List<Transaction> deposits = createDeposits(account.getId(), TRANSACTIONS);
+
+            // When: Concurrent workers stamp them in small batches
+            ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+            deposits.forEach(deposit -> queue.add(deposit.getId()));
+            AtomicLong conflicts = new AtomicLong();
+
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newFixedThreadPool(WORKERS)) {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int w = 0; w < WORKERS; w++) {
+                    workers.add(executor.submit(() -> stampUntilEmpty(account.getId(), queue, conflicts)));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            // Then: Every deposit has a unique sequence and the balance includes all of them
+            assertAllStamped(deposits);
+            Account stamped = accountService.findById(account.getId());
+            assertThat(stamped.getBalance().compareTo(BigDecimal.valueOf(TRANSACTIONS))).isEqualTo(0);
+
+            results.add(String.format("shards=%d stamps=%d seconds=%.2f stampsPerSecond=%.1f conflicts=%d",
+                shards, TRANSACTIONS, seconds, TRANSACTIONS / seconds, conflicts.get()));
+        }
+
+        results.forEach(result -> log.info("⏱️ {}", result));
+    }
+
+    @Test
+    void shouldRollUpShardTotalsIntoAccount() {
+        // Given: A sharded account with stamped deposits, rolled up after every batch
+        Account account = accountService.createAccount(UUID.randomUUID().toString(), "hot", "EUR");
+        accountService.enableLedgerSharding(account.getId(), 4);
+        List<Transaction> deposits = createDeposits(account.getId(), 20);
+
+        DynamoDbStreamHandler handler = newHandler();
+        handler.setLedgerRollupIntervalMillis(0);
+
+        // When: The deposits are stamped in two batches
+        handler.processAccountBatch(account.getId(), deposits.subList(0, 10).stream().map(Transaction::getId).toList());
+        handler.processAccountBatch(account.getId(), deposits.subList(10, 20).stream().map(Transaction::getId).toList());
+
+        // Then: The account item itself holds the full balance, and the shards are empty
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+        DynamoDbTable<Account> accountTable = enhancedClient.table(tableName, TableSchema.fromBean(Account.class));
+        DynamoDbTable<LedgerShard> shardTable = enhancedClient.table(tableName, TableSchema.fromBean(LedgerShard.class));
+
+        Account item = accountTable.getItem(Key.builder().partitionValue(account.getId()).build());
+        assertThat(item.getBalance().compareTo(new BigDecimal("20"))).isEqualTo(0);
+        assertThat(item.getLedgerShards()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            LedgerShard shard = shardTable.getItem(Key.builder().partitionValue(LedgerShard.shardId(account.getId(), i)).build());
+            assertThat(shard.getBalance().signum()).isEqualTo(0);
+        }
+
+        // And: Reads return the same balance and the latest sequence of all shards
+        Account read = accountService.findById(account.getId());
+        assertThat(read.getBalance().compareTo(new BigDecimal("20"))).isEqualTo(0);
+        assertThat(read.getLatestTransaction()).isEqualTo(item.getLatestTransaction());
+        assertAllStamped(deposits);
+    }
+
+    @Test
+    void shouldRejectInvalidShardCounts() {
+        Account account = accountService.createAccount(UUID.randomUUID().toString(), "hot", "EUR");
+
+        assertThatThrownBy(() -> accountService.enableLedgerSharding(account.getId(), 1))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> accountService.enableLedgerSharding(account.getId(), LedgerShard.MAX_SHARDS + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        accountService.enableLedgerSharding(account.getId(), 2);
+        assertThatThrownBy(() -> accountService.enableLedgerSharding(account.getId(), 4))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private void stampUntilEmpty(String accountId, ConcurrentLinkedQueue<String> queue, AtomicLong conflicts) {
+        DynamoDbStreamHandler handler = newHandler();
+        while (true) {
+            List<String> batch = new ArrayList<>();
+            for (String id; batch.size() < BATCH_SIZE && (id = queue.poll()) != null; ) {
+                batch.add(id);
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                handler.processAccountBatch(accountId, batch);
+            } catch (DynamoDbStreamHandler.AccountBatchException e) {
+                // Redelivered, as Lambda would after a batch item failure; stamped ones are skipped
+                queue.addAll(batch);
+            }
+        }
+        conflicts.addAndGet(handler.getMetrics().count(StreamMetrics.LOCK_CONFLICTS));
+    }
+
+    private DynamoDbStreamHandler newHandler() {
+        DynamoDbStreamHandler handler = new DynamoDbStreamHandler();
+        handler.setDynamoDbClient(dynamoDbClient);
+        handler.setTableName(tableName);
+        handler.setRetryPolicy(new ConflictRetryPolicy(20, 5, 100));
+        return handler;
+    }
+
+    private List<Transaction> createDeposits(String accountId, int count) {
+        List<Transaction> deposits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            deposits.add(transactionService.createDeposit(accountId, "user1", "EUR", BigDecimal.ONE, Instant.now(),
+                "DE89370400440532013000", "DE", "ref-" + i, "purpose"));
+        }
+        return deposits;
+    }
+
+    private void assertAllStamped(List<Transaction> deposits) {
+        DynamoDbTable<Transaction> transactionTable = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build()
+            .table(tableName, TableSchema.fromBean(Transaction.class));
+
+        Set<String> sequences = new HashSet<>();
+        for (Transaction deposit : deposits) {
+            Transaction stamped = transactionTable.getItem(Key.builder().partitionValue(deposit.getId()).build());
+            assertThat(stamped.getSequence()).startsWith("transaction-");
+            assertThat(sequences.add(stamped.getSequence())).as(stamped.getSequence()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.SharedLocalStackContainer;
+import com.fintechdemo.workflow.config.DynamoDbHttpTransport;
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.service.AccountService;
+import com.fintechdemo.workflow.service.CustomerService;
+import com.fintechdemo.workflow.service.TransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import javax.inject.Inject;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Local startup benchmark: measures the time to first response of both handlers with and without the
+ * SnapStart priming hooks, and init time and first response on each HTTP transport of the DynamoDB client.
+ * API runs also report the share of the async client, which is built on first use: by priming, or not at all
+ * when the first request only reads through the synchronous client. Each run happens in a fresh JVM, see
+ * {@link StartupProbe}.
+ */
+@Slf4j
+class StartupBenchmarkIT extends BaseIntegrationTest {
+
+    @Inject
+    private CustomerService customerService;
+
+    @Inject
+    private AccountService accountService;
+
+    @Inject
+    private TransactionService transactionService;
+
+    @Test
+    void shouldMeasureTimeToFirstResponseWithAndWithoutPriming() throws Exception {
+        // Given: A customer and an account for the handlers to read and stamp
+        Customer customer = customerService.createCustomer("Startup Benchmark");
+        Account account = accountService.createAccount(customer.getId(), "checking", "EUR");
+
+        // When: Each handler is started cold, once without and once with priming
+        List<String> results = new ArrayList<>();
+        for (String priming : List.of("unprimed", "primed")) {
+            results.add(runProbe("api", priming, List.of(customer.getId())));
+
+            Transaction deposit = transactionService.createDeposit(account.getId(), "user1", "EUR",
+                new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref-" + priming, "purpose");
+            results.add(runProbe("stream", priming, streamImage(deposit)));
+        }
+
+        // Then: Every first request succeeded
+        results.forEach(result -> log.info("⏱️ {}", result));
+        assertThat(results).allSatisfy(result -> assertThat(result).containsAnyOf("status=200", "status=ok"));
+
+        // And: Only priming started the async client, whose share of init is reported
+        assertThat(results.get(0)).contains("asyncClientMs=unused");
+        assertThat(results.get(2)).containsPattern("asyncClientMs=\\d+");
+    }
+
+    @Test
+    void shouldMeasureStartupByHttpTransport() throws Exception {
+        // Given: A customer and an account for the handlers to read and stamp
+        Customer customer = customerService.createCustomer("Transport Benchmark");
+        Account account = accountService.createAccount(customer.getId(), "checking", "EUR");
+
+        // When: Each handler is started cold on every HTTP transport, without priming so that init loads it
+        List<String> results = new ArrayList<>();
+        for (DynamoDbHttpTransport.Kind transport : DynamoDbHttpTransport.Kind.values()) {
+            results.add(runProbe("api", "unprimed", List.of(customer.getId()), transport.value()));
+
+            Transaction deposit = transactionService.createDeposit(account.getId(), "user1", "EUR",
+                new BigDecimal("10"), Instant.now(), "DE89370400440532013000", "DE", "ref-" + transport.value(), "purpose");
+            results.add(runProbe("stream", "unprimed", streamImage(deposit), transport.value()));
+        }
+
+        // Then: Every first request succeeded
+        results.forEach(result -> log.info("⏱️ {}", result));
+        assertThat(results).allSatisfy(result -> assertThat(result).containsAnyOf("status=200", "status=ok"));
+    }
+
+    private String runProbe(String handler, String priming, List<String> request) throws Exception {
+        return runProbe(handler, priming, request, null);
+    }
+
+    private String runProbe(String handler, String priming, List<String> request, String transport) throws Exception {
+        LocalStackContainer localStack = SharedLocalStackContainer.getInstance();
+        String endpoint = localStack.getEndpointOverride(LocalStackContainer.Service.DYNAMODB).toString();
+
+        List<String> command = new ArrayList<>(List.of(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            "-Dapp.dynamodb.endpoint=" + endpoint,
+            "-Daws.accessKeyId=" + localStack.getAccessKey(),
+            "-Daws.secretAccessKey=" + localStack.getSecretKey(),
+            "-Daws.region=" + localStack.getRegion(),
+            StartupProbe.class.getName(), handler, priming));
+        command.addAll(request);
+
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        // The stream handler is configured from the environment, as on Lambda
+        builder.environment().put("WORKFLOW_TABLE", tableName);
+        builder.environment().put("AWS_REGION", localStack.getRegion());
+        builder.environment().put("AWS_ENDPOINT_URL_DYNAMODB", endpoint);
+        builder.environment().put("AWS_ACCESS_KEY_ID", localStack.getAccessKey());
+        builder.environment().put("AWS_SECRET_ACCESS_KEY", localStack.getSecretKey());
+        if (transport != null) {
+            // Read by both handlers, the API handler through application.properties
+            builder.environment().put("DYNAMODB_HTTP_CLIENT", transport);
+        }
+
+        Process process = builder.start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(2, TimeUnit.MINUTES)).isTrue();
+        assertThat(process.exitValue()).as("probe output:%n%s", output).isZero();
+
+        return output.lines()
+            .filter(line -> line.startsWith("STARTUP "))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No result from probe:\n" + output));
+    }
+
+    private List<String> streamImage(Transaction transaction) {
+        List<String> attributes = new ArrayList<>();
+        TableSchema.fromBean(Transaction.class).itemToMap(transaction, true).forEach((name, value) -> {
+            if (value.s() != null) {
+                attributes.add("S:" + name + "=" + value.s());
+            } else if (value.n() != null) {
+                attributes.add("N:" + name + "=" + value.n());
+            }
+        });
+        return attributes;
+    }
+}
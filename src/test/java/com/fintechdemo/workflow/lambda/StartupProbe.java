@@ -0,0 +1,122 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import com.fintechdemo.workflow.config.DynamoDbHttpTransport;
+import com.fintechdemo.workflow.repository.AsyncWorkflowTables;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Started in a fresh JVM by {@link StartupBenchmarkIT}, so that every measurement begins with no classes loaded.
+ *
+ * <p>Arguments: {@code api|stream}, {@code primed|unprimed}, then the request: a customer id for {@code api},
+ * or the stream image of a pending transaction as {@code S:name=value} / {@code N:name=value} for {@code stream}.
+ *
+ * <p>A primed run mimics SnapStart: init and {@code beforeCheckpoint} happen before the snapshot, so the first
+ * response is timed from {@code afterRestore}. An unprimed run mimics a snapshot without hooks, timed from the
+ * end of init. Prints one {@code STARTUP} line with the results; for {@code api} these include how long building
+ * the lazily created async DynamoDB client took, or {@code unused} if nothing read through it.
+ */
+public class StartupProbe {
+
+    public static void main(String[] args) throws Exception {
+        String handler = args[0];
+        boolean primed = "primed".equals(args[1]);
+        List<String> request = List.of(args).subList(2, args.length);
+
+        String result = "api".equals(handler) ? probeApi(primed, request.get(0)) : probeStream(primed, request);
+        String transport = System.getenv().getOrDefault("DYNAMODB_HTTP_CLIENT", DynamoDbHttpTransport.DEFAULT_KIND.value());
+        System.out.println("STARTUP handler=" + handler + " priming=" + (primed ? "primed" : "unprimed")
+            + " transport=" + transport + " " + result);
+        System.exit(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String probeApi(boolean primed, String customerId) throws Exception {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+            .withHttpMethod("GET")
+            .withPath("/api/customers/" + customerId);
+
+        long initStart = System.nanoTime();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WorkflowLambdaHandler.class)
+            .web(WebApplicationType.NONE)
+            .run();
+        Function<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> function =
+            context.getBean("handleRequest", Function.class);
+        WorkflowLambdaHandler handler = context.getBean(WorkflowLambdaHandler.class);
+        if (primed) {
+            handler.beforeCheckpoint(null);
+        }
+        long initEnd = System.nanoTime();
+
+        if (primed) {
+            handler.afterRestore(null);
+        }
+        APIGatewayProxyResponseEvent response = function.apply(request);
+        long firstResponse = System.nanoTime();
+
+        AsyncWorkflowTables asyncTables = context.getBean(AsyncWorkflowTables.class);
+        return result(initStart, initEnd, firstResponse, String.valueOf(response.getStatusCode()))
+            + " asyncClientMs=" + (asyncTables.isStarted() ? String.valueOf(asyncTables.startupMillis()) : "unused");
+    }
+
+    private static String probeStream(boolean primed, List<String> image) {
+        DynamodbEvent event = streamEvent(image);
+
+        long initStart = System.nanoTime();
+        DynamoDbStreamHandler handler = new DynamoDbStreamHandler();
+        if (primed) {
+            handler.beforeCheckpoint(null);
+        }
+        long initEnd = System.nanoTime();
+
+        if (primed) {
+            handler.afterRestore(null);
+        }
+        StreamsEventResponse response = handler.handleRequest(event, null);
+        long firstResponse = System.nanoTime();
+
+        return result(initStart, initEnd, firstResponse, response.getBatchItemFailures().isEmpty() ? "ok" : "failed");
+    }
+
+    private static DynamodbEvent streamEvent(List<String> attributes) {
+        Map<String, AttributeValue> image = new HashMap<>();
+        for (String attribute : attributes) {
+            int separator = attribute.indexOf('=');
+            String name = attribute.substring(2, separator);
+            String value = attribute.substring(separator + 1);
+            image.put(name, attribute.startsWith("N:") ? new AttributeValue().withN(value) : new AttributeValue().withS(value));
+        }
+
+        StreamRecord streamRecord = new StreamRecord();
+        streamRecord.setKeys(Map.of("id", image.get("id")));
+        streamRecord.setNewImage(image);
+        streamRecord.setSequenceNumber("1");
+
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setEventName("INSERT");
+        record.setEventSource("aws:dynamodb");
+        record.setDynamodb(streamRecord);
+
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(List.of(record));
+        return event;
+    }
+
+    private static String result(long initStart, long initEnd, long firstResponse, String status) {
+        return "initMs=" + (initEnd - initStart) / 1_000_000
+            + " firstResponseMs=" + (firstResponse - initEnd) / 1_000_000
+            + " status=" + status;
+    }
+}
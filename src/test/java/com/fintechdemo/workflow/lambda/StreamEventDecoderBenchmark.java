@@ -0,0 +1,184 @@
+package com.fintechdemo.workflow.lambda;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.serialization.PojoSerializer;
+import com.amazonaws.services.lambda.runtime.serialization.events.LambdaEventSerializers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fintechdemo.workflow.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link StreamEventDecoder} with what the {@code DynamodbEvent} handler pays per invocation: the
+ * runtime's event serializer followed by mapping every pending transaction image through the bean schema.
+ * Payloads are Lambda-shaped batches of pending transaction INSERTs, account MODIFYs with both images and
+ * account INSERTs. Run with {@code mvn -Pbenchmark test -DskipTests -Djmh.includes=StreamEventDecoderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamEventDecoderBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TableSchema<Transaction> TRANSACTION_SCHEMA = TableSchema.fromBean(Transaction.class);
+
+    @Param({"10", "100", "1000"})
+    private int records;
+
+    private byte[] payload;
+    private PojoSerializer<DynamodbEvent> eventSerializer;
+
+    @Setup
+    public void setUp() throws IOException {
+        eventSerializer = LambdaEventSerializers.serializerFor(DynamodbEvent.class, getClass().getClassLoader());
+
+        Random random = new Random(42);
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            accounts.add(UUID.randomUUID().toString());
+        }
+
+        List<Map<String, Object>> batch = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            String accountId = accounts.get(random.nextInt(accounts.size()));
+            String sequenceNumber = String.valueOf(1_000_000_000L + i);
+            int kind = random.nextInt(10);
+            if (kind < 6) {
+                batch.add(record("INSERT", sequenceNumber, transactionImage(accountId, random), null));
+            } else if (kind < 9) {
+                batch.add(record("MODIFY", sequenceNumber, accountImage(accountId, random), accountImage(accountId, random)));
+            } else {
+                batch.add(record("INSERT", sequenceNumber, accountImage(UUID.randomUUID().toString(), random), null));
+            }
+        }
+        payload = MAPPER.writeValueAsBytes(Map.of("Records", batch));
+    }
+
+    @Benchmark
+    public int eventModel() {
+        DynamodbEvent event = eventSerializer.fromJson(new ByteArrayInputStream(payload));
+        int pending = 0;
+        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+            if (!"INSERT".equals(record.getEventName())) {
+                continue;
+            }
+            Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();
+            AttributeValue type = newImage.get("type");
+            AttributeValue sequence = newImage.get("sequence");
+            if (type != null && "TRANSACTION".equals(type.getS())
+                    && sequence != null && sequence.getS().startsWith("pending-")) {
+                Transaction image = TRANSACTION_SCHEMA.mapToItem(StreamImages.toAttributeValueMap(newImage));
+                pending += image.getAccountId().length();
+            }
+        }
+        return pending;
+    }
+
+    @Benchmark
+    public int streamingDecoder() throws IOException {
+        int pending = 0;
+        for (StreamEventDecoder.DecodedRecord record : StreamEventDecoder.decode(new ByteArrayInputStream(payload))) {
+            if (!record.isSkipped()) {
+                pending += record.image().getAccountId().length();
+            }
+        }
+        return pending;
+    }
+
+    private static Map<String, Object> record(String eventName, String sequenceNumber,
+                                              Map<String, Object> newImage, Map<String, Object> oldImage) {
+        Map<String, Object> streamRecord = new LinkedHashMap<>();
+        streamRecord.put("ApproximateCreationDateTime", 1.7e9);
+        streamRecord.put("Keys", Map.of("id", newImage.get("id")));
+        streamRecord.put("NewImage", newImage);
+        if (oldImage != null) {
+            streamRecord.put("OldImage", oldImage);
+        }
+        streamRecord.put("SequenceNumber", sequenceNumber);
+        streamRecord.put("SizeBytes", 512);
+        streamRecord.put("StreamViewType", "NEW_AND_OLD_IMAGES");
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("eventID", UUID.randomUUID().toString().replace("-", ""));
+        record.put("eventName", eventName);
+        record.put("eventVersion", "1.1");
+        record.put("eventSource", "aws:dynamodb");
+        record.put("awsRegion", "eu-west-1");
+        record.put("dynamodb", streamRecord);
+        record.put("eventSourceARN", "arn:aws:dynamodb:eu-west-1:123456789012:table/fintechdemo-workflow-dev/stream/2025-01-01T00:00:00.000");
+        return record;
+    }
+
+    private static Map<String, Object> transactionImage(String accountId, Random random) {
+        Map<String, Object> image = new LinkedHashMap<>();
+        image.put("id", s(UUID.randomUUID().toString()));
+        image.put("type", s(Transaction.ENTITY_TYPE));
+        image.put("parent", s(accountId));
+        image.put("sequence", s("pending-" + UUID.randomUUID()));
+        image.put("version", s(UUID.randomUUID().toString()));
+        image.put("versionString", s(UUID.randomUUID().toString()));
+        image.put("createdAt", s("2025-06-01T12:00:00Z"));
+        image.put("updatedAt", s("2025-06-01T12:00:00Z"));
+        image.put("accountId", s(accountId));
+        image.put("userId", s("user-" + random.nextInt(1000)));
+        image.put("currency", s("EUR"));
+        image.put("amount", n(random.nextInt(100_000) + ".50"));
+        image.put("transactedAt", s("2025-06-01T11:59:59Z"));
+        image.put("payorIBAN", s("DE89370400440532013000"));
+        image.put("originatingCountry", s("DE"));
+        image.put("paymentRef", s("Invoice " + random.nextInt(1_000_000)));
+        image.put("purposeRef", s("Goods and services"));
+        image.put("transactionType", s(random.nextBoolean() ? "DEPOSIT" : "WITHDRAWAL"));
+        return image;
+    }
+
+    private static Map<String, Object> accountImage(String accountId, Random random) {
+        Map<String, Object> image = new LinkedHashMap<>();
+        image.put("id", s(accountId));
+        image.put("type", s("ACCOUNT"));
+        image.put("parent", s(UUID.randomUUID().toString()));
+        image.put("sequence", s("account-" + UUID.randomUUID()));
+        image.put("version", s(UUID.randomUUID().toString()));
+        image.put("versionString", s(UUID.randomUUID().toString()));
+        image.put("customerId", s(UUID.randomUUID().toString()));
+        image.put("name", s("checking"));
+        image.put("currency", s("EUR"));
+        image.put("balance", n(String.valueOf(random.nextInt(1_000_000))));
+        image.put("pending", n("0"));
+        image.put("status", s("ACTIVE"));
+        image.put("latestTransaction", s("transaction-20250601-" + String.format("%06d", random.nextInt(999_999) + 1)));
+        return image;
+    }
+
+    private static Map<String, Object> s(String value) {
+        return Map.of("S", value);
+    }
+
+    private static Map<String, Object> n(String value) {
+        return Map.of("N", value);
+    }
+}
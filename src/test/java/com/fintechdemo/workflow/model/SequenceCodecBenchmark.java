@@ -0,0 +1,82 @@
+package com.fintechdemo.workflow.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SequenceCodec} with the format/split implementation it replaced in the stream handler.
+ * Run with {@code mvn -Pbenchmark test -DskipTests -Djmh.includes=SequenceCodecBenchmark}; add
+ * {@code -prof gc} through {@code jmh.includes} to see allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceCodecBenchmark {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private String latest;
+    private int todayKey;
+
+    @Setup
+    public void setUp() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        todayKey = SequenceCodec.dateKey(today);
+        latest = "transaction-" + today.format(DATE_FORMATTER) + "-004711";
+    }
+
+    @Benchmark
+    public String legacyNext() {
+        return legacyNextSequence(latest);
+    }
+
+    @Benchmark
+    public String codecNext() {
+        return SequenceCodec.next(latest, SequenceCodec.dateKey(LocalDate.now(ZoneOffset.UTC)));
+    }
+
+    @Benchmark
+    public String codecNextWithDateKey() {
+        return SequenceCodec.next(latest, todayKey);
+    }
+
+    @Benchmark
+    public int legacyDecode() {
+        return Integer.parseInt(latest.split("-")[2]);
+    }
+
+    @Benchmark
+    public long codecDecode() {
+        return SequenceCodec.decodeCounter(latest);
+    }
+
+    /**
+     * The stream handler's sequence generation before the codec, without its logging.
+     */
+    private static String legacyNextSequence(String currentLatestTransaction) {
+        String today = LocalDate.now(ZoneOffset.UTC).format(DATE_FORMATTER);
+
+        if (currentLatestTransaction == null || !currentLatestTransaction.startsWith("transaction-" + today)) {
+            return String.format("transaction-%s-%06d", today, 1);
+        }
+
+        String[] parts = currentLatestTransaction.split("-");
+        return String.format("transaction-%s-%06d", today, Integer.parseInt(parts[2]) + 1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.fintechdemo.workflow.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Property tests for {@link SequenceCodec} over seeded random counters, so failures are reproducible.
+ */
+class SequenceCodecTest {
+
+    private static final int DATE = 20250314;
+    private static final int SAMPLES = 100_000;
+
+    @Test
+    void shouldKeepLegacyFormatUpToSixDigits() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            long counter = 1 + random.nextInt(999_999);
+            assertThat(SequenceCodec.encode(DATE, counter))
+                .isEqualTo(String.format("transaction-%d-%06d", DATE, counter));
+        }
+    }
+
+    @Test
+    void shouldRoundTripCountersOfEveryWidth() {
+        Random random = new Random(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            long counter = randomCounter(random);
+            String sequence = SequenceCodec.encode(DATE, counter);
+            assertThat(SequenceCodec.decodeCounter(sequence)).as(sequence).isEqualTo(counter);
+            assertThat(SequenceCodec.decodeDate(sequence)).isEqualTo(DATE);
+            assertThat(SequenceCodec.isOnDate(sequence, DATE)).isTrue();
+        }
+        assertThat(SequenceCodec.decodeCounter(SequenceCodec.encode(DATE, Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void shouldOrderSequencesLikeCounters() {
+        Random random = new Random(1234);
+        for (int i = 0; i < SAMPLES; i++) {
+            long a = randomCounter(random);
+            long b = random.nextBoolean() ? randomCounter(random) : Math.max(1, a + random.nextInt(3) - 1);
+            int expected = Long.compare(a, b);
+            int actual = SequenceCodec.encode(DATE, a).compareTo(SequenceCodec.encode(DATE, b));
+            assertThat(Integer.signum(actual)).as("%d vs %d", a, b).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldOrderByDateBeforeCounter() {
+        Random random = new Random(99);
+        for (int i = 0; i < SAMPLES; i++) {
+            String earlier = SequenceCodec.encode(DATE, randomCounter(random));
+            String later = SequenceCodec.encode(DATE + 1, randomCounter(random));
+            assertThat(earlier).isLessThan(later);
+        }
+    }
+
+    @Test
+    void shouldOrderAcrossWidthBoundaries() {
+        long bound = 10;
+        for (int digits = 1; digits < 19; digits++, bound *= 10) {
+            String below = SequenceCodec.encode(DATE, bound - 1);
+            String at = SequenceCodec.encode(DATE, bound);
+            assertThat(below).isLessThan(at);
+            assertThat(SequenceCodec.next(below, DATE)).isEqualTo(at);
+        }
+        assertThat(SequenceCodec.encode(DATE, 999_999)).isEqualTo("transaction-20250314-999999");
+        assertThat(SequenceCodec.encode(DATE, 1_000_000)).isEqualTo("transaction-20250314-a1000000");
+    }
+
+    @Test
+    void shouldRestartCounterOnNewDayOrMissingLatest() {
+        assertThat(SequenceCodec.next(null, DATE)).isEqualTo("transaction-20250314-000001");
+        assertThat(SequenceCodec.next("transaction-20250313-a1234567", DATE)).isEqualTo("transaction-20250314-000001");
+        assertThat(SequenceCodec.next("pending-0190f0a2-7b1c-7d4e-9f00-000000000000", DATE)).isEqualTo("transaction-20250314-000001");
+        assertThat(SequenceCodec.next("transaction-20250314-000041", DATE)).isEqualTo("transaction-20250314-000042");
+    }
+
+    @Test
+    void shouldNeverCollideAcrossInterleavedLanes() {
+        Random random = new Random(2024);
+        for (int lanes : new int[] {2, 3, 8, 99}) {
+            String floor = SequenceCodec.encode(DATE, 1 + random.nextInt(1000));
+            String[] latest = new String[lanes];
+            Set<String> assigned = new HashSet<>();
+            for (int i = 0; i < 10_000; i++) {
+                int lane = random.nextInt(lanes);
+                latest[lane] = SequenceCodec.nextInterleaved(latest[lane], DATE, floor, lane, lanes);
+                assertThat(latest[lane]).isGreaterThan(floor);
+                assertThat(assigned.add(latest[lane])).as(latest[lane]).isTrue();
+            }
+        }
+        assertThat(SequenceCodec.nextInterleaved("transaction-20250313-000099", DATE, "transaction-20250313-000001", 2, 4))
+            .isEqualTo("transaction-20250314-000003");
+    }
+
+    @Test
+    void shouldRejectMalformedSequences() {
+        assertThatThrownBy(() -> SequenceCodec.decodeCounter("transaction-20250314-12345"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SequenceCodec.decodeCounter("transaction-20250314-a123456"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SequenceCodec.decodeCounter("transaction-20250314-a0123456"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SequenceCodec.decodeCounter("transaction-20250314-m9999999999999999999"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SequenceCodec.next("transaction-20250314-00x001", DATE))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SequenceCodec.encode(DATE, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * A counter of uniformly random width, then uniformly random within that width.
+     */
+    private static long randomCounter(Random random) {
+        int digits = 1 + random.nextInt(19);
+        long low = 1;
+        for (int i = 1; i < digits; i++) {
+            low *= 10;
+        }
+        long high = digits == 19 ? Long.MAX_VALUE : low * 10 - 1;
+        return low + (long) (random.nextDouble() * (high - low));
+    }
+}
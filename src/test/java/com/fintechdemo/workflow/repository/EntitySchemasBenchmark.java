@@ -0,0 +1,116 @@
+package com.fintechdemo.workflow.repository;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The handwritten {@link EntitySchemas} against the bean schemas. The cold benchmarks run once in each of
+ * many fresh JVMs, so they measure what a cold start pays for the three schemas, class loading and
+ * introspection included; the mapping benchmarks measure a transaction per operation once warm. Run with
+ * {@code mvn -Pbenchmark test -DskipTests -Djmh.includes=EntitySchemasBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntitySchemasBenchmark {
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public void coldBeanSchemas(Blackhole blackhole) {
+        blackhole.consume(TableSchema.fromBean(Account.class));
+        blackhole.consume(TableSchema.fromBean(Customer.class));
+        blackhole.consume(TableSchema.fromBean(Transaction.class));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public void coldStaticSchemas(Blackhole blackhole) {
+        // The first access initialises EntitySchemas, which builds all three
+        blackhole.consume(EntitySchemas.ACCOUNT);
+        blackhole.consume(EntitySchemas.CUSTOMER);
+        blackhole.consume(EntitySchemas.TRANSACTION);
+    }
+
+    @Benchmark
+    public Object beanItemToMap(Mapping mapping) {
+        return mapping.beanSchema.itemToMap(mapping.transaction, true);
+    }
+
+    @Benchmark
+    public Object staticItemToMap(Mapping mapping) {
+        return EntitySchemas.TRANSACTION.itemToMap(mapping.transaction, true);
+    }
+
+    @Benchmark
+    public Object beanMapToItem(Mapping mapping) {
+        return mapping.beanSchema.mapToItem(mapping.item);
+    }
+
+    @Benchmark
+    public Object staticMapToItem(Mapping mapping) {
+        return EntitySchemas.TRANSACTION.mapToItem(mapping.item);
+    }
+
+    // Only the mapping benchmarks use this state, so that nothing is built before the cold benchmarks
+    @State(Scope.Benchmark)
+    public static class Mapping {
+
+        private TableSchema<Transaction> beanSchema;
+        private Transaction transaction;
+        private Map<String, AttributeValue> item;
+
+        @Setup
+        public void setUp() {
+            beanSchema = TableSchema.fromBean(Transaction.class);
+
+            String accountId = UUID.randomUUID().toString();
+            transaction = Transaction.builder()
+                .id(UUID.randomUUID())
+                .type(Transaction.ENTITY_TYPE)
+                .parent(accountId)
+                .sequence("transaction-20250314-000042")
+                .version(UUID.randomUUID())
+                .accountId(accountId)
+                .userId("benchmark")
+                .currency("EUR")
+                .amount(new BigDecimal("12.34"))
+                .transactedAt(Instant.now())
+                .payorIBAN("NL91ABNA0417164300")
+                .transactionType(Transaction.TransactionType.DEPOSIT)
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build();
+            item = beanSchema.itemToMap(transaction, true);
+        }
+    }
+}
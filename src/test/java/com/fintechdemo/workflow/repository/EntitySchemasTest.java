@@ -0,0 +1,126 @@
+package com.fintechdemo.workflow.repository;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The handwritten {@link EntitySchemas} against the bean schemas they replace: both must write the same
+ * items, and read items written by the other, or items already in the table would no longer load.
+ */
+class EntitySchemasTest {
+
+    private static final Instant CREATED_AT = Instant.parse("2025-03-14T09:26:53.589Z");
+
+    @Test
+    void shouldMapAccountsLikeTheBeanSchema() {
+        Account account = Account.builder()
+            .id(UUID.randomUUID())
+            .type(Account.ENTITY_TYPE)
+            .parent(UUID.randomUUID().toString())
+            .sequence("account-checking")
+            .version(UUID.randomUUID())
+            .createdAt(CREATED_AT)
+            .updatedAt(CREATED_AT.plusSeconds(60))
+            .customerId(UUID.randomUUID().toString())
+            .name("checking")
+            .accountNumber("NL91ABNA0417164300")
+            .currency("EUR")
+            .balance(new BigDecimal("1234.56"))
+            .pending(new BigDecimal("-10.00"))
+            .status(Account.AccountStatus.ACTIVE)
+            .latestTransaction("transaction-20250314-000042")
+            .ledgerShards(8)
+            .ledgerShardedFrom("transaction-20250314-000040")
+            .build();
+
+        assertCompatible(EntitySchemas.ACCOUNT, TableSchema.fromBean(Account.class), account);
+        assertThat(EntitySchemas.ACCOUNT.itemToMap(new Account(), false))
+            .isEqualTo(TableSchema.fromBean(Account.class).itemToMap(new Account(), false));
+    }
+
+    @Test
+    void shouldMapCustomersLikeTheBeanSchema() {
+        Customer customer = Customer.builder()
+            .id(UUID.randomUUID())
+            .type(Customer.ENTITY_TYPE)
+            .version(UUID.randomUUID())
+            .createdAt(CREATED_AT)
+            .updatedAt(CREATED_AT)
+            .name("Ada Lovelace")
+            .build();
+
+        assertCompatible(EntitySchemas.CUSTOMER, TableSchema.fromBean(Customer.class), customer);
+        assertThat(EntitySchemas.CUSTOMER.itemToMap(new Customer(), false))
+            .isEqualTo(TableSchema.fromBean(Customer.class).itemToMap(new Customer(), false));
+    }
+
+    @Test
+    void shouldMapTransactionsLikeTheBeanSchema() {
+        String accountId = UUID.randomUUID().toString();
+        Transaction transaction = Transaction.builder()
+            .id(UUID.randomUUID())
+            .type(Transaction.ENTITY_TYPE)
+            .parent(accountId)
+            .sequence("transaction-20250314-000042")
+            .version(UUID.randomUUID())
+            .createdAt(CREATED_AT)
+            .updatedAt(CREATED_AT)
+            .accountId(accountId)
+            .userId("user-1")
+            .currency("EUR")
+            .amount(new BigDecimal("12.34"))
+            .transactedAt(CREATED_AT)
+            .beneficiaryIBAN("DE89370400440532013000")
+            .payorIBAN("NL91ABNA0417164300")
+            .originatingCountry("NL")
+            .paymentRef("invoice 42")
+            .purposeRef("rent")
+            .transactionType(Transaction.TransactionType.WITHDRAWAL)
+            .build();
+
+        assertCompatible(EntitySchemas.TRANSACTION, TableSchema.fromBean(Transaction.class), transaction);
+        assertThat(EntitySchemas.TRANSACTION.itemToMap(new Transaction(), false))
+            .isEqualTo(TableSchema.fromBean(Transaction.class).itemToMap(new Transaction(), false));
+    }
+
+    @Test
+    void shouldDeclareTheSameKeysAsTheBeanSchema() {
+        assertSameKeys(EntitySchemas.ACCOUNT.tableMetadata(), TableSchema.fromBean(Account.class).tableMetadata());
+        assertSameKeys(EntitySchemas.CUSTOMER.tableMetadata(), TableSchema.fromBean(Customer.class).tableMetadata());
+        assertSameKeys(EntitySchemas.TRANSACTION.tableMetadata(), TableSchema.fromBean(Transaction.class).tableMetadata());
+    }
+
+    private static <T> void assertCompatible(TableSchema<T> schema, TableSchema<T> beanSchema, T item) {
+        Map<String, AttributeValue> written = schema.itemToMap(item, true);
+        Map<String, AttributeValue> writtenByBean = beanSchema.itemToMap(item, true);
+
+        assertThat(written).isEqualTo(writtenByBean);
+        assertThat(schema.itemToMap(item, false)).isEqualTo(beanSchema.itemToMap(item, false));
+        assertThat(schema.attributeNames()).containsExactlyInAnyOrderElementsOf(beanSchema.attributeNames());
+
+        // Items already in the table read back unchanged, and new items read back with the bean schema
+        assertThat(schema.mapToItem(writtenByBean)).isEqualTo(item);
+        assertThat(beanSchema.mapToItem(written)).isEqualTo(item);
+    }
+
+    private static void assertSameKeys(TableMetadata metadata, TableMetadata beanMetadata) {
+        assertThat(metadata.primaryPartitionKey()).isEqualTo(beanMetadata.primaryPartitionKey());
+        assertThat(metadata.primarySortKey()).isEqualTo(beanMetadata.primarySortKey());
+        assertThat(metadata.indexPartitionKey(WorkflowTables.PARENT_SEQUENCE_INDEX))
+            .isEqualTo(beanMetadata.indexPartitionKey(WorkflowTables.PARENT_SEQUENCE_INDEX));
+        assertThat(metadata.indexSortKey(WorkflowTables.PARENT_SEQUENCE_INDEX))
+            .isEqualTo(beanMetadata.indexSortKey(WorkflowTables.PARENT_SEQUENCE_INDEX));
+    }
+}
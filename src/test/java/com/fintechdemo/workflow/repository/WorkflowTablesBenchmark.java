@@ -0,0 +1,112 @@
+package com.fintechdemo.workflow.repository;
+
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request overhead of getting at the table before {@link WorkflowTables}: building an enhanced client
+ * and a bean schema for every call, as the services did, against reusing the shared handles and schemas. No
+ * request is sent; the client is only built. Run with
+ * {@code mvn -Pbenchmark test -DskipTests -Djmh.includes=WorkflowTablesBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowTablesBenchmark {
+
+    private static final String TABLE_NAME = "fintechdemo-workflow-benchmark";
+
+    private DynamoDbClient dynamoDbClient;
+    private WorkflowTables tables;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        dynamoDbClient = DynamoDbClient.builder()
+            .region(Region.EU_WEST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("benchmark", "benchmark")))
+            .build();
+        tables = new WorkflowTables(dynamoDbClient, TABLE_NAME);
+
+        String accountId = UUID.randomUUID().toString();
+        transaction = Transaction.builder()
+            .id(UUID.randomUUID())
+            .type(Transaction.ENTITY_TYPE)
+            .parent(accountId)
+            .sequence("pending-" + UUID.randomUUID())
+            .version(UUID.randomUUID())
+            .accountId(accountId)
+            .userId("benchmark")
+            .currency("EUR")
+            .amount(new BigDecimal("12.34"))
+            .transactionType(Transaction.TransactionType.DEPOSIT)
+            .createdAt(Instant.now())
+            .updatedAt(Instant.now())
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dynamoDbClient.close();
+    }
+
+    /**
+     * What a service method paid for its handles before: a new enhanced client and two bean schemas.
+     */
+    @Benchmark
+    public void perRequestHandles(Blackhole blackhole) {
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+            .dynamoDbClient(dynamoDbClient)
+            .build();
+        DynamoDbTable<Transaction> transactionTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(Transaction.class));
+        DynamoDbTable<Account> accountTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(Account.class));
+        blackhole.consume(transactionTable.index(WorkflowTables.PARENT_SEQUENCE_INDEX));
+        blackhole.consume(accountTable);
+    }
+
+    @Benchmark
+    public void sharedHandles(Blackhole blackhole) {
+        blackhole.consume(tables.transactionsByParent());
+        blackhole.consume(tables.accounts());
+    }
+
+    /**
+     * Mapping a transaction to an item with a schema built for the call, as idempotent creates did.
+     */
+    @Benchmark
+    public Object perRequestItemMapping() {
+        return TableSchema.fromBean(Transaction.class).itemToMap(transaction, true);
+    }
+
+    @Benchmark
+    public Object sharedItemMapping() {
+        return WorkflowTables.TRANSACTION_SCHEMA.itemToMap(transaction, true);
+    }
+}
@@ -1,6 +1,7 @@
 package com.fintechdemo.workflow.service;
 
 import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.controller.AccountBalanceResponse;
 import com.fintechdemo.workflow.model.Account;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
@@ -8,6 +9,7 @@ import javax.inject.Inject;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -272,4 +274,26 @@ class AccountServiceIT extends BaseIntegrationTest {
         
         log.info("Inputs trimmed successfully");
     }
-} 
+
+    @Test
+    void shouldAnswerBalanceAsOfWithoutCheckpoints() {
+        // Given
+        Account createdAccount = accountService.createAccount(UUID.randomUUID().toString(), "Balance Account", "EUR");
+        
+        // When
+        AccountBalanceResponse balance = accountService.getBalanceAsOf(createdAccount.getId(), "2020-01-31");
+        
+        // Then: Nothing was stamped by then, and there is no checkpoint to start from
+        assertThat(balance).isNotNull();
+        assertThat(balance.getCurrency()).isEqualTo("EUR");
+        assertThat(balance.getAsOf()).isEqualTo(Instant.parse("2020-01-31T23:59:59.999999999Z"));
+        assertThat(balance.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance.getCheckpointDate()).isNull();
+        assertThat(balance.getReplayedTransactions()).isZero();
+        
+        // And: Unknown accounts and malformed instants are told apart
+        assertThat(accountService.getBalanceAsOf(UUID.randomUUID().toString(), null)).isNull();
+        assertThatThrownBy(() -> accountService.getBalanceAsOf(createdAccount.getId(), "yesterday"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,136 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.SequenceCodec;
+import com.fintechdemo.workflow.model.Transaction;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import javax.inject.Inject;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Local latency benchmark of the blocking and the {@code CompletableFuture} service methods against
+ * LocalStack: a page of account transactions, where the async path queries pending and stamped
+ * transactions of every index bucket at once, and the account listings of several customers, which the
+ * async path requests together. Reports the median and p95 of each.
+ */
+@Slf4j
+class AsyncServiceBenchmarkIT extends BaseIntegrationTest {
+
+    private static final int WARMUP = 10;
+    private static final int ROUNDS = 50;
+    private static final int CUSTOMERS = 8;
+
+    @Inject
+    private AccountService accountService;
+
+    @Inject
+    private TransactionService transactionService;
+
+    @Inject
+    private WorkflowTables workflowTables;
+
+    @Test
+    void shouldMeasureAccountTransactionsLatency() {
+        List<String> results = new ArrayList<>();
+
+        for (int buckets : new int[] {1, 4}) {
+            // Given: An account with pending and stamped transactions
+            ReflectionTestUtils.setField(transactionService, "indexBuckets", buckets);
+            try {
+                String accountId = UUID.randomUUID().toString();
+                createTransactions(accountId, 5, 40);
+
+                // When: The first page is read on both paths
+                long[] sync = measure(() -> transactionService.getAccountTransactions(accountId, null, 20));
+                long[] async = measure(() -> transactionService.getAccountTransactionsAsync(accountId, null, 20).join());
+
+                // Then: Both return the pending transactions and a full page
+                assertThat(transactionService.getAccountTransactionsAsync(accountId, null, 20).join().getTransactions())
+                    .hasSize(20);
+                results.add(report("getAccountTransactions buckets=" + buckets, sync, async));
+            } finally {
+                ReflectionTestUtils.setField(transactionService, "indexBuckets", 1);
+            }
+        }
+
+        results.forEach(result -> log.info("⏱️ {}", result));
+    }
+
+    @Test
+    void shouldMeasureCustomerAccountListingLatency() {
+        // Given: Customers with a few accounts each
+        List<String> customerIds = new ArrayList<>();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            String customerId = UUID.randomUUID().toString();
+            for (String name : List.of("checking", "savings", "travel")) {
+                accountService.createAccount(customerId, name, "EUR");
+            }
+            customerIds.add(customerId);
+        }
+
+        // When: The accounts of every customer are listed, one after the other or all at once
+        long[] sync = measure(() -> customerIds.stream()
+            .map(accountService::getCustomerAccounts)
+            .toList());
+        long[] async = measure(() -> {
+            List<CompletableFuture<List<Account>>> listings = customerIds.stream()
+                .map(accountService::getCustomerAccountsAsync)
+                .toList();
+            return listings.stream().map(CompletableFuture::join).toList();
+        });
+
+        // Then: Both list the same accounts
+        for (String customerId : customerIds) {
+            assertThat(accountService.getCustomerAccountsAsync(customerId).join()).extracting(Account::getId)
+                .containsExactlyElementsOf(accountService.getCustomerAccounts(customerId).stream().map(Account::getId).toList());
+        }
+        log.info("⏱️ {}", report("getCustomerAccounts customers=" + CUSTOMERS, sync, async));
+    }
+
+    private void createTransactions(String accountId, int pending, int stamped) {
+        int today = SequenceCodec.dateKey(LocalDate.now());
+        WorkflowTables tables = workflowTables.withTableName(tableName);
+        for (int i = 1; i <= pending + stamped; i++) {
+            Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", BigDecimal.ONE, Instant.now(),
+                "DE89370400440532013000", "DE", "ref-" + i, "purpose");
+            if (i > pending) {
+                deposit.setSequence(SequenceCodec.encode(today, i));
+                tables.transactions().putItem(deposit);
+            }
+        }
+    }
+
+    private static long[] measure(Supplier<?> call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.get();
+        }
+        long[] micros = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            call.get();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private static String report(String name, long[] sync, long[] async) {
+        return String.format("%s sync p50=%dus p95=%dus async p50=%dus p95=%dus", name,
+            sync[ROUNDS / 2], sync[ROUNDS * 95 / 100], async[ROUNDS / 2], async[ROUNDS * 95 / 100]);
+    }
+}
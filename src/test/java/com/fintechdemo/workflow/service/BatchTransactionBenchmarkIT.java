@@ -0,0 +1,89 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.controller.BatchTransactionItem;
+import com.fintechdemo.workflow.controller.BatchTransactionResponse;
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import javax.inject.Inject;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Local throughput benchmark of bulk submission against LocalStack: 1k and 10k deposits spread over a few
+ * accounts, written with {@code BatchWriteItem} chunks, and 1k written one {@code putItem} at a time as
+ * the baseline. Reports items per second of each.
+ */
+@Slf4j
+class BatchTransactionBenchmarkIT extends BaseIntegrationTest {
+
+    private static final int ACCOUNTS = 10;
+
+    @Inject
+    private TransactionService transactionService;
+
+    @Test
+    void shouldMeasureBatchSubmissionThroughput() {
+        List<String> results = new ArrayList<>();
+
+        // Given: 1k deposits submitted one at a time
+        List<BatchTransactionItem> baseline = deposits(1_000);
+        long start = System.nanoTime();
+        for (BatchTransactionItem item : baseline) {
+            transactionService.createDeposit(item.getAccountId(), item.getUserId(), item.getCurrency(), item.getAmount(),
+                item.getTransactedAt(), item.getPayorIBAN(), item.getOriginatingCountry(), item.getPaymentRef(), item.getPurposeRef());
+        }
+        results.add(report("putItem items=" + baseline.size(), baseline.size(), System.nanoTime() - start));
+
+        int written = baseline.size();
+        for (int size : new int[] {1_000, 10_000}) {
+            // When: The same number of deposits, and ten times as many, are submitted as one batch
+            List<BatchTransactionItem> items = deposits(size);
+            start = System.nanoTime();
+            BatchTransactionResponse response = transactionService.createTransactions(null, items);
+            results.add(report("batchWriteItem items=" + size, size, System.nanoTime() - start));
+
+            // Then: Every deposit was written
+            assertThat(response.getCreated()).isEqualTo(size);
+            written += size;
+        }
+
+        assertThat(getTableItemCount()).isEqualTo(written);
+        results.forEach(result -> log.info("⏱️ {}", result));
+    }
+
+    private static List<BatchTransactionItem> deposits(int count) {
+        List<String> accountIds = new ArrayList<>();
+        for (int a = 0; a < ACCOUNTS; a++) {
+            accountIds.add(UUID.randomUUID().toString());
+        }
+
+        List<BatchTransactionItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BatchTransactionItem item = new BatchTransactionItem();
+            item.setAccountId(accountIds.get(i % ACCOUNTS));
+            item.setTransactionType(Transaction.TransactionType.DEPOSIT);
+            item.setUserId("user1");
+            item.setCurrency("EUR");
+            item.setAmount(BigDecimal.ONE);
+            item.setTransactedAt(Instant.now());
+            item.setPayorIBAN("DE89370400440532013000");
+            item.setOriginatingCountry("DE");
+            item.setPaymentRef("ref-" + i);
+            item.setPurposeRef("purpose");
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static String report(String name, int items, long nanos) {
+        return String.format("%s took %dms, %.0f items/s", name, nanos / 1_000_000, items * 1e9 / nanos);
+    }
+}
@@ -0,0 +1,106 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.controller.CustomerOverviewResponse;
+import com.fintechdemo.workflow.controller.CustomerOverviewResponse.AccountOverview;
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import javax.inject.Inject;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Slf4j
+class CustomerOverviewServiceIT extends BaseIntegrationTest {
+
+    @Inject
+    private CustomerOverviewService customerOverviewService;
+
+    @Inject
+    private CustomerService customerService;
+
+    @Inject
+    private AccountService accountService;
+
+    @Inject
+    private TransactionService transactionService;
+
+    @Test
+    void shouldAssembleCustomerOverview() {
+        // Given: A customer with three accounts holding 7, 2 and no transactions
+        Customer customer = customerService.createCustomer("Overview Customer");
+        Account busy = accountService.createAccount(customer.getId(), "Checking Account", "EUR");
+        Account quiet = accountService.createAccount(customer.getId(), "Savings Account", "EUR");
+        Account empty = accountService.createAccount(customer.getId(), "Empty Account", "EUR");
+        accountService.createAccount(UUID.randomUUID().toString(), "Other Account", "EUR");
+
+        List<Transaction> busyDeposits = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            busyDeposits.add(transactionService.createDeposit(busy.getId(), "user1", "EUR", new BigDecimal(i), Instant.now(),
+                "DE89370400440532013000", "DE", "ref" + i, "purpose"));
+        }
+        for (int i = 1; i <= 2; i++) {
+            transactionService.createDeposit(quiet.getId(), "user1", "EUR", new BigDecimal(i), Instant.now(),
+                "DE89370400440532013000", "DE", "ref" + i, "purpose");
+        }
+
+        // When: The overview is read with one account's transactions in flight at a time
+        ReflectionTestUtils.setField(customerOverviewService, "maxConcurrency", 1);
+        CustomerOverviewResponse overview;
+        try {
+            overview = customerOverviewService.getOverview(customer.getId(), 5).join();
+        } finally {
+            ReflectionTestUtils.setField(customerOverviewService, "maxConcurrency", 8);
+        }
+
+        // Then: Every account of the customer is there with its latest transactions, newest first
+        assertThat(overview).isNotNull();
+        assertThat(overview.getCustomer().getId()).isEqualTo(customer.getId());
+        assertThat(overview.getAccounts()).extracting(accountOverview -> accountOverview.getAccount().getId())
+            .containsExactlyInAnyOrder(busy.getId(), quiet.getId(), empty.getId());
+
+        AccountOverview busyOverview = overview.getAccounts().stream()
+            .filter(accountOverview -> accountOverview.getAccount().getId().equals(busy.getId()))
+            .findFirst()
+            .orElseThrow();
+        assertThat(busyOverview.getTransactions()).extracting(Transaction::getId)
+            .containsExactlyElementsOf(busyDeposits.reversed().subList(0, 5).stream().map(Transaction::getId).toList());
+
+        assertThat(overview.getAccounts()).filteredOn(accountOverview -> accountOverview.getAccount().getId().equals(quiet.getId()))
+            .singleElement()
+            .satisfies(accountOverview -> assertThat(accountOverview.getTransactions()).hasSize(2));
+        assertThat(overview.getAccounts()).filteredOn(accountOverview -> accountOverview.getAccount().getId().equals(empty.getId()))
+            .singleElement()
+            .satisfies(accountOverview -> assertThat(accountOverview.getTransactions()).isEmpty());
+
+        log.info("Overview of customer {} has {} accounts", customer.getId(), overview.getAccounts().size());
+    }
+
+    @Test
+    void shouldReturnNullOverviewForNonExistentCustomer() {
+        // When
+        CustomerOverviewResponse overview = customerOverviewService.getOverview(UUID.randomUUID().toString(), 5).join();
+
+        // Then
+        assertThat(overview).isNull();
+    }
+
+    @Test
+    void shouldRejectTransactionCountsOutsideTheLimit() {
+        // When / Then
+        String customerId = UUID.randomUUID().toString();
+        assertThatThrownBy(() -> customerOverviewService.getOverview(customerId, -1))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> customerOverviewService.getOverview(customerId, CustomerOverviewService.MAX_TRANSACTIONS_PER_ACCOUNT + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.fintechdemo.workflow.service;
+
+import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.model.Account;
+import com.fintechdemo.workflow.model.Customer;
+import com.fintechdemo.workflow.model.UuidV7;
+import com.fintechdemo.workflow.repository.WorkflowTables;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import javax.inject.Inject;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * The read caches of the services, which the test profile turns off for every other test. This class gets
+ * its own application context with the caches on, so nothing here leaks into the other tests.
+ */
+@Slf4j
+@TestPropertySource(properties = "app.cache.ttl-ms=60000")
+class EntityCacheIT extends BaseIntegrationTest {
+
+    @Inject
+    private AccountService accountService;
+
+    @Inject
+    private CustomerService customerService;
+
+    @BeforeEach
+    void clearCaches() {
+        accountService.clearCaches();
+        customerService.clearCache();
+    }
+
+    @Test
+    void shouldServeRepeatedAccountReadsFromCacheAndKeepBalancesCurrent() {
+        // Given: An account read once
+        String customerId = UUID.randomUUID().toString();
+        Account account = accountService.createAccount(customerId, "Dashboard Account", "EUR");
+        assertThat(accountService.findById(account.getId())).isNotNull();
+        assertThat(accountService.getCustomerAccounts(customerId)).hasSize(1);
+
+        // When: It is read again
+        Account cached = accountService.findById(account.getId());
+        accountService.getCustomerAccounts(customerId);
+
+        // Then: Both reads were hits
+        assertThat(cached.getVersionUuid()).isEqualTo(account.getVersionUuid());
+        assertThat(accountService.cacheStats())
+            .extracting(CacheStats::name, CacheStats::hits, CacheStats::misses)
+            .containsExactly(tuple("accounts", 1L, 1L), tuple("customerAccounts", 1L, 1L));
+
+        // When: The stream processor of this container writes a new balance
+        Account stamped = tables().accounts().getItem(r -> r.key(k -> k.partitionValue(account.getId())));
+        stamped.setBalance(new BigDecimal("42.00"));
+        stamped.setVersion(UuidV7.generate());
+        tables().accounts().putItem(stamped);
+        accountService.accountWritten(stamped);
+
+        // Then: Reads see it without going to the table, and the stale listing is gone
+        assertThat(accountService.findById(account.getId()).getBalance()).isEqualByComparingTo("42.00");
+        assertThat(accountService.getCustomerAccounts(customerId))
+            .extracting(Account::getBalance)
+            .usingElementComparator(BigDecimal::compareTo)
+            .containsExactly(new BigDecimal("42.00"));
+
+        // And: An older version never replaces a newer one
+        accountService.accountWritten(account);
+        assertThat(accountService.findById(account.getId()).getBalance()).isEqualByComparingTo("42.00");
+
+        // When: An update whose new state is unknown is reported
+        accountService.accountChanged(account.getId());
+
+        // Then: The next read goes to the table
+        long misses = accountService.cacheStats().get(0).misses();
+        assertThat(accountService.findById(account.getId()).getBalance()).isEqualByComparingTo("42.00");
+        assertThat(accountService.cacheStats().get(0).misses()).isEqualTo(misses + 1);
+        assertThat(accountService.cacheStats().get(0).evictions()).isPositive();
+    }
+
+    @Test
+    void shouldServeRepeatedCustomerReadsFromCache() {
+        // Given: A customer created by this container, which caches it as written
+        Customer customer = customerService.createCustomer("Cached Customer");
+
+        // When: It is read
+        Customer read = customerService.getCustomer(customer.getId());
+
+        // Then: The read was a hit
+        assertThat(read.getName()).isEqualTo("Cached Customer");
+        assertThat(customerService.cacheStats())
+            .extracting(CacheStats::name, CacheStats::hits, CacheStats::misses)
+            .containsExactly("customers", 1L, 0L);
+
+        // When: Another container renames it
+        Customer renamed = tables().customers().getItem(r -> r.key(k -> k.partitionValue(customer.getId())));
+        renamed.setName("Renamed Customer");
+        renamed.setVersion(UuidV7.generate());
+        tables().customers().putItem(renamed);
+
+        // Then: Reads within the TTL still get the cached customer
+        assertThat(customerService.getCustomer(customer.getId()).getName()).isEqualTo("Cached Customer");
+
+        // And: Once the entry is gone, the read goes to the table and caches the new version
+        customerService.clearCache();
+        assertThat(customerService.getCustomer(customer.getId()).getName()).isEqualTo("Renamed Customer");
+        assertThat(customerService.getCustomer(customer.getId()).getName()).isEqualTo("Renamed Customer");
+        assertThat(customerService.cacheStats())
+            .extracting(CacheStats::hits, CacheStats::misses)
+            .containsExactly(1L, 1L);
+
+        // And: Missing customers are not cached, so every read of one goes to the table
+        String missingId = UUID.randomUUID().toString();
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> customerService.getCustomer(missingId)).isInstanceOf(RuntimeException.class);
+        }
+        assertThat(customerService.cacheStats().misses()).isEqualTo(3);
+        assertThat(customerService.cacheStats().size()).isEqualTo(1);
+    }
+
+    private WorkflowTables tables() {
+        return (WorkflowTables) ReflectionTestUtils.getField(accountService, "tables");
+    }
+}
@@ -1,13 +1,19 @@
 package com.fintechdemo.workflow.service;
 
 import com.fintechdemo.workflow.BaseIntegrationTest;
+import com.fintechdemo.workflow.controller.BatchTransactionItem;
+import com.fintechdemo.workflow.controller.BatchTransactionResponse;
 import com.fintechdemo.workflow.controller.TransactionListResponse;
+import com.fintechdemo.workflow.model.SequenceCodec;
 import com.fintechdemo.workflow.model.Transaction;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 import javax.inject.Inject;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.UUID;
 import java.util.List;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
@@ -275,6 +281,344 @@ class TransactionServiceIT extends BaseIntegrationTest {
         log.info("Successfully retrieved {} stamped transactions for current year", stampedTransactions.size());
     }
     
+    @Test
+    void shouldMergeIndexBucketsInSequenceOrderAcrossPages() {
+        // Given: Transactions spread over four index buckets, and one written before bucketing was enabled
+        String accountId = UUID.randomUUID().toString();
+        int today = SequenceCodec.dateKey(LocalDate.now());
+
+        Transaction legacy = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("1"), Instant.now(),
+            "DE89370400440532013000", "DE", "ref0", "purpose");
+        updateTransactionToStampedSequence(legacy, SequenceCodec.encode(today, 1));
+        assertThat(legacy.getParent()).isEqualTo(accountId);
+
+        ReflectionTestUtils.setField(transactionService, "indexBuckets", 4);
+        try {
+            for (int i = 2; i <= 11; i++) {
+                Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal(i), Instant.now(),
+                    "DE89370400440532013000", "DE", "ref" + i, "purpose");
+                assertThat(deposit.getParent()).startsWith(accountId + "#");
+                updateTransactionToStampedSequence(deposit, SequenceCodec.encode(today, i));
+            }
+
+            // When: Paging through the transactions three at a time
+            List<String> sequences = new ArrayList<>();
+            String nextToken = null;
+            int pages = 0;
+            do {
+                TransactionListResponse page = transactionService.getAccountTransactions(accountId, nextToken, 3);
+                assertThat(page.getTransactions()).hasSizeLessThanOrEqualTo(3);
+                page.getTransactions().forEach(tx -> sequences.add(tx.getSequence()));
+                nextToken = page.getNextToken();
+                pages++;
+            } while (nextToken != null && pages < 10);
+
+            // Then: Every transaction appears once, in global sequence order
+            List<String> expected = new ArrayList<>();
+            for (int i = 1; i <= 11; i++) {
+                expected.add(SequenceCodec.encode(today, i));
+            }
+            assertThat(sequences).containsExactlyElementsOf(expected);
+            assertThat(transactionService.getStampedTransactionsForCurrentYear(accountId))
+                .extracting(Transaction::getSequence)
+                .containsExactlyElementsOf(expected);
+        } finally {
+            ReflectionTestUtils.setField(transactionService, "indexBuckets", 1);
+        }
+    }
+
+    @Test
+    void shouldPageTheSameOnTheAsyncPath() {
+        // Given: Pending and stamped transactions spread over four index buckets
+        String accountId = UUID.randomUUID().toString();
+        int today = SequenceCodec.dateKey(LocalDate.now());
+
+        ReflectionTestUtils.setField(transactionService, "indexBuckets", 4);
+        try {
+            for (int i = 1; i <= 9; i++) {
+                Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal(i), Instant.now(),
+                    "DE89370400440532013000", "DE", "ref" + i, "purpose");
+                if (i > 2) {
+                    updateTransactionToStampedSequence(deposit, SequenceCodec.encode(today, i));
+                }
+            }
+
+            // When: Paging through the transactions four at a time on both paths
+            String nextToken = null;
+            int pages = 0;
+            do {
+                TransactionListResponse page = transactionService.getAccountTransactions(accountId, nextToken, 4);
+                TransactionListResponse asyncPage = transactionService.getAccountTransactionsAsync(accountId, nextToken, 4).join();
+
+                // Then: Every page has the same transactions and next token
+                assertThat(asyncPage.getTransactions()).extracting(Transaction::getId)
+                    .containsExactlyElementsOf(page.getTransactions().stream().map(Transaction::getId).toList());
+                assertThat(asyncPage.getNextToken()).isEqualTo(page.getNextToken());
+                nextToken = page.getNextToken();
+                pages++;
+            } while (nextToken != null && pages < 10);
+            assertThat(pages).isEqualTo(3);
+        } finally {
+            ReflectionTestUtils.setField(transactionService, "indexBuckets", 1);
+        }
+    }
+
+    @Test
+    void shouldPageThroughPendingThenStampedTransactionsWithinLimit() {
+        // Given: More pending transactions than fit on a page, and stamped ones, over four index buckets
+        String accountId = UUID.randomUUID().toString();
+        int today = SequenceCodec.dateKey(LocalDate.now());
+        List<String> expected = new ArrayList<>();
+
+        ReflectionTestUtils.setField(transactionService, "indexBuckets", 4);
+        try {
+            List<String> stamped = new ArrayList<>();
+            for (int i = 1; i <= 12; i++) {
+                Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal(i), Instant.now(),
+                    "DE89370400440532013000", "DE", "ref" + i, "purpose");
+                if (i % 3 == 0) {
+                    updateTransactionToStampedSequence(deposit, SequenceCodec.encode(today, i));
+                    stamped.add(deposit.getId());
+                } else {
+                    expected.add(deposit.getId());
+                }
+            }
+            expected.addAll(stamped);
+
+            // When: Paging through the transactions three at a time, on both paths
+            List<String> listed = new ArrayList<>();
+            String nextToken = null;
+            int pages = 0;
+            do {
+                TransactionListResponse page = transactionService.getAccountTransactions(accountId, nextToken, 3);
+                TransactionListResponse asyncPage = transactionService.getAccountTransactionsAsync(accountId, nextToken, 3).join();
+
+                // Then: No page is larger than the limit, and both paths agree
+                assertThat(page.getTransactions()).hasSizeLessThanOrEqualTo(3);
+                assertThat(asyncPage.getTransactions()).extracting(Transaction::getId)
+                    .containsExactlyElementsOf(page.getTransactions().stream().map(Transaction::getId).toList());
+                assertThat(asyncPage.getNextToken()).isEqualTo(page.getNextToken());
+                page.getTransactions().forEach(tx -> listed.add(tx.getId()));
+                nextToken = page.getNextToken();
+                pages++;
+            } while (nextToken != null && pages < 10);
+
+            // Then: Every transaction is listed once, pending ones in creation order before the stamped ones
+            assertThat(listed).containsExactlyElementsOf(expected);
+            assertThat(pages).isEqualTo(4);
+        } finally {
+            ReflectionTestUtils.setField(transactionService, "indexBuckets", 1);
+        }
+    }
+
+    @Test
+    void shouldRejectNextTokenOfAnotherAccount() {
+        // Given: A next token of one account
+        String accountId = UUID.randomUUID().toString();
+        for (int i = 1; i <= 3; i++) {
+            transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal(i), Instant.now(),
+                "DE89370400440532013000", "DE", "ref" + i, "purpose");
+        }
+        String nextToken = transactionService.getAccountTransactions(accountId, null, 2).getNextToken();
+        assertThat(nextToken).isNotNull();
+
+        // When & Then: It is refused for another account, as is a token that was never issued
+        String otherAccountId = UUID.randomUUID().toString();
+        assertThatThrownBy(() -> transactionService.getAccountTransactions(otherAccountId, nextToken, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> transactionService.getAccountTransactionsAsync(accountId, "transaction-20250101-000001", 2))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(transactionService.getAccountTransactions(accountId, nextToken, 2).getTransactions()).hasSize(1);
+    }
+
+    @Test
+    void shouldRejectMalformedNextTokens() {
+        // Given: An account whose pending transactions exactly fill a page, followed by a stamped one
+        String accountId = UUID.randomUUID().toString();
+        for (int i = 1; i <= 3; i++) {
+            Transaction deposit = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal(i), Instant.now(),
+                "DE89370400440532013000", "DE", "ref" + i, "purpose");
+            if (i == 3) {
+                updateTransactionToStampedSequence(deposit, SequenceCodec.encode(SequenceCodec.dateKey(LocalDate.now()), 1));
+            }
+        }
+        String stampedToken = transactionService.getAccountTransactions(accountId, null, 2).getNextToken();
+        assertThat(stampedToken).isNotNull();
+
+        // When & Then: The token that starts the stamped transactions only holds for its own account
+        assertThat(transactionService.getAccountTransactions(accountId, stampedToken, 2).getTransactions()).hasSize(1);
+        assertThatThrownBy(() -> transactionService.getAccountTransactions(UUID.randomUUID().toString(), stampedToken, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        // And: Keys outside the token's phase, malformed keys and unknown phases are refused before any query
+        List<String> malformed = List.of(
+            "{\"o\":\"" + accountId + "\",\"p\":\"PENDING\",\"a\":{\"" + accountId + "\":[\"transaction-20250101-000001\",\"x\"]}}",
+            "{\"o\":\"" + accountId + "\",\"p\":\"STAMPED\",\"a\":{\"" + accountId + "\":[\"zzz\",\"x\"]}}",
+            "{\"o\":\"" + accountId + "\",\"p\":\"PENDING\",\"a\":{\"" + accountId + "\":[\"pending-x\"]}}",
+            "{\"o\":\"" + accountId + "\",\"p\":\"PENDING\",\"a\":{\"" + accountId + "\":null}}",
+            "{\"o\":\"" + accountId + "\",\"p\":\"DONE\",\"a\":{}}",
+            "{\"p\":\"STAMPED\",\"a\":{}}");
+        for (String json : malformed) {
+            String token = java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(json.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            assertThatThrownBy(() -> transactionService.getAccountTransactions(accountId, token, 2))
+                .as(json)
+                .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> transactionService.getAccountTransactionsAsync(accountId, token, 2))
+                .as(json)
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void shouldCreateOneTransactionPerIdempotencyKey() {
+        // Given
+        String accountId = UUID.randomUUID().toString();
+        String key = UUID.randomUUID().toString();
+        Instant transactedAt = Instant.now();
+
+        // When: The same deposit is sent twice, then again to a container that has not seen the key
+        Transaction first = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("100"), transactedAt,
+            "DE89370400440532013000", "DE", "ref1", "purpose1", key);
+        Transaction cached = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("100.00"), transactedAt,
+            "DE89370400440532013000", "DE", "ref1", "purpose1", key);
+
+        Object containerCache = ReflectionTestUtils.getField(transactionService, "idempotencyCache");
+        ReflectionTestUtils.setField(transactionService, "idempotencyCache", new IdempotencyCache(0));
+        try {
+            Transaction stored = transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("100"), transactedAt,
+                "DE89370400440532013000", "DE", "ref1", "purpose1", key);
+
+            // Then: Every retry gets the first deposit back, and only that one exists
+            assertThat(cached.getId()).isEqualTo(first.getId());
+            assertThat(stored.getId()).isEqualTo(first.getId());
+            assertThat(stored.getSequence()).isEqualTo(first.getSequence());
+            assertThat(stored.getAmount()).isEqualByComparingTo(first.getAmount());
+            assertThat(transactionService.getAccountTransactions(accountId, null, 10).getTransactions())
+                .extracting(Transaction::getId)
+                .containsExactly(first.getId());
+
+            // And: Reusing the key for a different request is refused, whether the key is cached or not
+            assertThatThrownBy(() -> transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("200"), transactedAt,
+                "DE89370400440532013000", "DE", "ref1", "purpose1", key))
+                .isInstanceOf(IllegalStateException.class);
+        } finally {
+            ReflectionTestUtils.setField(transactionService, "idempotencyCache", containerCache);
+        }
+        assertThatThrownBy(() -> transactionService.createWithdrawal(accountId, "user1", "EUR", new BigDecimal("-100"), transactedAt,
+            "DE89370400440532013000", "DE", "ref1", "purpose1", key))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> transactionService.createDeposit(accountId, "user1", "EUR", new BigDecimal("100"), transactedAt,
+            "DE89370400440532013000", "DE", "ref1", "purpose1", " "))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldCreateOneTransactionForConcurrentRetries() throws Exception {
+        // Given: A container that remembers no keys, so every retry reaches DynamoDB
+        String accountId = UUID.randomUUID().toString();
+        String key = UUID.randomUUID().toString();
+        Instant transactedAt = Instant.now();
+        Object containerCache = ReflectionTestUtils.getField(transactionService, "idempotencyCache");
+        ReflectionTestUtils.setField(transactionService, "idempotencyCache", new IdempotencyCache(0));
+
+        try (java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8)) {
+            // When: The same withdrawal is retried concurrently
+            List<java.util.concurrent.Future<Transaction>> retries = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                retries.add(executor.submit(() -> transactionService.createWithdrawal(accountId, "user1", "EUR",
+                    new BigDecimal("-25"), transactedAt, "GB82WEST12345698765432", "GB", "ref1", "purpose1", key)));
+            }
+            java.util.Set<String> ids = new java.util.HashSet<>();
+            for (java.util.concurrent.Future<Transaction> retry : retries) {
+                ids.add(retry.get().getId());
+            }
+
+            // Then: All of them return the one withdrawal that was created
+            assertThat(ids).hasSize(1);
+            assertThat(transactionService.getAccountTransactions(accountId, null, 10).getTransactions())
+                .extracting(Transaction::getId)
+                .containsExactlyElementsOf(ids);
+        } finally {
+            ReflectionTestUtils.setField(transactionService, "idempotencyCache", containerCache);
+        }
+    }
+
+    @Test
+    void shouldCreateValidItemsOfBatchAndReportEachOutcome() {
+        // Given: 60 deposits, three chunks worth, with two invalid items among them
+        String accountId = UUID.randomUUID().toString();
+        List<BatchTransactionItem> items = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            items.add(batchItem(null, Transaction.TransactionType.DEPOSIT, new BigDecimal(i + 1), "ref" + i));
+        }
+        items.set(7, batchItem(null, Transaction.TransactionType.DEPOSIT, new BigDecimal("-1"), "negative deposit"));
+        items.set(42, batchItem(UUID.randomUUID().toString(), Transaction.TransactionType.DEPOSIT, BigDecimal.ONE, "other account"));
+
+        // When
+        BatchTransactionResponse response = transactionService.createTransactions(accountId, items);
+
+        // Then: Every item has its outcome at its own index, and the valid ones are pending in submission order
+        assertThat(response.getResults()).hasSize(60);
+        assertThat(response.getCreated()).isEqualTo(58);
+        assertThat(response.getInvalid()).isEqualTo(2);
+        assertThat(response.getFailed()).isZero();
+        for (int i = 0; i < 60; i++) {
+            BatchTransactionResponse.ItemResult result = response.getResults().get(i);
+            assertThat(result.getIndex()).isEqualTo(i);
+            assertThat(result.getStatus()).isEqualTo(i == 7 || i == 42
+                ? BatchTransactionResponse.ItemStatus.INVALID
+                : BatchTransactionResponse.ItemStatus.CREATED);
+        }
+        assertThat(response.getResults().get(7).getError()).isEqualTo("Deposit amount must be positive");
+
+        List<Transaction> pending = transactionService.getAccountTransactions(accountId, null, 100).getTransactions();
+        assertThat(pending).extracting(Transaction::getPaymentRef)
+            .containsExactlyElementsOf(response.getResults().stream()
+                .filter(result -> result.getStatus() == BatchTransactionResponse.ItemStatus.CREATED)
+                .map(result -> result.getTransaction().getPaymentRef())
+                .toList());
+        assertThat(pending).allSatisfy(transaction -> assertThat(transaction.getSequence()).startsWith("pending-"));
+    }
+
+    @Test
+    void shouldCreateCrossAccountBatchAndRejectEmptyBatches() {
+        // Given: Withdrawals for two accounts, and one without an account
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+        List<BatchTransactionItem> items = List.of(
+            batchItem(first, Transaction.TransactionType.WITHDRAWAL, new BigDecimal("-10"), "first"),
+            batchItem(second, Transaction.TransactionType.WITHDRAWAL, new BigDecimal("-20"), "second"),
+            batchItem(null, Transaction.TransactionType.WITHDRAWAL, new BigDecimal("-30"), "no account"));
+
+        // When
+        BatchTransactionResponse response = transactionService.createTransactions(null, items);
+
+        // Then
+        assertThat(response.getResults()).extracting(BatchTransactionResponse.ItemResult::getStatus).containsExactly(
+            BatchTransactionResponse.ItemStatus.CREATED, BatchTransactionResponse.ItemStatus.CREATED, BatchTransactionResponse.ItemStatus.INVALID);
+        assertThat(transactionService.getAccountTransactions(first, null, 10).getTransactions()).hasSize(1);
+        assertThat(transactionService.getAccountTransactions(second, null, 10).getTransactions()).hasSize(1);
+        assertThatThrownBy(() -> transactionService.createTransactions(first, List.of()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BatchTransactionItem batchItem(String accountId, Transaction.TransactionType type, BigDecimal amount, String paymentRef) {
+        BatchTransactionItem item = new BatchTransactionItem();
+        item.setAccountId(accountId);
+        item.setTransactionType(type);
+        item.setUserId("user1");
+        item.setCurrency("EUR");
+        item.setAmount(amount);
+        item.setTransactedAt(Instant.now());
+        item.setPayorIBAN(type == Transaction.TransactionType.DEPOSIT ? "DE89370400440532013000" : null);
+        item.setBeneficiaryIBAN(type == Transaction.TransactionType.WITHDRAWAL ? "GB82WEST12345698765432" : null);
+        item.setOriginatingCountry("DE");
+        item.setPaymentRef(paymentRef);
+        item.setPurposeRef("purpose");
+        return item;
+    }
+
     private void updateTransactionToStampedSequence(Transaction transaction, String newSequence) {
         try {
             DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()